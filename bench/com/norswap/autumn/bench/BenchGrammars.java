@@ -0,0 +1,135 @@
+package com.norswap.autumn.bench;
+
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.GrammarBuilder;
+import com.norswap.autumn.source.Source;
+import com.norswap.autumn.test.languages.clike.CLikeExtension;
+import com.norswap.autumn.test.languages.python.PythonExtension;
+import com.norswap.util.Glob;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The grammars and input corpora shared by the benchmarks.
+ * <p>
+ * The grammars are the ones in the {@code grammars} directory, along with the extensions they
+ * require. The Java corpus is the source of Autumn itself (the {@code src} directory); the Python
+ * corpus is bundled in {@code bench/corpus/python}.
+ * <p>
+ * Paths are relative to the root of the repository, from which the benchmarks must be run.
+ */
+public final class BenchGrammars
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reads the file of the grammar with the given name (Java7, Java8, Python or CLike).
+     */
+    public static Source source(String name)
+    {
+        try {
+            return Source.fromFile("grammars/" + name + ".autumn").columnStart(1).build();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a grammar builder for the grammar with the given name, whose file has already been
+     * read into the given source, with the extensions the grammar requires.
+     */
+    public static GrammarBuilder builder(String name, Source source)
+    {
+        GrammarBuilder builder = Grammar.fromSource(source);
+
+        switch (name)
+        {
+            case "Python":
+                builder.withExtension(new PythonExtension());
+                break;
+
+            case "CLike":
+                builder.withExtension(new CLikeExtension());
+                break;
+
+            default:
+                break;
+        }
+
+        return builder;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Reads and compiles the grammar with the given name (see {@link #builder}).
+     */
+    public static Grammar grammar(String name)
+    {
+        return builder(name, source(name)).build();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the sources of the corpus for the grammar with the given name (Java8 or Python).
+     */
+    public static List<Source> corpus(String name)
+    {
+        String pattern;
+        Path directory;
+
+        switch (name)
+        {
+            case "Java8":
+                pattern = "**/*.java";
+                directory = Paths.get("src");
+                break;
+
+            case "Python":
+                pattern = "**/*.py";
+                directory = Paths.get("bench/corpus/python");
+                break;
+
+            default:
+                throw new IllegalArgumentException("no corpus for grammar: " + name);
+        }
+
+        List<Source> out = new ArrayList<>();
+
+        try {
+            for (Path path: Glob.glob(pattern, directory))
+                out.add(Source.fromFile(path.toString()).columnStart(1).build());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the total size of the sources, in megabytes (counting one byte per character).
+     */
+    public static double megabytes(List<Source> sources)
+    {
+        long size = 0;
+
+        for (Source source: sources)
+            size += source.length();
+
+        return size / 1e6;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,163 @@
+package com.norswap.autumn.bench;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.GrammarBuilder;
+import com.norswap.autumn.ParseResult;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.extensions.cluster.ClusterExtension;
+import com.norswap.autumn.source.Source;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.norswap.autumn.ParsingExpressionFactory.*;
+
+/**
+ * Micro-benchmarks for the expressions that dominate parse time. For each expression, parses an
+ * input of about {@link #LENGTH} characters with a small grammar that exercises the expression
+ * repeatedly.
+ * <p>
+ * The grammar optimizations that replace expressions by faster equivalents (first-character
+ * dispatch, literal tries, character classes and regular expressions) are disabled, so that the
+ * expressions are measured as written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ExpressionBench
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The approximate length of the inputs.
+     */
+    public static final int LENGTH = 1 << 16;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Param({
+        "Literal", "CharSet", "Choice", "ZeroMore", "Token", "Memo", "LeftRecursive",
+        "ExpressionCluster"})
+    public String expression;
+
+    private Grammar grammar;
+
+    private Source source;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Setup
+    public void setup()
+    {
+        ParsingExpression root;
+        String unit;
+        ClusterExtension cext = null;
+
+        switch (expression)
+        {
+            case "Literal":
+                root = oneMore(literal("hello"));
+                unit = "hello";
+                break;
+
+            case "CharSet":
+                root = oneMore(charSet("abcdefghij"));
+                unit = "jihgfedcba";
+                break;
+
+            case "Choice":
+                root = oneMore(choice(
+                    literal("alpha"), literal("beta"), literal("gamma"), literal("delta")));
+                unit = "deltagammabetaalpha";
+                break;
+
+            case "ZeroMore":
+                root = zeroMore(charRange('a', 'z'), charRange('0', '9'));
+                unit = "a1b2c3d4";
+                break;
+
+            case "Token":
+                root = oneMore(token("id"));
+                unit = "id id\n";
+                break;
+
+            case "Memo":
+                // The second alternative finds the result of the item in the memo table.
+                ParsingExpression item = memo(oneMore(charRange('a', 'z')));
+                root = oneMore(choice(
+                    sequence(item, literal(";")),
+                    sequence(item, literal(","))));
+                unit = "abc,defg,";
+                break;
+
+            case "LeftRecursive":
+                root = oneMore(named$("expr", choice(
+                    leftRecursive(reference("expr"), literal("+"), charRange('0', '9')),
+                    charRange('0', '9'))), literal(";"));
+                unit = "1+2+3+4+5;";
+                break;
+
+            case "ExpressionCluster":
+                cext = new ClusterExtension();
+                root = oneMore(named$("expr", cext.cluster(
+                    groupLeftAssoc(1,
+                        sequence(reference("expr"), literal("+"), reference("expr")),
+                        sequence(reference("expr"), literal("-"), reference("expr"))),
+                    groupLeftAssoc(2,
+                        sequence(reference("expr"), literal("*"), reference("expr")),
+                        sequence(reference("expr"), literal("/"), reference("expr"))),
+                    group(3,
+                        charRange('0', '9')))), literal(";"));
+                unit = "1+2*3-4/5;";
+                break;
+
+            default:
+                throw new IllegalArgumentException("unknown expression: " + expression);
+        }
+
+        GrammarBuilder builder = Grammar.fromRoot(root)
+            .firstCharDispatch(false)
+            .literalTries(false)
+            .charClasses(false)
+            .regularExpressions(false);
+
+        if (cext != null)
+            builder.withExtension(cext);
+
+        grammar = builder.build();
+
+        StringBuilder input = new StringBuilder(LENGTH + unit.length());
+
+        while (input.length() < LENGTH)
+            input.append(unit);
+
+        source = Source.fromString(input.toString()).build();
+
+        if (!parse().matched)
+            throw new IllegalStateException("the input doesn't match: " + expression);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark
+    public ParseResult parse()
+    {
+        return Autumn.parseSource(grammar, source);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,94 @@
+package com.norswap.autumn.bench;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.source.Source;
+import com.norswap.autumn.support.InputGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parse throughput of the grammars on synthetic inputs of various sizes, generated
+ * with an {@link InputGenerator} (always with the same seed, so that every run parses the same
+ * input).
+ * <p>
+ * The size is given in kilobytes or megabytes, counting one byte per character. Larger inputs can
+ * be requested on the command line, e.g. {@code -p size=100MB} (generating such an input takes a
+ * few minutes).
+ * <p>
+ * The primary score is the number of parses per second; the secondary {@code megabytes} score is
+ * the throughput in megabytes per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class GeneratedInputBench
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final long SEED = 42;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Param({"Java8", "Python", "CLike"})
+    public String grammar;
+
+    @Param({"1KB", "1MB"})
+    public String size;
+
+    private Grammar compiled;
+
+    private Source input;
+
+    private double megabytes;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Setup
+    public void setup()
+    {
+        compiled = BenchGrammars.grammar(grammar);
+
+        String text = new InputGenerator(compiled, SEED).generate(parseSize(size));
+        input = Source.fromString(text).columnStart(1).build();
+        megabytes = BenchGrammars.megabytes(Collections.singletonList(input));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static int parseSize(String size)
+    {
+        if (size.endsWith("KB"))
+            return Integer.parseInt(size.substring(0, size.length() - 2)) * 1000;
+        else if (size.endsWith("MB"))
+            return Integer.parseInt(size.substring(0, size.length() - 2)) * 1_000_000;
+        else
+            return Integer.parseInt(size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark
+    public Object parse(ParseThroughputBench.Counters counters)
+    {
+        counters.megabytes += megabytes;
+        return Autumn.parseSource(compiled, input);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,61 @@
+package com.norswap.autumn.bench;
+
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.GrammarBuilder;
+import com.norswap.autumn.source.Source;
+import com.norswap.autumn.support.GrammarCompiler;
+import com.norswap.autumn.support.MetaGrammar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to turn a grammar file into a {@link Grammar}: parsing the grammar file
+ * with the {@link MetaGrammar}, compiling the resulting parse tree into parsing expressions with the
+ * {@link GrammarCompiler}, then running the grammar transformations in {@link GrammarBuilder#build}.
+ * <p>
+ * The grammar file is read beforehand, so that I/O is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GrammarCompilationBench
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Param({"Java7", "Java8", "Python", "CLike"})
+    public String grammar;
+
+    private Source source;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Setup
+    public void setup()
+    {
+        source = BenchGrammars.source(grammar);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark
+    public Grammar compile()
+    {
+        return BenchGrammars.builder(grammar, source).build();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
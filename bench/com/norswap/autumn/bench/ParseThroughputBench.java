@@ -0,0 +1,98 @@
+package com.norswap.autumn.bench;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.source.Source;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parse throughput of the grammars on their corpus (see {@link BenchGrammars#corpus}).
+ * <p>
+ * Each invocation parses the files of the corpus that the grammar matches. The primary score is
+ * the number of corpus passes per second; the secondary {@code megabytes} score is the throughput
+ * in megabytes per second.
+ * <p>
+ * Java7 is left out because its grammar doesn't match the corpus, and CLike because it has no
+ * corpus (see {@link GeneratedInputBench} for synthetic inputs).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ParseThroughputBench
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Param({"Java8", "Python"})
+    public String grammar;
+
+    private Grammar compiled;
+
+    private List<Source> corpus;
+
+    private double megabytes;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Counts the megabytes parsed during an iteration, reported as a rate (per second).
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters
+    {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            megabytes = 0;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Setup
+    public void setup()
+    {
+        compiled = BenchGrammars.grammar(grammar);
+        corpus = BenchGrammars.corpus(grammar);
+
+        // Only measure the files the grammar matches, so that the work doesn't depend on where the
+        // grammar fails.
+
+        corpus.removeIf(source -> !Autumn.parseSource(compiled, source).matched);
+        megabytes = BenchGrammars.megabytes(corpus);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark
+    public void parse(Counters counters, Blackhole blackhole)
+    {
+        for (Source source: corpus)
+            blackhole.consume(Autumn.parseSource(compiled, source));
+
+        counters.megabytes += megabytes;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,118 @@
+package com.norswap.autumn.bench;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.GrammarBuilderExtensionView;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.expressions.Capture;
+import com.norswap.autumn.extensions.Extension;
+import com.norswap.autumn.graph.Transformer;
+import com.norswap.autumn.source.Source;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.norswap.autumn.ParsingExpressionFactory.succeed;
+
+/**
+ * Compares the time needed to parse the Java corpus when only recognizing the input (with a copy
+ * of the Java8 grammar stripped of its captures), when building a parse tree, and when building a
+ * flat parse tree (see {@link ParserConfiguration#flatParseTree}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class TreeBench
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private Grammar grammar;
+
+    private Grammar recognizer;
+
+    private List<Source> corpus;
+
+    private ParserConfiguration flat;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Replaces every capture by its operand, so that the grammar builds no parse tree.
+     */
+    private static final class StripCaptures implements Extension
+    {
+        @Override
+        public void transform(GrammarBuilderExtensionView grammar)
+        {
+            grammar.transform(new Transformer(StripCaptures::strip));
+        }
+
+        private static ParsingExpression strip(ParsingExpression pe)
+        {
+            while (pe instanceof Capture)
+                pe = ((Capture) pe).operand;
+
+            return pe == null ? succeed() : pe;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Setup
+    public void setup()
+    {
+        Source source = BenchGrammars.source("Java8");
+        grammar = BenchGrammars.builder("Java8", source).build();
+        recognizer = BenchGrammars.builder("Java8", source).withExtension(new StripCaptures()).build();
+        flat = ParserConfiguration.with().flatParseTree(true).build();
+        corpus = BenchGrammars.corpus("Java8");
+
+        corpus.removeIf(file ->
+            !Autumn.parseSource(grammar, file).matched
+            || !Autumn.parseSource(recognizer, file).matched);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark
+    public void recognize(Blackhole blackhole)
+    {
+        for (Source source: corpus)
+            blackhole.consume(Autumn.parseSource(recognizer, source));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark
+    public void tree(Blackhole blackhole)
+    {
+        for (Source source: corpus)
+            blackhole.consume(Autumn.parseSource(grammar, source));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark
+    public void flatTree(Blackhole blackhole)
+    {
+        for (Source source: corpus)
+            blackhole.consume(Autumn.parseSource(grammar, source, flat));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,108 @@
+"""
+Small container and iteration helpers, written in Python 2 syntax.
+"""
+
+import itertools
+from functools import wraps
+
+
+class OrderedSet(object):
+    """A set that remembers insertion order."""
+
+    def __init__(self, iterable=None):
+        self._items = []
+        self._index = {}
+        if iterable is not None:
+            for item in iterable:
+                self.add(item)
+
+    def add(self, item):
+        if item not in self._index:
+            self._index[item] = len(self._items)
+            self._items.append(item)
+
+    def discard(self, item):
+        if item in self._index:
+            position = self._index.pop(item)
+            del self._items[position]
+            for key, value in self._index.items():
+                if value > position:
+                    self._index[key] = value - 1
+
+    def __contains__(self, item):
+        return item in self._index
+
+    def __iter__(self):
+        return iter(self._items)
+
+    def __len__(self):
+        return len(self._items)
+
+    def __repr__(self):
+        return '%s(%r)' % (self.__class__.__name__, self._items)
+
+
+def chunks(sequence, size):
+    """Yields successive slices of the given size."""
+    for start in xrange(0, len(sequence), size):
+        yield sequence[start:start + size]
+
+
+def flatten(nested):
+    result = []
+    stack = [iter(nested)]
+    while stack:
+        try:
+            item = next(stack[-1])
+        except StopIteration:
+            stack.pop()
+            continue
+        if isinstance(item, (list, tuple)):
+            stack.append(iter(item))
+        else:
+            result.append(item)
+    return result
+
+
+def memoize(function):
+    cache = {}
+
+    @wraps(function)
+    def wrapper(*args, **kwargs):
+        key = (args, tuple(sorted(kwargs.items())))
+        if key not in cache:
+            cache[key] = function(*args, **kwargs)
+        return cache[key]
+
+    return wrapper
+
+
+@memoize
+def fibonacci(n):
+    if n < 2:
+        return n
+    return fibonacci(n - 1) + fibonacci(n - 2)
+
+
+def group_by(items, key=lambda x: x):
+    groups = {}
+    for item in items:
+        groups.setdefault(key(item), []).append(item)
+    return groups
+
+
+def pairwise(iterable):
+    a, b = itertools.tee(iterable)
+    next(b, None)
+    return itertools.izip(a, b)
+
+
+if __name__ == '__main__':
+    s = OrderedSet([3, 1, 3, 2])
+    s.discard(1)
+    print s, len(s)
+    print list(chunks(range(10), 3))
+    print flatten([1, [2, [3, 4]], (5,)])
+    print [fibonacci(i) for i in range(15)]
+    print group_by(['apple', 'avocado', 'banana'], key=lambda w: w[0])
+    print dict((k, v) for k, v in pairwise('abcd'))
@@ -0,0 +1,108 @@
+# -*- coding: utf-8 -*-
+"""
+Builds a word frequency report from text files.
+"""
+
+import os
+import re
+import sys
+
+WORD = re.compile(r"[a-z']+")
+STOP_WORDS = frozenset(['a', 'an', 'and', 'the', 'of', 'to', 'in', 'is'])
+
+
+class ReportError(Exception):
+    pass
+
+
+class Counter(dict):
+
+    def __missing__(self, key):
+        return 0
+
+    def update_from(self, words):
+        for word in words:
+            self[word] += 1
+        return self
+
+    def most_common(self, n=None):
+        ordered = sorted(self.iteritems(), key=lambda pair: (-pair[1], pair[0]))
+        return ordered if n is None else ordered[:n]
+
+
+def words(line, ignore=STOP_WORDS):
+    return [w for w in WORD.findall(line.lower()) if w not in ignore]
+
+
+def read_lines(path):
+    if not os.path.exists(path):
+        raise ReportError("no such file: %s" % path)
+    with open(path) as handle:
+        for line in handle:
+            yield line.rstrip('\n')
+
+
+def count(paths):
+    counter = Counter()
+    lines = 0
+    for path in paths:
+        for line in read_lines(path):
+            lines += 1
+            counter.update_from(words(line))
+    return counter, lines
+
+
+def format_report(counter, lines, width=40, top=10):
+    output = []
+    output.append('-' * width)
+    output.append('%d lines, %d distinct words' % (lines, len(counter)))
+    output.append('-' * width)
+    for word, n in counter.most_common(top):
+        bar = '#' * min(n, width - 20)
+        output.append('%-15s %4d %s' % (word, n, bar))
+    return '\n'.join(output)
+
+
+def parse_arguments(argv):
+    options = {'top': 10, 'width': 40}
+    paths = []
+    i = 0
+    while i < len(argv):
+        arg = argv[i]
+        if arg in ('-n', '--top'):
+            i += 1
+            options['top'] = int(argv[i])
+        elif arg in ('-w', '--width'):
+            i += 1
+            options['width'] = int(argv[i])
+        elif arg.startswith('-'):
+            raise ReportError('unknown option: ' + arg)
+        else:
+            paths.append(arg)
+        i += 1
+    return options, paths
+
+
+def main(argv=None):
+    if argv is None:
+        argv = sys.argv[1:]
+    try:
+        options, paths = parse_arguments(argv)
+        if not paths:
+            raise ReportError('no input files')
+        counter, lines = count(paths)
+    except ReportError, e:
+        print >> sys.stderr, 'error:', e
+        return 1
+    except (IOError, OSError), e:
+        print >> sys.stderr, 'i/o error:', e
+        return 2
+    else:
+        print format_report(counter, lines, options['width'], options['top'])
+        return 0
+    finally:
+        sys.stdout.flush()
+
+
+if __name__ == '__main__':
+    sys.exit(main())
@@ -1,9 +1,19 @@
 package com.norswap.autumn;
 
 import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.incremental.IncrementalParse;
+import com.norswap.autumn.incremental.TextEdit;
 import com.norswap.autumn.source.Source;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A collection of entry points into the library for the most common tasks.
@@ -85,4 +95,150 @@ public final class Autumn
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
-}
+    // PARSE INCREMENTALLY
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * {@code parseIncremental(grammar, string, ParserConfiguration.DEFAULT)}
+     */
+    public static ParseResult parseIncremental(Grammar grammar, String string)
+    {
+        return parseIncremental(
+            grammar,
+            string,
+            ParserConfiguration.DEFAULT);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the given string, retaining the data needed to reparse it after it is edited (see
+     * {@link #reparse}). Only the invocations of memoized expressions are reused by reparses,
+     * grammars should memoize their main rules (see {@link GrammarBuilder#memoizeRules}).
+     */
+    public static ParseResult parseIncremental(
+        Grammar grammar,
+        String string,
+        ParserConfiguration config)
+    {
+        return IncrementalParse.parse(grammar, string, config);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Applies the edits to the text of a previous incremental parse, and parses the resulting text,
+     * reparsing only the parts of the input affected by the edits (see {@link IncrementalParse}).
+     * The previous result must be the most recent result of its sequence of incremental parses.
+     */
+    public static ParseResult reparse(ParseResult previous, TextEdit... edits)
+    {
+        if (previous.incremental == null)
+            throw new IllegalArgumentException("Not the result of an incremental parse.");
+
+        return previous.incremental.reparse(edits);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // PARSE MULTIPLE FILES
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * {@code parseAll(grammar, files, ParserConfiguration.DEFAULT, <number of processors>)}
+     */
+    public static Stream<FileParseResult> parseAll(Grammar grammar, Iterable<Path> files)
+    {
+        return parseAll(
+            grammar,
+            files,
+            ParserConfiguration.DEFAULT,
+            Runtime.getRuntime().availableProcessors());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the given files concurrently, using a work-stealing pool of {@code parallelism}
+     * threads, and returns a stream of the results in completion order.
+     * <p>
+     * All files are parsed with the same grammar, but each parse has its own {@link Parser} and
+     * parse state. The configuration is shared between threads: the suppliers passed to its
+     * builder must be thread-safe.
+     * <p>
+     * The files are all submitted before this method returns. Consuming the stream blocks until
+     * the next result is available. Exceptions that prevent a file from being parsed (including
+     * I/O errors) are reported in the results rather than thrown.
+     */
+    public static Stream<FileParseResult> parseAll(
+        Grammar grammar,
+        Iterable<Path> files,
+        ParserConfiguration config,
+        int parallelism)
+    {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        LinkedBlockingQueue<FileParseResult> results = new LinkedBlockingQueue<>();
+        int count = 0;
+
+        for (Path file: files)
+        {
+            pool.execute(() -> results.add(parseFileResult(grammar, file, config)));
+            ++count;
+        }
+
+        // Lets the submitted parses complete, then terminates the threads.
+        pool.shutdown();
+
+        int total = count;
+
+        Iterator<FileParseResult> iterator = new Iterator<FileParseResult>()
+        {
+            int remaining = total;
+
+            @Override
+            public boolean hasNext()
+            {
+                return remaining > 0;
+            }
+
+            @Override
+            public FileParseResult next()
+            {
+                --remaining;
+
+                try {
+                    return results.take();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for a parse", e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(
+            Spliterators.spliterator(iterator, total, Spliterator.NONNULL),
+            false);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static FileParseResult parseFileResult(
+        Grammar grammar,
+        Path file,
+        ParserConfiguration config)
+    {
+        try {
+            ParseResult result = parseSource(
+                grammar,
+                Source.fromFile(file.toString()).build(),
+                config);
+
+            return new FileParseResult(file, result, null);
+        }
+        catch (IOException | RuntimeException e) {
+            return new FileParseResult(file, null, e);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.norswap.autumn;
+
+import java.nio.file.Path;
+
+/**
+ * [Immutable] The result of parsing a file as part of a batch (see {@link Autumn#parseAll}).
+ */
+public final class FileParseResult
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The parsed file.
+     */
+    public final Path file;
+
+    /**
+     * The result of the parse, or null if the parse could not be completed (see {@link
+     * #exception}).
+     */
+    public final ParseResult result;
+
+    /**
+     * The exception that prevented the parse from being completed (most likely an {@link
+     * java.io.IOException} raised while reading the file), or null.
+     */
+    public final Exception exception;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public FileParseResult(Path file, ParseResult result, Exception exception)
+    {
+        this.file = file;
+        this.result = result;
+        this.exception = exception;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
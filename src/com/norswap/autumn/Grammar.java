@@ -42,6 +42,12 @@ public final class Grammar
      */
     public final ParsingExpression whitespace;
 
+    /**
+     * A scanner equivalent to {@link #whitespace}, or null if the whitespace expression can't be
+     * compiled to a scanner (see {@link WhitespaceScanner}).
+     */
+    public final WhitespaceScanner whitespaceScanner;
+
     /**
      * Whether leading whitespace should be skipped when parsing.
      */
@@ -53,9 +59,10 @@ public final class Grammar
     public final @Immutable Array<Extension> extensions;
 
     /**
-     * Build on-demand for {@link #getRule}.
+     * Build on-demand for {@link #getRule}. Volatile so that the map is safely published to the
+     * other threads using the grammar.
      */
-    private Map<String, ParsingExpression> rulesByName;
+    private volatile Map<String, ParsingExpression> rulesByName;
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -69,6 +76,7 @@ public final class Grammar
         this.root = root;
         this.rules = rules;
         this.whitespace = whitespace;
+        this.whitespaceScanner = WhitespaceScanner.compile(whitespace);
         this.processLeadingWhitespace = processLeadingWhitespace;
         this.extensions = extensions;
     }
@@ -94,10 +102,7 @@ public final class Grammar
      */
     public ParsingExpression getRule(String name)
     {
-        if (rulesByName == null)
-            getRules();
-
-        return rulesByName.get(name);
+        return getRules().get(name);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -105,12 +110,17 @@ public final class Grammar
     /**
      * Returns a map from rule name to rules. The returned map backs the {@link #getRule} and should
      * not be modified.
+     * <p>
+     * The map is built on first use. If multiple threads race to build it, each builds its own
+     * identical copy and one of them is retained.
      */
     public Map<String, ParsingExpression> getRules()
     {
-        if (rulesByName == null)
+        Map<String, ParsingExpression> out = rulesByName;
+
+        if (out == null)
         {
-            rulesByName = new HashMap<>();
+            HashMap<String, ParsingExpression> map = new HashMap<>();
 
             rules.forEach(
                 pe -> {
@@ -118,12 +128,14 @@ public final class Grammar
 
                     if (key != null)
                     {
-                        rulesByName.put(key, pe);
+                        map.put(key, pe);
                     }
                 });
+
+            rulesByName = out = map;
         }
 
-        return rulesByName;
+        return out;
     }
 
     // ---------------------------------------------------------------------------------------------
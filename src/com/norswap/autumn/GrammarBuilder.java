@@ -1,12 +1,22 @@
 package com.norswap.autumn;
 
 import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.expressions.Dumb;
 import com.norswap.autumn.expressions.Reference;
 import com.norswap.autumn.extensions.Extension;
 import com.norswap.autumn.extensions.SyntaxExtension;
 import com.norswap.autumn.extensions.cluster.ClusterExtension;
 import com.norswap.autumn.extensions.leftrec.LeftRecursionExtension;
+import com.norswap.autumn.graph.CharClassCompiler;
+import com.norswap.autumn.graph.DispatchTableBuilder;
+import com.norswap.autumn.graph.DumbWrapper;
+import com.norswap.autumn.graph.LiteralTrieRewriter;
+import com.norswap.autumn.graph.MemoSlotAllocator;
 import com.norswap.autumn.graph.ReferenceResolver;
+import com.norswap.autumn.graph.RegularCompiler;
+import com.norswap.autumn.graph.RuleMemoizer;
+import com.norswap.autumn.graph.TokenIdAllocator;
+import com.norswap.autumn.graph.Transformer;
 import com.norswap.autumn.source.Source;
 import com.norswap.autumn.state.ExportedInputs;
 import com.norswap.autumn.support.GrammarCompiler;
@@ -43,6 +53,18 @@ public final class GrammarBuilder implements GrammarBuilderExtensionView
 
     private boolean referenceResolution = true;
 
+    private boolean firstCharDispatch = false;
+
+    private boolean literalTries = false;
+
+    private boolean charClasses = false;
+
+    private boolean regularExpressions = false;
+
+    private boolean autoDumb = false;
+
+    private boolean memoizeRules = false;
+
     private final Array<Extension> extensions = new Array<>();
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -162,6 +184,94 @@ public final class GrammarBuilder implements GrammarBuilderExtensionView
         return this;
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicate whether first-character dispatch tables should be computed for choice and longest
+     * match expressions (see {@link DispatchTableBuilder}). These tables let the expressions skip
+     * the operands that cannot succeed on the current input character. Defaults to false.
+     */
+    public GrammarBuilder firstCharDispatch(boolean firstCharDispatch)
+    {
+        this.firstCharDispatch = firstCharDispatch;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicate whether choice and longest match expressions whose operands are all literals
+     * (possibly wrapped in tokens) should be replaced by literal tries (see {@link
+     * LiteralTrieRewriter}). Defaults to false.
+     */
+    public GrammarBuilder literalTries(boolean literalTries)
+    {
+        this.literalTries = literalTries;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicate whether character-matching expressions (and their unions and repetitions) should
+     * be compiled into character classes and loops (see {@link CharClassCompiler}). Defaults to
+     * false.
+     * <p>
+     * The whitespace expression is compiled regardless, so that it can be matched by a scanner
+     * (see {@link WhitespaceScanner}).
+     */
+    public GrammarBuilder charClasses(boolean charClasses)
+    {
+        this.charClasses = charClasses;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicate whether expressions with regular semantics should be compiled into deterministic
+     * finite automata (see {@link RegularCompiler}). Defaults to false.
+     * <p>
+     * More expressions are regular when {@link #charClasses} is enabled, as negated character sets
+     * are then turned into character classes.
+     */
+    public GrammarBuilder regularExpressions(boolean regularExpressions)
+    {
+        this.regularExpressions = regularExpressions;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicate whether the maximal sub-expressions that can be parsed in dumb mode (no captures,
+     * tokens, memoization or custom state) should automatically be wrapped in {@link Dumb}
+     * expressions (see {@link DumbWrapper}). Defaults to false.
+     * <p>
+     * Dumb mode doesn't report the failures of the wrapped sub-expressions. Since they contain no
+     * tokens, this doesn't affect error messages.
+     */
+    public GrammarBuilder autoDumb(boolean autoDumb)
+    {
+        this.autoDumb = autoDumb;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicate whether the named non-terminal expressions should be memoized (see {@link
+     * RuleMemoizer}). Defaults to false.
+     * <p>
+     * This is mostly useful for incremental parses (see {@link Autumn#parseIncremental}), which
+     * reuse the memoized invocations that were not affected by the edits.
+     */
+    public GrammarBuilder memoizeRules(boolean memoizeRules)
+    {
+        this.memoizeRules = memoizeRules;
+        return this;
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     Extension leftrec = null;
@@ -214,6 +324,38 @@ public final class GrammarBuilder implements GrammarBuilderExtensionView
         if (defaultExtensions)
             extensions.addAll(leftrec);
 
+        if (charClasses)
+            transform(new Transformer(new CharClassCompiler()::rewrite));
+        else
+            whitespace = compileWhitespaceClasses(whitespace);
+
+        if (literalTries)
+            transform(new Transformer(LiteralTrieRewriter::rewrite));
+
+        if (regularExpressions)
+            transform(new Transformer(new RegularCompiler()::rewrite));
+
+        if (memoizeRules)
+            transform(new Transformer(new RuleMemoizer(whitespace)::rewrite));
+
+        if (autoDumb)
+            transform(new DumbWrapper());
+
+        MemoSlotAllocator slotAllocator = new MemoSlotAllocator();
+        compute(slotAllocator);
+        slotAllocator.conclude();
+
+        TokenIdAllocator idAllocator = new TokenIdAllocator();
+        compute(idAllocator);
+        idAllocator.conclude();
+
+        if (firstCharDispatch)
+        {
+            DispatchTableBuilder dispatchBuilder = new DispatchTableBuilder();
+            compute(dispatchBuilder);
+            dispatchBuilder.conclude();
+        }
+
         return new Grammar(root, rules, whitespace, processLeadingWhitespace, extensions);
     }
 
@@ -261,6 +403,22 @@ public final class GrammarBuilder implements GrammarBuilderExtensionView
         extensions.addAll(destate.extensions);
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Compiles the character classes of a copy of the whitespace expression, which may share
+     * sub-expressions with the rules. This lets the whitespace be compiled to a scanner (see {@link
+     * WhitespaceScanner}) even when {@link #charClasses} is disabled. The whitespace is parsed in
+     * dumb mode, so this doesn't change the reported errors.
+     */
+    private static ParsingExpression compileWhitespaceClasses(ParsingExpression whitespace)
+    {
+        Transformer transformer = new Transformer(new CharClassCompiler()::rewrite);
+        Slot<ParsingExpression> slot = transformer.partialVisit(whitespace.deepCopy());
+        transformer.conclude();
+        return slot.latest();
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     private void illegal(String msg)
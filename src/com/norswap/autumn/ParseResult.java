@@ -1,7 +1,12 @@
 package com.norswap.autumn;
 
+import com.norswap.autumn.capture.FlatParseTree;
 import com.norswap.autumn.capture.ParseTree;
+import com.norswap.autumn.config.MemoHandler;
+import com.norswap.autumn.config.ParserConfiguration;
 import com.norswap.autumn.errors.ErrorReport;
+import com.norswap.autumn.expressions.Recover;
+import com.norswap.autumn.incremental.IncrementalParse;
 import com.norswap.util.Array;
 
 /**
@@ -28,22 +33,62 @@ public final class ParseResult
     public final int endPosition;
 
     /**
-     * The generated parse tree, or null if {@code !succeeded}. If you do not specify any captures
-     * in the grammar, this tree is empty when the parse succeeds.
+     * The generated parse tree, or null if {@code !succeeded} or if {@link
+     * ParserConfiguration#parseTree} is not set. If you do not specify any captures in the grammar,
+     * this tree is empty when the parse succeeds.
      */
     public final ParseTree tree;
 
+    /**
+     * The generated parse tree, if {@link ParserConfiguration#flatParseTree} is set (in which case
+     * {@link #tree} is a view over its root); null otherwise.
+     */
+    public final FlatParseTree flatTree;
+
     /**
      * If {@code !matched}, holds error information and diagnostic about the parse.
      * Undefined otherwise.
      */
     public final ErrorReport error;
 
+    /**
+     * The errors from which {@link Recover} expressions recovered during the parse, in input order.
+     * Empty if there were no such errors.
+     */
+    public final Array<ErrorReport> recoveredErrors;
+
     /**
      * Changes that were applied to the custom state during the parse.
      */
     public final Array<Object> customChanges;
 
+    /**
+     * An estimate of the peak amount of memory (in bytes) used to hold memoized data during the
+     * parse, as reported by {@link MemoHandler#peakSize}; or -1 if unknown.
+     */
+    public final long memoPeakSize;
+
+    /**
+     * The number of times the end of the whitespace following a position was retrieved from the
+     * parser's whitespace cache rather than matched anew, during the phase that produced this
+     * result (see {@link #phase}).
+     */
+    public final int whitespaceCacheHits;
+
+    /**
+     * For incremental parses, the data needed to reparse the input after it is edited (see {@link
+     * Autumn#reparse}); null otherwise.
+     */
+    public final IncrementalParse incremental;
+
+    /**
+     * The phase of the parse that produced this result: 0 for a single-phase parse, 1 for the
+     * recognition phase of a two-phase parse, and 2 for its error-tracking phase, which only runs
+     * if the recognition phase did not match the whole input (see {@link
+     * ParserConfiguration#twoPhase}).
+     */
+    public final int phase;
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     public ParseResult(
@@ -51,15 +96,27 @@ public final class ParseResult
         boolean succeeded,
         int endPosition,
         ParseTree tree,
+        FlatParseTree flatTree,
         Array<Object> customChanges,
-        ErrorReport error)
+        ErrorReport error,
+        Array<ErrorReport> recoveredErrors,
+        long memoPeakSize,
+        int whitespaceCacheHits,
+        IncrementalParse incremental,
+        int phase)
     {
         this.matched = matched;
         this.succeeded = succeeded;
         this.endPosition = endPosition;
         this.tree = tree;
+        this.flatTree = flatTree;
         this.error = error;
+        this.recoveredErrors = recoveredErrors;
         this.customChanges = customChanges;
+        this.memoPeakSize = memoPeakSize;
+        this.whitespaceCacheHits = whitespaceCacheHits;
+        this.incremental = incremental;
+        this.phase = phase;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -1,14 +1,27 @@
 package com.norswap.autumn;
 
+import com.norswap.autumn.capture.FlatParseTree;
+import com.norswap.autumn.capture.ParseTree;
 import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.errors.ErrorChanges;
+import com.norswap.autumn.errors.ErrorState;
+import com.norswap.autumn.errors.NullErrorState;
+import com.norswap.autumn.expressions.Capture;
+import com.norswap.autumn.expressions.Literal;
 import com.norswap.autumn.extensions.Extension;
+import com.norswap.autumn.extensions.tracer.TraceRecorder;
+import com.norswap.autumn.incremental.TrackingText;
 import com.norswap.autumn.source.Source;
 import com.norswap.autumn.state.CustomState;
 import com.norswap.autumn.state.ExportedInputs;
 import com.norswap.autumn.state.ParseInputs;
 import com.norswap.autumn.state.ParseState;
 import com.norswap.util.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.function.Supplier;
 
 /**
  * All the immutable data associate with a parser, which namely includes the grammar, the source
@@ -24,14 +37,64 @@ public final class Parser implements Cloneable
 
     public final CharSequence text;
 
+    /**
+     * The source text with a byte per character, if the parser runs in byte mode (see {@link
+     * ParserConfiguration#byteMode}); null otherwise. Expressions that match characters should
+     * read them from this array when it is available, as this avoids going through the {@link
+     * CharSequence} interface.
+     */
+    public final byte[] bytes;
+
+    /**
+     * A view of {@link #bytes} in the native byte order, used to read 8 bytes at a time (see
+     * {@link Literal}); null if the parser doesn't run in byte mode.
+     */
+    public final ByteBuffer byteBuffer;
+
     public final ParsingExpression whitespace;
 
     public final ParserConfiguration config;
 
     public final boolean processLeadingWhitespace;
 
+    /**
+     * Whether the parser builds a parse tree (see {@link ParserConfiguration#parseTree}). If not,
+     * {@link Capture} expressions do not capture anything.
+     */
+    public final boolean captures;
+
+    /**
+     * The recorder specified by the configuration (see {@link ParserConfiguration#traceRecorder}),
+     * or null.
+     */
+    public final TraceRecorder traceRecorder;
+
+    /**
+     * Number of times the end of the whitespace following a position could be retrieved from the
+     * whitespace cache (see {@link #skipWhitespace}). Reset, along with the cache, at the start of
+     * each parse and of each phase of a two-phase parse.
+     */
+    public int whitespaceCacheHits;
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Size of the whitespace cache, must be a power of two.
+     */
+    private static final int WHITESPACE_CACHE_SIZE = 256;
+
+    private final WhitespaceScanner whitespaceScanner;
+
+    // Direct-mapped cache from positions to the end of the whitespace that follows them. A key is
+    // the position + 1 (0 indicates an empty entry).
+
+    private final int[] whitespaceCacheKeys = new int[WHITESPACE_CACHE_SIZE];
+    private final int[] whitespaceCacheValues = new int[WHITESPACE_CACHE_SIZE];
+
+    // Cache hits would hide the characters examined by the whitespace from incremental parses.
+
+    private final boolean cacheWhitespace;
+
     private ParseState state;
     private HashMap<Class, Extension> extensions;
 
@@ -42,9 +105,70 @@ public final class Parser implements Cloneable
         this.grammar = grammar;
         this.source = source;
         this.text = source.text;
+        this.bytes = config.byteMode() ? source.bytes() : null;
+        this.byteBuffer = bytes == null
+            ? null
+            : ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder());
         this.config = config;
         this.whitespace = grammar.whitespace;
+        this.whitespaceScanner = grammar.whitespaceScanner;
         this.processLeadingWhitespace = grammar.processLeadingWhitespace;
+        this.traceRecorder = config.traceRecorder();
+        this.captures = config.parseTree();
+        this.cacheWhitespace = !(text instanceof TrackingText);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the character at the given position of the source text, reading it from {@link
+     * #bytes} in byte mode.
+     */
+    public char charAt(int position)
+    {
+        return bytes != null
+            ? (char) (bytes[position] & 0xFF)
+            : text.charAt(position);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the end of the whitespace starting at the given position, or the position itself if
+     * the whitespace expression fails or doesn't match any input.
+     * <p>
+     * The whitespace is matched using the compiled scanner of the grammar, if available (see {@link
+     * Grammar#whitespaceScanner}), or by dumb-parsing the whitespace expression. The results are
+     * cached, as the whitespace following the same token is often matched multiple times because
+     * of backtracking; except when the text is a {@link TrackingText}.
+     */
+    public int skipWhitespace(int position)
+    {
+        int index = position & (WHITESPACE_CACHE_SIZE - 1);
+
+        if (cacheWhitespace && whitespaceCacheKeys[index] == position + 1)
+        {
+            ++whitespaceCacheHits;
+            return whitespaceCacheValues[index];
+        }
+
+        int end;
+
+        if (whitespaceScanner != null)
+        {
+            end = whitespaceScanner.scan(this, position);
+        }
+        else
+        {
+            end = whitespace.parseDumb(this, position);
+
+            if (end <= 0)
+                end = position;
+        }
+
+        whitespaceCacheKeys[index] = position + 1;
+        whitespaceCacheValues[index] = end;
+        return end;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -54,8 +178,7 @@ public final class Parser implements Cloneable
      */
     public ParseResult parseRoot()
     {
-        makeState();
-        return parse2(ParseInputs.create(grammar.root, 0, 0, 0, true, Array.empty()));
+        return parse1(() -> ParseInputs.create(grammar.root, 0, 0, 0, true, Array.empty()));
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -66,30 +189,32 @@ public final class Parser implements Cloneable
      */
     public ParseResult parseRoot(Array<ExportedInputs> exportedInputs)
     {
-        makeState();
-
-        Array<ParseInputs.Entry> array = exportedInputs.map(
-            exp -> new ParseInputs.Entry(
-                state.customStates[extensions.get(exp.extension).stateIndex()],
-                exp.actualInputs));
+        return parse1(() ->
+        {
+            Array<ParseInputs.Entry> array = exportedInputs.map(
+                exp -> new ParseInputs.Entry(
+                    state.customStates[extensions.get(exp.extension).stateIndex()],
+                    exp.actualInputs));
 
-        return parse2(ParseInputs.create(grammar.root, 0, 0, 0, true, array));
+            return ParseInputs.create(grammar.root, 0, 0, 0, true, array);
+        });
     }
 
     // ---------------------------------------------------------------------------------------------
 
     public ParseResult parse(ParseInputs inputs)
     {
-        makeState();
-        return parse2(inputs);
+        return parse1(() -> inputs);
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    private void makeState()
+    private void makeState(ErrorState errorState)
     {
         Array<CustomState> indexedStates = new Array<>();
         extensions = new HashMap<>();
+        whitespaceCacheHits = 0;
+        Arrays.fill(whitespaceCacheKeys, 0);
 
         for (Extension extension: grammar.extensions)
         {
@@ -102,26 +227,69 @@ public final class Parser implements Cloneable
         }
 
         state = new ParseState(
-            config.errorState(),
+            errorState,
             config.memoHandler(),
             indexedStates.toArray(CustomState[]::new));
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    private ParseResult parse2(ParseInputs inputs)
+    /**
+     * Runs the parse, in two phases if {@link ParserConfiguration#twoPhase} is set. The inputs are
+     * requested after the parse state is created.
+     */
+    private ParseResult parse1(Supplier<ParseInputs> inputs)
+    {
+        if (!config.twoPhase())
+        {
+            makeState(config.errorState());
+            return parse2(inputs.get(), 0);
+        }
+
+        makeState(new NullErrorState());
+        ParseResult out = parse2(inputs.get(), 1);
+
+        if (out.matched && out.recoveredErrors.isEmpty())
+            return out;
+
+        makeState(config.errorState());
+        return parse2(inputs.get(), 2);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private ParseResult parse2(ParseInputs inputs, int phase)
     {
         state.load(inputs);
         if (inputs.start() == 0) processLeadingWhitespace(state);
         inputs.pe().parse(this, state);
 
+        FlatParseTree flatTree = captures && config.flatParseTree()
+            ? state.tree.buildFlat(text)
+            : null;
+
+        ParseTree tree = !captures
+            ? null
+            : flatTree != null
+                ? flatTree.root()
+                : state.tree.build(text)[0];
+
+        Array<ErrorChanges> recovered = new Array<>();
+        state.tree.collectErrors(recovered);
+
         ParseResult out = new ParseResult(
             state.end == source.length(),
             state.end >= 0,
             state.end,
-            state.tree.build()[0],
+            tree,
+            flatTree,
             Array.map(state.customStates, x -> x == null ? null : x.extract(state)),
-            state.errors.report(source));
+            state.errors.report(source),
+            recovered.map(changes -> changes.report(source)),
+            state.memo.peakSize(),
+            whitespaceCacheHits,
+            null,
+            phase);
 
         if (state.end < 0)
             state.discard();
@@ -137,7 +305,7 @@ public final class Parser implements Cloneable
     {
         if (processLeadingWhitespace)
         {
-            int pos = whitespace.parseDumb(this, 0);
+            int pos = skipWhitespace(0);
             if (pos > 0)
             {
                 state.start = pos;
@@ -466,16 +466,38 @@ public final class ParsingExpressionFactory
 
     // ---------------------------------------------------------------------------------------------
 
-    public static ParsingExpression until(ParsingExpression op1, ParsingExpression op2)
+    public static SkipTo until(ParsingExpression op1, ParsingExpression op2)
     {
-        return sequence(zeroMore(not(op2), op1), op2);
+        SkipTo result = new SkipTo();
+        result.body = op1;
+        result.terminator = op2;
+        return result;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public static SkipTo aloUntil(ParsingExpression op1, ParsingExpression op2)
+    {
+        SkipTo result = until(op1, op2);
+        result.atLeastOne = true;
+        return result;
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public static ParsingExpression aloUntil(ParsingExpression op1, ParsingExpression op2)
+    public static SkipTo skipTo(ParsingExpression terminator)
     {
-        return sequence(oneMore(not(op2), op1), op2);
+        return until(any(), terminator);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public static Recover recover(ParsingExpression operand, ParsingExpression sync)
+    {
+        Recover result = new Recover();
+        result.operand = operand;
+        result.sync = sync;
+        return result;
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -25,19 +25,14 @@ public final class Whitespace
     lineComment =
         named$("lineComment", sequence(
             literal("//"),
-            zeroMore(
-                not(EOL),
-                any()))),
+            zeroMore(notCharSet("\n")))),
 
     blockComment =
         named$("blockComment", sequence(
             literal("/*"),
-            zeroMore(choice(
-                reference("blockComment"),
-                sequence(
-                    not(literal("*/")),
-                    any()))),
-            literal("*/"))),
+            until(
+                choice(reference("blockComment"), any()),
+                literal("*/")))),
 
     whitespaceChars =
         named$("whitespaceChars", charSet("  \n\t")),
@@ -0,0 +1,387 @@
+package com.norswap.autumn;
+
+import com.norswap.autumn.expressions.*;
+import com.norswap.util.Array;
+
+/**
+ * A specialized scanner for whitespace expressions (see {@link Grammar#whitespace}), which matches
+ * the same input as the expression without invoking it. Created by {@link #compile}, which only
+ * supports whitespace expressions of the following shape (after grammar transformations):
+ * <p>
+ * A {@link ZeroMore} whose operand is either a single alternative or a {@link Choice} of
+ * alternatives, where each alternative is one of:
+ * <ul>
+ * <li>a {@link CharClass} or a {@link CharClassLoop} (blank characters)</li>
+ * <li>a {@link Sequence} of a {@link Literal} (the opener) and a {@link CharClassLoop} (e.g. a line
+ * comment)</li>
+ * <li>a {@link Sequence} of a {@link Literal} (the opener) and a {@link SkipTo} whose body is {@link
+ * Any} and whose terminator is a {@link Literal} or a {@link CharClass} (e.g. a block comment)</li>
+ * <li>a {@link Sequence} of a {@link Literal} (the opener) and a {@link SkipTo} whose body is a
+ * choice between the alternative itself and {@link Any}, and whose terminator is a {@link Literal}
+ * (a nestable block comment)</li>
+ * <li>a {@link Regular} expression that can't match the empty string</li>
+ * </ul>
+ * A {@link CharClassLoop} that can match zero characters, or a {@link Regular} expression, are also
+ * supported in lieu of the whole whitespace expression.
+ */
+public final class WhitespaceScanner
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final int CLASS      = 0;
+    private static final int CLASS_LOOP = 1;
+    private static final int LOOP       = 2;
+    private static final int SKIP       = 3;
+    private static final int NESTED     = 4;
+    private static final int REGULAR    = 5;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // For each alternative: its kind, its opener (or null), its class (or null), its terminator
+    // literal (or null) and its automaton (or null). For SKIP alternatives, either the class or the
+    // terminator is set.
+
+    private final int[] kinds;
+    private final String[] openers;
+    private final CharClass[] classes;
+    private final String[] terminators;
+    private final Regular[] regulars;
+
+    // Set if the whole whitespace expression is a regular expression.
+
+    private Regular root;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private WhitespaceScanner(int size)
+    {
+        kinds = new int[size];
+        openers = new String[size];
+        classes = new CharClass[size];
+        terminators = new String[size];
+        regulars = new Regular[size];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns a scanner equivalent to the given whitespace expression, or null if the expression
+     * isn't supported (see the class documentation).
+     */
+    public static WhitespaceScanner compile(ParsingExpression whitespace)
+    {
+        if (whitespace instanceof CharClassLoop && !((CharClassLoop) whitespace).atLeastOne)
+        {
+            WhitespaceScanner out = new WhitespaceScanner(1);
+            out.kinds[0] = CLASS_LOOP;
+            out.classes[0] = (CharClass) ((CharClassLoop) whitespace).operand;
+            return out;
+        }
+
+        if (whitespace instanceof Regular)
+        {
+            WhitespaceScanner out = new WhitespaceScanner(0);
+            out.root = (Regular) whitespace;
+            return out;
+        }
+
+        if (!(whitespace instanceof ZeroMore))
+            return null;
+
+        ParsingExpression operand = ((ZeroMore) whitespace).operand;
+
+        ParsingExpression[] alternatives = operand instanceof Choice
+            ? ((Choice) operand).operands
+            : new ParsingExpression[]{ operand };
+
+        WhitespaceScanner out = new WhitespaceScanner(alternatives.length);
+
+        for (int i = 0; i < alternatives.length; ++i)
+            if (!out.compile(i, alternatives[i]))
+                return null;
+
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private boolean compile(int i, ParsingExpression alt)
+    {
+        if (alt instanceof CharClass)
+        {
+            kinds[i] = CLASS;
+            classes[i] = (CharClass) alt;
+            return !classes[i].contains((char) 0);
+        }
+
+        if (alt instanceof CharClassLoop)
+        {
+            // A loop that can match nothing would make the whitespace loop forever.
+            CharClassLoop loop = (CharClassLoop) alt;
+            kinds[i] = CLASS_LOOP;
+            classes[i] = (CharClass) loop.operand;
+            return loop.atLeastOne && !classes[i].contains((char) 0);
+        }
+
+        if (alt instanceof Regular)
+        {
+            kinds[i] = REGULAR;
+            regulars[i] = (Regular) alt;
+            return !regulars[i].accepting[0];
+        }
+
+        if (!(alt instanceof Sequence))
+            return false;
+
+        ParsingExpression[] operands = ((Sequence) alt).operands;
+
+        if (operands.length != 2 || !(operands[0] instanceof Literal))
+            return false;
+
+        openers[i] = ((Literal) operands[0]).string;
+
+        if (openers[i].isEmpty() || openers[i].indexOf(0) >= 0)
+            return false;
+
+        ParsingExpression tail = operands[1];
+
+        if (tail instanceof CharClassLoop)
+        {
+            CharClassLoop loop = (CharClassLoop) tail;
+            kinds[i] = LOOP;
+            classes[i] = (CharClass) loop.operand;
+            return !loop.atLeastOne && !classes[i].contains((char) 0);
+        }
+
+        if (!(tail instanceof SkipTo) || ((SkipTo) tail).atLeastOne)
+            return false;
+
+        SkipTo skip = (SkipTo) tail;
+
+        if (skip.terminator instanceof CharClass)
+        {
+            classes[i] = (CharClass) skip.terminator;
+
+            if (classes[i].contains((char) 0))
+                return false;
+        }
+        else if (skip.terminator instanceof Literal)
+        {
+            terminators[i] = ((Literal) skip.terminator).string;
+
+            if (terminators[i].isEmpty() || terminators[i].indexOf(0) >= 0)
+                return false;
+        }
+        else
+        {
+            return false;
+        }
+
+        if (skip.body instanceof Any)
+        {
+            kinds[i] = SKIP;
+            return true;
+        }
+
+        if (!(skip.body instanceof Choice) || terminators[i] == null)
+            return false;
+
+        ParsingExpression[] body = ((Choice) skip.body).operands;
+        kinds[i] = NESTED;
+
+        return body.length == 2
+            && body[0] == alt
+            && body[1] instanceof Any;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the end of the whitespace starting at the given position (which is the position
+     * itself if there is no whitespace there).
+     */
+    public int scan(CharSequence text, int position)
+    {
+        return scan(text, null, position);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #scan(CharSequence, int)}, reading the characters from {@link Parser#bytes} if
+     * available.
+     */
+    public int scan(Parser parser, int position)
+    {
+        return scan(parser.text, parser.bytes, position);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    // The characters are read from bytes if not null (see Parser#bytes), from text otherwise.
+
+    private int scan(CharSequence text, byte[] bytes, int position)
+    {
+        if (root != null)
+        {
+            int end = bytes != null
+                ? root.match(bytes, position)
+                : root.match(text, position);
+
+            return Math.max(end, position);
+        }
+
+        loop: while (true)
+        {
+            for (int i = 0; i < kinds.length; ++i)
+            {
+                int end = scan(text, bytes, i, position);
+
+                if (end > position)
+                {
+                    position = end;
+                    continue loop;
+                }
+            }
+
+            return position;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the end position of the given alternative invoked at the given position, or -1 if
+     * the alternative fails.
+     */
+    private int scan(CharSequence text, byte[] bytes, int i, int position)
+    {
+        switch (kinds[i])
+        {
+            case CLASS:
+                return classes[i].contains(charAt(text, bytes, position))
+                    ? position + 1
+                    : -1;
+
+            case CLASS_LOOP:
+                return bytes != null
+                    ? classes[i].scan(bytes, position)
+                    : classes[i].scan(text, position);
+
+            case REGULAR:
+                return bytes != null
+                    ? regulars[i].match(bytes, position)
+                    : regulars[i].match(text, position);
+        }
+
+        if (!regionMatches(text, position, openers[i]))
+            return -1;
+
+        position += openers[i].length();
+
+        switch (kinds[i])
+        {
+            case LOOP:
+                return bytes != null
+                    ? classes[i].scan(bytes, position)
+                    : classes[i].scan(text, position);
+
+            case SKIP:
+                return terminators[i] != null
+                    ? skipTo(text, bytes, position, terminators[i])
+                    : skipTo(text, bytes, position, classes[i]);
+
+            default: // NESTED
+                return skipNested(text, position, openers[i], terminators[i]);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static char charAt(CharSequence text, byte[] bytes, int position)
+    {
+        return bytes != null
+            ? (char) (bytes[position] & 0xFF)
+            : text.charAt(position);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static int skipTo(CharSequence text, byte[] bytes, int position, String terminator)
+    {
+        char first = terminator.charAt(0);
+
+        while (true)
+        {
+            char c = charAt(text, bytes, position);
+
+            if (c == first && regionMatches(text, position, terminator))
+                return position + terminator.length();
+
+            if (c == 0)
+                return -1;
+
+            ++position;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static int skipTo(CharSequence text, byte[] bytes, int position, CharClass terminator)
+    {
+        char c;
+
+        while (!terminator.contains(c = charAt(text, bytes, position)))
+        {
+            if (c == 0)
+                return -1;
+
+            ++position;
+        }
+
+        return position + 1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static int skipNested(CharSequence text, int position, String opener, String terminator)
+    {
+        while (true)
+        {
+            if (regionMatches(text, position, terminator))
+                return position + terminator.length();
+
+            if (regionMatches(text, position, opener))
+            {
+                int end = skipNested(text, position + opener.length(), opener, terminator);
+
+                if (end >= 0)
+                {
+                    position = end;
+                    continue;
+                }
+            }
+
+            if (text.charAt(position) == 0)
+                return -1;
+
+            ++position;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static boolean regionMatches(CharSequence text, int position, String string)
+    {
+        if (text instanceof String)
+            return ((String) text).regionMatches(position, string, 0, string.length());
+
+        for (int i = 0; i < string.length(); ++i)
+            if (text.charAt(position + i) != string.charAt(i))
+                return false;
+
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
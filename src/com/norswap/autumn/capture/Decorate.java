@@ -14,5 +14,16 @@ public interface Decorate
 
     void decorate(ParseTree tree);
 
+    /**
+     * Applies the decoration to the given node of a flat parse tree. The default implementation
+     * throws an exception: decorations that do not override it can't be used when the parser
+     * builds flat parse trees.
+     */
+    default void decorate(FlatParseTree tree, int node)
+    {
+        throw new UnsupportedOperationException(
+            getClass().getName() + " does not support flat parse trees");
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 }
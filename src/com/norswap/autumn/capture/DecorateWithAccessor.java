@@ -25,6 +25,14 @@ public final class DecorateWithAccessor implements Decorate
         tree.accessor = accessor;
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void decorate(FlatParseTree tree, int node)
+    {
+        tree.setAccessor(node, accessor);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
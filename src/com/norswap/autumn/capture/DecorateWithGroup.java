@@ -25,6 +25,14 @@ public class DecorateWithGroup implements Decorate
         tree.accessor = group;
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void decorate(FlatParseTree tree, int node)
+    {
+        tree.setAccessor(node, group);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
@@ -33,6 +33,14 @@ public final class DecorateWithKind implements Decorate
         tree.kinds.add(kind);
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void decorate(FlatParseTree tree, int node)
+    {
+        tree.addKind(node, kind);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
@@ -22,7 +22,15 @@ public final class DecorateWithSubtree implements Decorate
         tree.value = subtree.value;
         tree.kind = subtree.kind;
         tree.kinds = subtree.kinds;
-        tree.children = subtree.children;
+        tree.children = subtree.children();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void decorate(FlatParseTree tree, int node)
+    {
+        tree.graft(node, subtree);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,399 @@
+package com.norswap.autumn.capture;
+
+import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.util.Array;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A parse tree whose nodes are stored in a set of parallel arrays, as an alternative to a tree of
+ * {@link ParseTree} objects. Built by {@link ParseTreeBuild#buildFlat} when {@link
+ * ParserConfiguration#flatParseTree} is set.
+ * <p>
+ * Nodes are identified by their index in the arrays; the root is node 0. For each node, the
+ * arrays hold its parent, first child and next sibling (or -1 if there is none), its accessor and
+ * principal kind (as indices in a table of strings), its set of kinds (as an index in a table of
+ * interned sets), and the offsets of its captured text.
+ * <p>
+ * The captured text is only copied when it is requested. The accessors, kinds and sets of kinds
+ * are shared between all nodes that have them.
+ * <p>
+ * {@link ParseTree} views over the nodes can be obtained with {@link #tree}. Views are created
+ * lazily, when the user walks to them, and are cached. The children of a view are only created
+ * when they are requested.
+ */
+public final class FlatParseTree
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The input text from which the captured text is taken.
+     */
+    public final CharSequence text;
+
+    private int size;
+
+    private int[] parent        = new int[64];
+    private int[] firstChild    = new int[64];
+    private int[] lastChild     = new int[64];
+    private int[] nextSibling   = new int[64];
+    private int[] accessor      = new int[64];
+    private int[] kind          = new int[64];
+    private int[] kinds         = new int[64];
+
+    // If valueStart[i] is -1, the node has no value. If it is smaller than -1, the value is
+    // the string at index (-2 - valueStart[i]) in the string table.
+
+    private int[] valueStart    = new int[64];
+    private int[] valueEnd      = new int[64];
+
+    private ParseTree[] views;
+
+    // ---------------------------------------------------------------------------------------------
+
+    private final Array<String> strings = new Array<>();
+    private final HashMap<String, Integer> stringIds = new HashMap<>();
+
+    private final Array<Set<String>> kindSets = new Array<>();
+    private final HashMap<Set<String>, Integer> kindSetIds = new HashMap<>();
+
+    // Maps (kind set id + 1, kind string id) pairs to the id of the kind set that results from the
+    // addition of the kind.
+
+    private final HashMap<Long, Integer> kindSetAdditions = new HashMap<>();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    FlatParseTree(CharSequence text)
+    {
+        this.text = text;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTION
+
+    /**
+     * Adds a new node as the last child of the given parent (or without parent if {@code parent}
+     * is -1), with the captured text delimited by the given offsets ({@code valueStart} is -1 if
+     * there is no captured text). Returns the index of the new node.
+     */
+    int add(int parent, int valueStart, int valueEnd)
+    {
+        if (size == this.parent.length)
+            grow();
+
+        int node = size++;
+        this.parent[node]       = parent;
+        this.firstChild[node]   = -1;
+        this.lastChild[node]    = -1;
+        this.nextSibling[node]  = -1;
+        this.accessor[node]     = -1;
+        this.kind[node]         = -1;
+        this.kinds[node]        = -1;
+        this.valueStart[node]   = valueStart;
+        this.valueEnd[node]     = valueEnd;
+
+        if (parent >= 0)
+        {
+            if (lastChild[parent] < 0)
+                firstChild[parent] = node;
+            else
+                nextSibling[lastChild[parent]] = node;
+
+            lastChild[parent] = node;
+        }
+
+        return node;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void grow()
+    {
+        int length = parent.length * 2;
+        parent      = Arrays.copyOf(parent,      length);
+        firstChild  = Arrays.copyOf(firstChild,  length);
+        lastChild   = Arrays.copyOf(lastChild,   length);
+        nextSibling = Arrays.copyOf(nextSibling, length);
+        accessor    = Arrays.copyOf(accessor,    length);
+        kind        = Arrays.copyOf(kind,        length);
+        kinds       = Arrays.copyOf(kinds,       length);
+        valueStart  = Arrays.copyOf(valueStart,  length);
+        valueEnd    = Arrays.copyOf(valueEnd,    length);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private int stringId(String string)
+    {
+        Integer id = stringIds.get(string);
+
+        if (id == null)
+        {
+            id = strings.size();
+            strings.add(string);
+            stringIds.put(string, id);
+        }
+
+        return id;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private int kindSetId(Set<String> set)
+    {
+        Integer id = kindSetIds.get(set);
+
+        if (id == null)
+        {
+            id = kindSets.size();
+            kindSets.add(set);
+            kindSetIds.put(set, id);
+        }
+
+        return id;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the accessor of the node.
+     */
+    void setAccessor(int node, String accessor)
+    {
+        this.accessor[node] = stringId(accessor);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds a kind to the node. If the node has no kind yet, also sets its principal kind.
+     */
+    void addKind(int node, String kind)
+    {
+        int kindId = stringId(kind);
+        int set = kinds[node];
+
+        if (set < 0)
+            this.kind[node] = kindId;
+
+        long key = (long) (set + 1) << 32 | kindId;
+        Integer out = kindSetAdditions.get(key);
+
+        if (out == null)
+        {
+            HashSet<String> added = set < 0
+                ? new HashSet<>()
+                : new HashSet<>(kindSets.get(set));
+
+            added.add(kind);
+            out = kindSetId(added);
+            kindSetAdditions.put(key, out);
+        }
+
+        kinds[node] = out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces the content of the node (except its parent) by that of the given tree, which is
+     * copied into this tree.
+     */
+    void graft(int node, ParseTree tree)
+    {
+        accessor[node]      = tree.accessor == null ? -1 : stringId(tree.accessor);
+        kind[node]          = tree.kind     == null ? -1 : stringId(tree.kind);
+        kinds[node]         = tree.kinds    == null ? -1 : kindSetId(new HashSet<>(tree.kinds));
+        valueStart[node]    = tree.value    == null ? -1 : -2 - stringId(tree.value);
+        firstChild[node]    = -1;
+        lastChild[node]     = -1;
+
+        for (ParseTree child: tree.children())
+            graft(add(node, -1, 0), child);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // NODES
+
+    /**
+     * Returns the number of nodes in the tree.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the parent of the node, or -1 for the root.
+     */
+    public int parent(int node)
+    {
+        return parent[node];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the first child of the node, or -1 if it has no children.
+     */
+    public int firstChild(int node)
+    {
+        return firstChild[node];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the last child of the node, or -1 if it has no children.
+     */
+    int lastChild(int node)
+    {
+        return lastChild[node];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the sibling that follows the node, or -1 if it is the last child of its parent.
+     */
+    public int nextSibling(int node)
+    {
+        return nextSibling[node];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the accessor of the node, or null.
+     */
+    public String accessor(int node)
+    {
+        return accessor[node] < 0 ? null : strings.get(accessor[node]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the principal kind of the node, or null.
+     */
+    public String kind(int node)
+    {
+        return kind[node] < 0 ? null : strings.get(kind[node]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the set of kinds of the node, or null if it has none. The set must not be modified.
+     */
+    public Set<String> kinds(int node)
+    {
+        return kinds[node] < 0 ? null : kindSets.get(kinds[node]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Does the node have the given kind?
+     */
+    public boolean hasKind(int node, String kind)
+    {
+        return kinds[node] >= 0 && kindSets.get(kinds[node]).contains(kind);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the start offset of the text captured by the node, or -1 if the node has no captured
+     * text or if its text doesn't originate from the input.
+     */
+    public int valueStart(int node)
+    {
+        return valueStart[node] < 0 ? -1 : valueStart[node];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the end offset of the text captured by the node, or -1 if the node has no captured
+     * text or if its text doesn't originate from the input.
+     */
+    public int valueEnd(int node)
+    {
+        return valueStart[node] < 0 ? -1 : valueEnd[node];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the text captured by the node, or null.
+     */
+    public String value(int node)
+    {
+        int start = valueStart[node];
+
+        return start == -1
+            ? null
+            : start < -1
+                ? strings.get(-2 - start)
+                : text.subSequence(start, valueEnd[node]).toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // VIEWS
+
+    /**
+     * Returns the view of the root, or null if the tree is empty.
+     */
+    public ParseTree root()
+    {
+        return size == 0 ? null : tree(0);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the {@link ParseTree} view of the node, creating it if necessary.
+     */
+    public ParseTree tree(int node)
+    {
+        if (views == null)
+            views = new ParseTree[size];
+
+        ParseTree out = views[node];
+
+        if (out == null)
+            out = views[node] = new ParseTree(this, node);
+
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the views of the children of the node.
+     */
+    ParseTree[] children(int node)
+    {
+        int count = 0;
+
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child])
+            ++count;
+
+        ParseTree[] out = new ParseTree[count];
+        int i = 0;
+
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child])
+            out[i++] = tree(child);
+
+        return out;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
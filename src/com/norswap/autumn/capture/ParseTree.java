@@ -13,6 +13,9 @@ import static com.norswap.util.JObjects.same;
 
 /**
  * A parse tree node, as seen by the parser's user.
+ * <p>
+ * A node may be a view over a node of a {@link FlatParseTree}, in which case its children are only
+ * created when they are first requested.
  */
 public final class ParseTree
 {
@@ -22,7 +25,14 @@ public final class ParseTree
     public String value;
     public String kind;
     Set<String> kinds;
-    @NonNull ParseTree[] children;
+
+    /**
+     * Null until first requested if the node is a view over a flat tree.
+     */
+    ParseTree[] children;
+
+    private FlatParseTree flat;
+    private int node;
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -48,6 +58,21 @@ public final class ParseTree
         this.children = children;
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a view over the given node of the flat tree.
+     */
+    ParseTree(FlatParseTree flat, int node)
+    {
+        this.accessor = flat.accessor(node);
+        this.value = flat.value(node);
+        this.kind = flat.kind(node);
+        this.kinds = flat.kinds(node);
+        this.flat = flat;
+        this.node = node;
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
     // KINDS
 
@@ -77,7 +102,7 @@ public final class ParseTree
      */
     public ParseTree get(String accessor)
     {
-        return JArrays.first(children, x -> x.accessor.equals(accessor));
+        return JArrays.first(children(), x -> x.accessor.equals(accessor));
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -98,7 +123,7 @@ public final class ParseTree
      */
     public Array<ParseTree> group(String accessor)
     {
-        return JArrays.filter(children, x -> x.accessor.equals(accessor));
+        return JArrays.filter(children(), x -> x.accessor.equals(accessor));
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -109,6 +134,9 @@ public final class ParseTree
      */
     public ParseTree[] children()
     {
+        if (children == null)
+            children = flat.children(node);
+
         return children;
     }
 
@@ -120,7 +148,7 @@ public final class ParseTree
      */
     public ParseTree child()
     {
-        return children.length > 0 ? children[0] : null;
+        return children().length > 0 ? children[0] : null;
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -130,7 +158,7 @@ public final class ParseTree
      */
     public ParseTree child(int i)
     {
-        return i >= 0 && i < children.length ? children[i] : null;
+        return i >= 0 && i < children().length ? children[i] : null;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -141,7 +169,7 @@ public final class ParseTree
      */
     public Array<ParseTree> allWithKind(String kind)
     {
-        return JArrays.filter(children, x -> x.hasKind(kind));
+        return JArrays.filter(children(), x -> x.hasKind(kind));
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -214,7 +242,7 @@ public final class ParseTree
         nodeToString(builder);
         builder.append("\n");
 
-        for (ParseTree child: children)
+        for (ParseTree child: children())
         {
             child.toString(builder, depth + 1);
         }
@@ -235,7 +263,7 @@ public final class ParseTree
         && same(value,     that.value)
         && same(kind,      that.kind)
         && same(kinds,     that.kinds)
-        && Arrays.equals(children, that.children);
+        && Arrays.equals(children(), that.children());
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -247,7 +275,7 @@ public final class ParseTree
         result = 31 * result + hash(value);
         result = 31 * result + hash(kind);
         result = 31 * result + hash(kinds);
-        result = 31 * result + hash(children);
+        result = 31 * result + hash(children());
         return result;
     }
 
@@ -1,6 +1,8 @@
 package com.norswap.autumn.capture;
 
+import com.norswap.autumn.errors.ErrorChanges;
 import com.norswap.autumn.expressions.Capture;
+import com.norswap.autumn.expressions.Recover;
 import com.norswap.util.Array;
 import com.norswap.util.JArrays;
 import com.norswap.util.Strings;
@@ -18,9 +20,13 @@ import java.util.Arrays;
  * For instances with the {@link #capture} flag, the changes described by the decorations are
  * applied to the node itself.
  * <p>
- * {@link #value} describe the matched text for node with text capture. This isn't a decoration,
- * because the captured text is only known after parsing the children of a {@link Capture} parsing
- * expression, and the decorations are added before that.
+ * {@link #valueStart} and {@link #valueEnd} delimit the matched text for node with text capture.
+ * This isn't a decoration, because the captured text is only known after parsing the children of a
+ * {@link Capture} parsing expression, and the decorations are added before that. The text itself is
+ * only copied when the final tree is built.
+ * <p>
+ * The final tree is either built as a tree of {@link ParseTree} objects ({@link #build}), or as a
+ * {@link FlatParseTree} ({@link #buildFlat}).
  */
 public final class ParseTreeBuild
 {
@@ -30,7 +36,28 @@ public final class ParseTreeBuild
 
     private final @NonNull Decorate[] decorations;
     private @NonNull Array<ParseTreeBuild> children = EMPTY_BUILD;
-    public String value;
+
+    /**
+     * The start of the captured text, or -1 if there is no captured text.
+     */
+    public int valueStart = -1;
+
+    /**
+     * The end of the captured text.
+     */
+    public int valueEnd;
+
+    /**
+     * For the error nodes inserted by {@link Recover}, the errors that caused the recovery; null
+     * otherwise.
+     */
+    public ErrorChanges error;
+
+    /**
+     * Whether this node or one of its descendants is an error node. May remain set after the error
+     * nodes are removed by {@link #truncate}.
+     */
+    private boolean hasErrors;
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -51,6 +78,7 @@ public final class ParseTreeBuild
     {
         if (children == EMPTY_BUILD) children = new Array<>();
         children.add(child);
+        hasErrors |= child.hasErrors;
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -59,6 +87,9 @@ public final class ParseTreeBuild
     {
         if (children == EMPTY_BUILD) children = new Array<>();
         children.addAll(array);
+
+        for (ParseTreeBuild child: array)
+            hasErrors |= child.hasErrors;
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -94,18 +125,99 @@ public final class ParseTreeBuild
 
     // ---------------------------------------------------------------------------------------------
 
-    public @NonNull ParseTree[] build()
+    /**
+     * Makes this node an error node, recording the errors that caused the recovery.
+     */
+    public void setError(ErrorChanges error)
+    {
+        this.error = error;
+        this.hasErrors = true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates whether this node or one of its descendants may be an error node.
+     */
+    public boolean hasErrors()
+    {
+        return hasErrors;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds the errors of the error nodes in this tree to {@code out}, in input order.
+     */
+    public void collectErrors(Array<ErrorChanges> out)
+    {
+        if (!hasErrors)
+            return;
+
+        if (error != null)
+            out.add(error);
+
+        for (ParseTreeBuild child: children)
+            child.collectErrors(out);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a deep copy of this node in which the captured text positions are shifted by {@code
+     * delta}.
+     */
+    public ParseTreeBuild shift(int delta)
     {
-        ParseTree[] concatenatedChildren = children == EMPTY_BUILD
-            ? EMPTY_TREE
-            : JArrays.concat(
-                ParseTree[]::new,
-                children.mapToArray(
-                    ParseTreeBuild::build,
-                    ParseTree[][]::new));
+        ParseTreeBuild out = new ParseTreeBuild(capture, decorations);
+        out.valueStart = valueStart < 0 ? valueStart : valueStart + delta;
+        out.valueEnd = valueStart < 0 ? valueEnd : valueEnd + delta;
+        out.error = error;
+        out.hasErrors = hasErrors;
+
+        if (children != EMPTY_BUILD)
+            out.children = children.map(child -> child.shift(delta));
+
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the text captured by this node, taken from the given input text, or null if there is
+     * no captured text.
+     */
+    public String value(CharSequence text)
+    {
+        return valueStart < 0
+            ? null
+            : text.subSequence(valueStart, valueEnd).toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Builds the parse tree nodes described by this node, taking the captured text from the given
+     * input text.
+     */
+    public @NonNull ParseTree[] build(CharSequence text)
+    {
+        ParseTree[] concatenatedChildren = EMPTY_TREE;
+
+        if (children != EMPTY_BUILD)
+        {
+            // A plain loop keeps the stack frames per tree level to a minimum.
+
+            ParseTree[][] built = new ParseTree[children.size()][];
+
+            for (int i = 0; i < built.length; ++i)
+                built[i] = children.get(i).build(text);
+
+            concatenatedChildren = JArrays.concat(ParseTree[]::new, built);
+        }
 
         ParseTree[] out = capture
-            ? new ParseTree[]{ new ParseTree(value, concatenatedChildren) }
+            ? new ParseTree[]{ new ParseTree(value(text), concatenatedChildren) }
             : concatenatedChildren;
 
         for (ParseTree node: out)
@@ -115,6 +227,56 @@ public final class ParseTreeBuild
         return out;
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Builds a flat parse tree whose root is the node described by this node, which must have the
+     * {@link #capture} flag. The captured text is taken from the given input text.
+     */
+    public FlatParseTree buildFlat(CharSequence text)
+    {
+        FlatParseTree out = new FlatParseTree(text);
+        buildFlat(out, -1);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the nodes described by this node to the children of {@code parent} in the tree.
+     */
+    private void buildFlat(FlatParseTree tree, int parent)
+    {
+        if (capture)
+        {
+            int node = tree.add(parent, valueStart, valueEnd);
+
+            for (ParseTreeBuild child: children)
+                child.buildFlat(tree, node);
+
+            for (Decorate deco: decorations)
+                deco.decorate(tree, node);
+        }
+        else
+        {
+            int previous = tree.lastChild(parent);
+
+            for (ParseTreeBuild child: children)
+                child.buildFlat(tree, parent);
+
+            if (decorations.length == 0)
+                return;
+
+            int node = previous < 0
+                ? tree.firstChild(parent)
+                : tree.nextSibling(previous);
+
+            for (; node >= 0; node = tree.nextSibling(node))
+                for (Decorate deco: decorations)
+                    deco.decorate(tree, node);
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
     // TO STRING
 
@@ -17,7 +17,7 @@ public final class DefaultMemoHandler implements MemoHandler
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    private HashMap<ParseInputs, ParseChanges> store;
+    private HashMap<ParseInputs, ParseChanges> store = new HashMap<>();
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
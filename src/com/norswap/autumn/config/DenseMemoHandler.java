@@ -0,0 +1,379 @@
+package com.norswap.autumn.config;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.Memo;
+import com.norswap.autumn.state.ParseChanges;
+import com.norswap.autumn.state.ParseInputs;
+import com.norswap.autumn.state.ParseState;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static com.norswap.util.Caster.cast;
+
+/**
+ * A memoization strategy that stores invocation results in dense tables indexed by input position
+ * and by the slot of the {@link Memo} expression ({@link Memo#slot}), in the style of the
+ * per-position chunks of Rats!.
+ * <p>
+ * For each input position where a memoized invocation occured, we keep a column of primitive ints
+ * holding, for each slot, the end position of the invocation and the parts of the inputs that are
+ * not implied by the position: the black start position and whether errors were being recorded.
+ * Changesets are only retained for successful invocations, failures are answered by a shared
+ * changeset.
+ * <p>
+ * This avoids allocating and hashing a {@link ParseInputs} object for each lookup. It is only valid
+ * when the other inputs are in their default configuration (see {@link
+ * ParseState#hasDefaultInputs}). Otherwise, or if the expression has no slot, we fall back to the
+ * strategy of {@link DefaultMemoHandler}: a map keyed by the full parse inputs (we keep one such
+ * map per input position).
+ * <p>
+ * <strong>Sliding Window</strong>
+ * <p>
+ * By default, every changeset that the handler is asked to memoize is retained until the end of the
+ * parse. In sliding window mode, the handler evicts all results memoized for positions that precede
+ * the backtrack floor ({@link ParseState#backtrackFloor}), since no expression will ever be
+ * invoked there again. The storage for evicted positions is reclaimed as the window moves forward.
+ * <p>
+ * Independently, a cap can be placed on the estimated size of the memoized data. When the cap is
+ * reached, the handler stops memoizing new results (parsing proceeds without memoization) until
+ * eviction brings the size back under the cap.
+ * <p>
+ * The peak estimated size is reported through {@link #peakSize}.
+ */
+public final class DenseMemoHandler implements MemoHandler
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final int INITIAL_POSITIONS = 1024;
+
+    private static final int INITIAL_SLOTS = 8;
+
+    private static final ParseChanges FAILURE = ParseChanges.failure();
+
+    // Rough estimates (in bytes) used to compute the size of the memoized data.
+
+    private static final int ARRAY_SIZE = 16;
+    private static final int CHANGES_SIZE = 64;
+    private static final int MAP_SIZE = 64;
+    private static final int MAP_ENTRY_SIZE = 192;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final boolean slidingWindow;
+
+    private final long byteCap;
+
+    /**
+     * The input position corresponding to index 0 of {@link #columns}, {@link #results} and {@link
+     * #fallbacks}.
+     */
+    private int base = 0;
+
+    /**
+     * All positions before this one have been evicted. Always greater or equal to {@link #base}.
+     */
+    private int evicted = 0;
+
+    /**
+     * Maps input positions to columns. Each column holds two ints per slot: 0 if nothing has been
+     * memoized for the slot, else the end position + 2 (hence 1 for failures); followed by the
+     * black start position shifted left by one, or-ed with 1 if errors were being recorded.
+     */
+    private int[][] columns = new int[INITIAL_POSITIONS][];
+
+    /**
+     * Maps input positions to the changesets of successful invocations, indexed by slot.
+     */
+    private ParseChanges[][] results = new ParseChanges[INITIAL_POSITIONS][];
+
+    /**
+     * Maps input positions to a store for the invocations that can't be keyed by position and
+     * slot.
+     */
+    private HashMap<ParseInputs, ParseChanges>[] fallbacks =
+        cast(new HashMap<?, ?>[INITIAL_POSITIONS]);
+
+    private long size = 0;
+
+    private long peakSize = 0;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Creates a handler that memoizes every changeset it is asked to, without limit.
+     */
+    public DenseMemoHandler()
+    {
+        this(false, Long.MAX_VALUE);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a handler that optionally evicts unreachable results (see "Sliding Window" in the
+     * class documentation) and stops memoizing when the estimated size of the memoized data exceeds
+     * {@code byteCap}.
+     */
+    public DenseMemoHandler(boolean slidingWindow, long byteCap)
+    {
+        this.slidingWindow = slidingWindow;
+        this.byteCap = byteCap;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void memoize(ParsingExpression pe, ParseState state, ParseChanges changeset)
+    {
+        if (slidingWindow)
+            evict(state.backtrackFloor());
+
+        int start = state.start;
+
+        if (start < evicted || size >= byteCap)
+            return;
+
+        int i = index(start);
+        int slot = slot(pe);
+
+        if (slot < 0 || !state.hasDefaultInputs())
+        {
+            HashMap<ParseInputs, ParseChanges> map = fallbacks[i];
+
+            if (map == null)
+            {
+                map = fallbacks[i] = new HashMap<>();
+                size += MAP_SIZE;
+            }
+
+            if (map.put(state.inputs(pe), changeset) == null)
+                size += MAP_ENTRY_SIZE;
+        }
+        else
+        {
+            int[] column = column(i, slot);
+            column[2 * slot] = changeset.end + 2;
+            column[2 * slot + 1] = key(state);
+
+            ParseChanges[] row = results[i];
+            ParseChanges previous = row != null && slot < row.length ? row[slot] : null;
+
+            if (changeset.succeeded())
+            {
+                if (row == null || slot >= row.length)
+                {
+                    int length = column.length / 2;
+                    size += 8 * (row == null ? length : length - row.length);
+                    size += row == null ? ARRAY_SIZE : 0;
+
+                    row = results[i] = row == null
+                        ? new ParseChanges[length]
+                        : Arrays.copyOf(row, length);
+                }
+
+                row[slot] = changeset;
+                size += previous == null ? CHANGES_SIZE : 0;
+            }
+            else if (previous != null)
+            {
+                row[slot] = null;
+                size -= CHANGES_SIZE;
+            }
+        }
+
+        if (size > peakSize)
+            peakSize = size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public ParseChanges get(ParsingExpression pe, ParseState state)
+    {
+        int i = state.start - base;
+
+        if (i < 0 || i >= columns.length)
+            return null;
+
+        int slot = slot(pe);
+
+        if (slot < 0 || !state.hasDefaultInputs())
+        {
+            HashMap<ParseInputs, ParseChanges> map = fallbacks[i];
+
+            return map == null
+                ? null
+                : map.get(state.inputs(pe));
+        }
+
+        int[] column = columns[i];
+
+        if (column == null || 2 * slot >= column.length)
+            return null;
+
+        int end = column[2 * slot];
+
+        if (end == 0 || column[2 * slot + 1] != key(state))
+            return null;
+
+        return end == 1
+            ? FAILURE
+            : results[i][slot];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the peak estimated size of the memoized data (in bytes).
+     */
+    @Override
+    public long peakSize()
+    {
+        return peakSize;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Only in sliding window mode.
+     */
+    @Override
+    public boolean usesBacktrackFloor()
+    {
+        return slidingWindow;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static int slot(ParsingExpression pe)
+    {
+        return pe instanceof Memo
+            ? ((Memo) pe).slot
+            : -1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static int key(ParseState state)
+    {
+        return state.blackStart << 1 | (state.recordErrors ? 1 : 0);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the index corresponding to the given position, making room for it if necessary:
+     * reclaiming the room used by evicted positions if they make up at least half of the tables,
+     * and growing the tables otherwise.
+     */
+    private int index(int position)
+    {
+        int i = position - base;
+
+        if (i < columns.length)
+            return i;
+
+        int shift = evicted - base;
+
+        if (shift >= columns.length / 2)
+        {
+            // The evicted positions may extend past the end of the tables.
+            int length = Math.max(columns.length - shift, 0);
+
+            if (length > 0)
+            {
+                System.arraycopy(columns,   shift, columns,   0, length);
+                System.arraycopy(results,   shift, results,   0, length);
+                System.arraycopy(fallbacks, shift, fallbacks, 0, length);
+            }
+
+            Arrays.fill(columns,   length, columns.length,   null);
+            Arrays.fill(results,   length, results.length,   null);
+            Arrays.fill(fallbacks, length, fallbacks.length, null);
+            base = evicted;
+            i -= shift;
+        }
+
+        if (i >= columns.length)
+        {
+            int length = Math.max(i + 1, columns.length * 2);
+            columns   = Arrays.copyOf(columns,   length);
+            results   = Arrays.copyOf(results,   length);
+            fallbacks = Arrays.copyOf(fallbacks, length);
+        }
+
+        return i;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the column at the given index, making sure it is large enough to hold the given slot.
+     */
+    private int[] column(int i, int slot)
+    {
+        int[] column = columns[i];
+
+        if (column == null)
+        {
+            column = columns[i] = new int[2 * Math.max(slot + 1, INITIAL_SLOTS)];
+            size += ARRAY_SIZE + 4 * column.length;
+        }
+        else if (2 * slot >= column.length)
+        {
+            int length = 2 * Math.max(slot + 1, column.length);
+            size += 4 * (length - column.length);
+            column = columns[i] = Arrays.copyOf(column, length);
+        }
+
+        return column;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Evicts all results memoized before the given position.
+     */
+    private void evict(int position)
+    {
+        if (position <= evicted)
+            return;
+
+        int end = Math.min(position - base, columns.length);
+
+        for (int i = evicted - base; i < end; ++i)
+        {
+            int[] column = columns[i];
+            ParseChanges[] row = results[i];
+            HashMap<ParseInputs, ParseChanges> map = fallbacks[i];
+
+            if (column != null)
+            {
+                size -= ARRAY_SIZE + 4 * column.length;
+                columns[i] = null;
+            }
+
+            if (row != null)
+            {
+                size -= ARRAY_SIZE + 8 * row.length;
+
+                for (ParseChanges changes: row)
+                    if (changes != null)
+                        size -= CHANGES_SIZE;
+
+                results[i] = null;
+            }
+
+            if (map != null)
+            {
+                size -= MAP_SIZE + MAP_ENTRY_SIZE * map.size();
+                fallbacks[i] = null;
+            }
+        }
+
+        evicted = position;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -1,5 +1,6 @@
 package com.norswap.autumn.config;
 
+import com.norswap.autumn.ParseResult;
 import com.norswap.autumn.state.ParseChanges;
 import com.norswap.autumn.state.ParseState;
 import com.norswap.autumn.ParsingExpression;
@@ -33,5 +34,30 @@ public interface MemoHandler
      */
     ParseChanges get(ParsingExpression pe, ParseState state);
 
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an estimate of the peak amount of memory (in bytes) used by the handler to hold
+     * memoized data during the parse; or -1 if the handler does not keep track of this.
+     * <p>
+     * This is reported in {@link ParseResult#memoPeakSize}.
+     */
+    default long peakSize()
+    {
+        return -1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the handler calls {@link ParseState#backtrackFloor}. If it doesn't, the
+     * parse state doesn't keep track of backtrack points. Must not change during the lifetime of
+     * the handler.
+     */
+    default boolean usesBacktrackFloor()
+    {
+        return false;
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 }
@@ -1,7 +1,17 @@
 package com.norswap.autumn.config;
 
+import com.norswap.autumn.ParseResult;
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.capture.FlatParseTree;
+import com.norswap.autumn.capture.ParseTree;
 import com.norswap.autumn.errors.DefaultErrorState;
 import com.norswap.autumn.errors.ErrorState;
+import com.norswap.autumn.errors.NullErrorState;
+import com.norswap.autumn.expressions.Capture;
+import com.norswap.autumn.expressions.Recover;
+import com.norswap.autumn.extensions.tracer.TraceRecorder;
+import com.norswap.autumn.extensions.tracer.TraceRecorderExtension;
+import com.norswap.autumn.source.Source;
 
 import java.util.function.Supplier;
 
@@ -28,6 +38,51 @@ public interface ParserConfiguration
 
     MemoHandler memoHandler();
 
+    /**
+     * Indicates whether the parser should build a {@link FlatParseTree} rather than a tree of
+     * {@link ParseTree} objects. In this case, {@link ParseResult#tree} is a view over the root of
+     * the flat tree, and the other nodes are created lazily.
+     */
+    default boolean flatParseTree() { return false; }
+
+    /**
+     * The recorder in which to record trace events, for grammars that use the {@link
+     * TraceRecorderExtension}; or null (the default) if no events should be recorded.
+     */
+    default TraceRecorder traceRecorder() { return null; }
+
+    /**
+     * Indicates whether the parser may run in byte mode: if the source text is representable with
+     * a byte per character (see {@link Source#bytes}), the expressions that match characters read
+     * them from {@link Parser#bytes} instead of {@link Parser#text}. Disabled by default.
+     * <p>
+     * The text of a source is converted once (see {@link Source#bytes}), in a single pass that
+     * costs about 1% of the time it takes to parse it with the Java grammar. Parsing in byte mode
+     * is not measurably faster on Java source files, so it is only worth enabling for grammars
+     * that spend most of their time matching characters.
+     */
+    default boolean byteMode() { return false; }
+
+    /**
+     * Indicates whether the parser should build a parse tree. If not, {@link Capture} expressions
+     * do not capture anything and {@link ParseResult#tree} is null. Grammars whose expressions
+     * read the parse tree during the parse (e.g. dynamic extensions) need the parse tree. Enabled
+     * by default.
+     */
+    default boolean parseTree() { return true; }
+
+    /**
+     * Indicates whether the parse should run in two phases. The first phase recognizes the input
+     * without recording errors (using a {@link NullErrorState}). If it fails to match the whole
+     * input or recovers from errors (see {@link Recover}), the second phase parses the input again
+     * with the error state of the configuration, in order to produce the error reports. See {@link
+     * ParseResult#phase}.
+     * <p>
+     * This pays off when most inputs are valid. Note that on failure, the side effects of the parse
+     * that are external to the parser (such as trace events) happen twice. Disabled by default.
+     */
+    default boolean twoPhase() { return false; }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     class Builder
@@ -38,6 +93,11 @@ public interface ParserConfiguration
 
         private Supplier<? extends ErrorState> _errorState;
         private Supplier<? extends MemoHandler> _memoHandler;
+        private boolean _flatParseTree;
+        private TraceRecorder _traceRecorder;
+        private boolean _byteMode;
+        private boolean _parseTree = true;
+        private boolean _twoPhase;
 
         // -----------------------------------------------------------------------------------------
 
@@ -57,6 +117,46 @@ public interface ParserConfiguration
 
         // -----------------------------------------------------------------------------------------
 
+        public Builder flatParseTree(boolean flatParseTree)
+        {
+            this._flatParseTree = flatParseTree;
+            return this;
+        }
+
+        // -----------------------------------------------------------------------------------------
+
+        public Builder traceRecorder(TraceRecorder traceRecorder)
+        {
+            this._traceRecorder = traceRecorder;
+            return this;
+        }
+
+        // -----------------------------------------------------------------------------------------
+
+        public Builder byteMode(boolean byteMode)
+        {
+            this._byteMode = byteMode;
+            return this;
+        }
+
+        // -----------------------------------------------------------------------------------------
+
+        public Builder parseTree(boolean parseTree)
+        {
+            this._parseTree = parseTree;
+            return this;
+        }
+
+        // -----------------------------------------------------------------------------------------
+
+        public Builder twoPhase(boolean twoPhase)
+        {
+            this._twoPhase = twoPhase;
+            return this;
+        }
+
+        // -----------------------------------------------------------------------------------------
+
         public ParserConfiguration build()
         {
             return new ParserConfiguration()
@@ -76,6 +176,36 @@ public interface ParserConfiguration
                         ? _memoHandler.get()
                         : new DefaultMemoHandler();
                 }
+
+                @Override
+                public boolean flatParseTree()
+                {
+                    return _flatParseTree;
+                }
+
+                @Override
+                public TraceRecorder traceRecorder()
+                {
+                    return _traceRecorder;
+                }
+
+                @Override
+                public boolean byteMode()
+                {
+                    return _byteMode;
+                }
+
+                @Override
+                public boolean parseTree()
+                {
+                    return _parseTree;
+                }
+
+                @Override
+                public boolean twoPhase()
+                {
+                    return _twoPhase;
+                }
             };
         }
 
@@ -28,7 +28,7 @@ public final class DefaultErrorChanges implements ErrorChanges
     @Override
     public ErrorReport report(Source source)
     {
-        return new DefaultErrorReport(source.position(position), expressions);
+        return new DefaultErrorReport(source, position, expressions);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
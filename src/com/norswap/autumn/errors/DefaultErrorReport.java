@@ -1,9 +1,11 @@
 package com.norswap.autumn.errors;
 
 import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.source.Source;
 import com.norswap.autumn.source.TextPosition;
 import com.norswap.util.Array;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -12,14 +14,24 @@ import java.util.Set;
  * Reports the tokens which we expected at the farthest error position, but failed to match.
  * <p>
  * Currently, this is often unhelpful in practice.
+ * <p>
+ * The message and the error locations are built on demand.
  */
 public final class DefaultErrorReport implements ErrorReport
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    private final String message;
+    private Source source;
+
+    private final int offset;
+
+    private TextPosition position;
+
+    private final Collection<ParsingExpression> farthestExpressions;
+
+    private String message;
 
-    private final Array<ErrorLocation> errorLocations;
+    private Array<ErrorLocation> errorLocations;
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -27,11 +39,46 @@ public final class DefaultErrorReport implements ErrorReport
         TextPosition farthestErrorPosition,
         Set<ParsingExpression> farthestExpressions)
     {
-        this.errorLocations = new Array<>();
+        this.offset = farthestErrorPosition.offset;
+        this.position = farthestErrorPosition;
+        this.farthestExpressions = farthestExpressions;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a report for the given expressions, which failed at the given offset in the source.
+     * The (line, column) position of the offset and the message are only computed when the
+     * message is requested, as the reports of successful parses are seldom looked at.
+     */
+    public DefaultErrorReport(
+        Source source,
+        int farthestErrorOffset,
+        Collection<ParsingExpression> farthestExpressions)
+    {
+        this.source = source;
+        this.offset = farthestErrorOffset;
+        this.farthestExpressions = farthestExpressions;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public String message()
+    {
+        if (message != null)
+            return message;
+
+        if (position == null)
+        {
+            position = source.position(offset);
+            source = null;
+        }
+
         StringBuilder b = new StringBuilder();
 
         b.append("The parser failed to match any of the following expressions at position ");
-        b.append(farthestErrorPosition);
+        b.append(position);
         b.append(":\n");
 
         // NOTE(norswap): As stated, the strategy is often unhelpful.
@@ -41,19 +88,10 @@ public final class DefaultErrorReport implements ErrorReport
         {
             b.append(farthestExpression);
             b.append("\n");
-            errorLocations.add(new ErrorLocation(farthestErrorPosition.offset, farthestExpression));
         }
         //*/
 
-        this.message = b.toString();
-    }
-
-    ////////////////////////////////////////////////////////////////////////////////////////////////
-
-    @Override
-    public String message()
-    {
-        return message;
+        return message = b.toString();
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -61,6 +99,16 @@ public final class DefaultErrorReport implements ErrorReport
     @Override
     public Array<ErrorLocation> locations()
     {
+        if (errorLocations == null)
+        {
+            Array<ErrorLocation> locations = new Array<>();
+
+            for (ParsingExpression farthestExpression: farthestExpressions)
+                locations.add(new ErrorLocation(offset, farthestExpression));
+
+            errorLocations = locations;
+        }
+
         return errorLocations;
     }
 
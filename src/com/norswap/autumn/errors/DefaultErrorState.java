@@ -6,6 +6,7 @@ import com.norswap.autumn.source.Source;
 import com.norswap.autumn.state.ParseState;
 import com.norswap.util.Array;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 
@@ -13,31 +14,64 @@ import static com.norswap.util.Caster.cast;
 
 /**
  * See {@link ParseState}, section "Error Handling".
+ * <p>
+ * The expressions that failed at the farthest error position are recorded as a bitset indexed by
+ * the ids of the tokens ({@link Token#id}). Record points are kept on a stack whose bitsets are
+ * reused, so that no allocation occurs once the stack has reached its maximum depth.
+ * <p>
+ * Expressions that have no id, or whose id is already taken by another expression (e.g. tokens
+ * of a sub-grammar, see {@link #merge(Collection)}), are recorded in a set instead.
  */
 public final class DefaultErrorState implements ErrorState
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    // The two first fields are conceptually the top of the stack implemented by the two other
+    // The three first fields are conceptually the top of the stack implemented by the three other
     // arrays.
 
     private int farthestErrorPosition = -1;
-    private HashSet<ParsingExpression> farthestExpressions = new HashSet<>();
 
-    private Array<Integer> positions = new Array<>();
+    private long[] farthestBits = new long[1];
 
-    @SuppressWarnings("unchecked")
-    private Array<HashSet<ParsingExpression>> expressions = new Array<>(new HashSet<>());
+    private HashSet<ParsingExpression> farthestOthers;
+
+    private int depth;
+
+    private int[] positions = new int[8];
+
+    private long[][] bits = new long[8][];
+
+    private HashSet<ParsingExpression>[] others = cast(new HashSet<?>[8]);
+
+    /**
+     * Maps ids to the expressions that have been recorded with these ids.
+     */
+    private ParsingExpression[] expressions = new ParsingExpression[64];
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
     public void requestErrorRecordPoint()
     {
-        positions.push(farthestErrorPosition);
-        expressions.push(farthestExpressions);
+        if (depth == positions.length)
+        {
+            positions = Arrays.copyOf(positions, depth * 2);
+            bits = Arrays.copyOf(bits, depth * 2);
+            others = Arrays.copyOf(others, depth * 2);
+        }
+
+        // Swap the current bitset with the spare one at this depth.
+
+        long[] spare = bits[depth];
+        positions[depth] = farthestErrorPosition;
+        bits[depth] = farthestBits;
+        others[depth] = farthestOthers;
+        ++depth;
+
         farthestErrorPosition = -1;
-        farthestExpressions = new HashSet<>();
+        farthestBits = spare != null ? spare : new long[farthestBits.length];
+        farthestOthers = null;
+        Arrays.fill(farthestBits, 0);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -45,17 +79,27 @@ public final class DefaultErrorState implements ErrorState
     @Override
     public void dismissErrorRecordPoint()
     {
-        int prevPointPos = positions.pop();
-        HashSet<ParsingExpression> prevPointExprs = expressions.pop();
+        --depth;
+        int prevPointPos = positions[depth];
+        long[] prevPointBits = bits[depth];
+        HashSet<ParsingExpression> prevPointOthers = others[depth];
+        others[depth] = null;
 
         if (farthestErrorPosition == prevPointPos)
         {
-            farthestExpressions.addAll(prevPointExprs);
+            union(prevPointBits, prevPointOthers);
+            bits[depth] = prevPointBits;
         }
         else if (farthestErrorPosition < prevPointPos)
         {
             farthestErrorPosition = prevPointPos;
-            farthestExpressions = prevPointExprs;
+            bits[depth] = farthestBits;
+            farthestBits = prevPointBits;
+            farthestOthers = prevPointOthers;
+        }
+        else
+        {
+            bits[depth] = prevPointBits;
         }
     }
 
@@ -64,7 +108,7 @@ public final class DefaultErrorState implements ErrorState
     @Override
     public DefaultErrorChanges changes()
     {
-        return new DefaultErrorChanges(farthestErrorPosition, cast(farthestExpressions.clone()));
+        return new DefaultErrorChanges(farthestErrorPosition, new HashSet<>(farthestExpressions()));
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -74,15 +118,14 @@ public final class DefaultErrorState implements ErrorState
     {
         DefaultErrorChanges c = (DefaultErrorChanges) changes;
 
-        if (c.position == farthestErrorPosition)
-        {
-            farthestExpressions.addAll(c.expressions);
-        }
-        else if (c.position > farthestErrorPosition)
-        {
-            farthestErrorPosition = c.position;
-            farthestExpressions = cast(c.expressions.clone());
-        }
+        if (c.position < farthestErrorPosition)
+            return;
+
+        if (c.position > farthestErrorPosition)
+            reset(c.position);
+
+        for (ParsingExpression pe: c.expressions)
+            add(pe);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -92,16 +135,13 @@ public final class DefaultErrorState implements ErrorState
     {
         for (ErrorLocation c: errors)
         {
-            if (c.position == farthestErrorPosition)
-            {
-                farthestExpressions.add(c.pe);
-            }
-            else if (c.position > farthestErrorPosition)
-            {
-                farthestErrorPosition = c.position;
-                farthestExpressions = new HashSet<>();
-                farthestExpressions.add(c.pe);
-            }
+            if (c.position < farthestErrorPosition)
+                continue;
+
+            if (c.position > farthestErrorPosition)
+                reset(c.position);
+
+            add(c.pe);
         }
     }
 
@@ -111,21 +151,17 @@ public final class DefaultErrorState implements ErrorState
     public void handleError(ParsingExpression pe, ParseState state)
     {
         // only record errors for tokens
-        if (!(pe instanceof Token))
+        if (!(pe instanceof Token) || state.start < farthestErrorPosition)
         {
             return;
         }
 
-        if (state.start == farthestErrorPosition)
-        {
-            farthestExpressions.add(pe);
-        }
         if (state.start > farthestErrorPosition)
         {
-            farthestErrorPosition = state.start;
-            farthestExpressions.clear();
-            farthestExpressions.add(pe);
+            reset(state.start);
         }
+
+        add(pe);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -133,7 +169,84 @@ public final class DefaultErrorState implements ErrorState
     @Override
     public ErrorReport report(Source source)
     {
-        return new DefaultErrorReport(source.position(farthestErrorPosition), farthestExpressions);
+        return new DefaultErrorReport(source, farthestErrorPosition, farthestExpressions());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void reset(int position)
+    {
+        farthestErrorPosition = position;
+        Arrays.fill(farthestBits, 0);
+        farthestOthers = null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void add(ParsingExpression pe)
+    {
+        int id = pe instanceof Token
+            ? ((Token) pe).id
+            : -1;
+
+        if (id >= 0 && id >= expressions.length)
+            expressions = Arrays.copyOf(expressions, Math.max(id + 1, expressions.length * 2));
+
+        if (id >= 0 && expressions[id] == null)
+            expressions[id] = pe;
+
+        if (id < 0 || expressions[id] != pe)
+        {
+            if (farthestOthers == null)
+                farthestOthers = new HashSet<>();
+
+            farthestOthers.add(pe);
+            return;
+        }
+
+        int word = id >>> 6;
+
+        if (word >= farthestBits.length)
+            farthestBits = Arrays.copyOf(farthestBits, Math.max(word + 1, farthestBits.length * 2));
+
+        farthestBits[word] |= 1L << id;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds the given expressions to those recorded at the farthest error position.
+     */
+    private void union(long[] words, HashSet<ParsingExpression> set)
+    {
+        if (words.length > farthestBits.length)
+            farthestBits = Arrays.copyOf(farthestBits, words.length);
+
+        for (int i = 0; i < words.length; ++i)
+            farthestBits[i] |= words[i];
+
+        if (set != null)
+            for (ParsingExpression pe: set)
+                add(pe);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the expressions recorded at the farthest error position.
+     */
+    private Array<ParsingExpression> farthestExpressions()
+    {
+        Array<ParsingExpression> out = new Array<>();
+
+        for (int i = 0; i < farthestBits.length; ++i)
+            for (long word = farthestBits[i]; word != 0; word &= word - 1)
+                out.add(expressions[i << 6 | Long.numberOfTrailingZeros(word)]);
+
+        if (farthestOthers != null)
+            out.addAll(farthestOthers);
+
+        return out;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
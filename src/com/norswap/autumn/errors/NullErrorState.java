@@ -0,0 +1,63 @@
+package com.norswap.autumn.errors;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.source.Source;
+import com.norswap.autumn.state.ParseState;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * An error state that does not record any error: its reports are empty.
+ * <p>
+ * Used during the recognition phase of two-phase parses (see {@link
+ * ParserConfiguration#twoPhase}).
+ */
+public final class NullErrorState implements ErrorState, ErrorChanges, ErrorReport
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void requestErrorRecordPoint() {}
+
+    @Override
+    public void dismissErrorRecordPoint() {}
+
+    @Override
+    public ErrorChanges changes()
+    {
+        return this;
+    }
+
+    @Override
+    public void merge(ErrorChanges changes) {}
+
+    @Override
+    public void merge(Collection<ErrorLocation> errors) {}
+
+    @Override
+    public void handleError(ParsingExpression pe, ParseState state) {}
+
+    @Override
+    public ErrorReport report(Source source)
+    {
+        return this;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public String message()
+    {
+        return "No errors were recorded.";
+    }
+
+    @Override
+    public Collection<ErrorLocation> locations()
+    {
+        return Collections.emptyList();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -18,7 +18,7 @@ public final class Any extends ParsingExpression
     @Override
     public void parse(Parser parser, ParseState state)
     {
-        if (parser.text.charAt(state.start) != 0)
+        if (parser.charAt(state.start) != 0)
         {
             state.advance(1);
         }
@@ -35,7 +35,7 @@ public final class Any extends ParsingExpression
     @Override
     public int parseDumb(Parser parser, int position)
     {
-        return parser.text.charAt(position) != 0
+        return parser.charAt(position) != 0
             ? position + 1
             : -1;
     }
@@ -46,6 +46,12 @@ public class Capture extends UnaryParsingExpression
     @Override
     public void parse(Parser parser, ParseState state)
     {
+        if (!parser.captures)
+        {
+            operand.parse(parser, state);
+            return;
+        }
+
         // save
         ParseTreeBuild oldTree = state.tree;
         int oldCount = state.treeChildrenCount;
@@ -66,10 +72,8 @@ public class Capture extends UnaryParsingExpression
         {
             if (captureText)
             {
-                String value = parser.text
-                    .subSequence(state.start, state.blackEnd)
-                    .toString();
-                newTree.value = value;
+                newTree.valueStart = state.start;
+                newTree.valueEnd = state.blackEnd;
             }
 
             if (capture || newTree.childrenCount() != 0)
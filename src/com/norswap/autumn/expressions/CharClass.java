@@ -0,0 +1,286 @@
+package com.norswap.autumn.expressions;
+
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.graph.CharClassCompiler;
+import com.norswap.autumn.state.ParseState;
+import com.norswap.util.StringEscape;
+
+import java.util.Arrays;
+
+/**
+ * Attempts to match the next input character to a class of characters, described as a set of
+ * character ranges. Usually created by {@link CharClassCompiler}, from unions of {@link CharSet},
+ * {@link CharRange} and {@link Any} (minus a {@link Not} over such expressions).
+ * <p>
+ * Succeeds if the next input character is in the class.
+ * <p>
+ * On success, the end position is start position + 1.
+ * <p>
+ * Membership of ASCII characters is tested using a bitmap; other characters are looked up in
+ * the range table.
+ */
+public final class CharClass extends ParsingExpression
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The class, as a sorted array of disjoint and non-adjacent inclusive ranges: each range is
+     * represented by its first and last character.
+     */
+    public char[] ranges;
+
+    // ASCII bitmap: bits 0-63 in lo, 64-127 in hi.
+
+    private long lo, hi;
+
+    // The ranges that are not entirely in the ASCII set (may start in it).
+
+    private char[] high;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Creates a class from an array of ranges (in the same format as {@link #ranges}, except that
+     * the ranges do not need to be sorted, disjoint or non-adjacent).
+     */
+    public static CharClass fromRanges(char[] ranges)
+    {
+        CharClass out = new CharClass();
+        out.ranges = normalize(ranges);
+        out.compile();
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the union of the given classes.
+     */
+    public static CharClass union(CharClass... classes)
+    {
+        int size = 0;
+
+        for (CharClass klass: classes)
+            size += klass.ranges.length;
+
+        char[] ranges = new char[size];
+        int i = 0;
+
+        for (CharClass klass: classes)
+        {
+            System.arraycopy(klass.ranges, 0, ranges, i, klass.ranges.length);
+            i += klass.ranges.length;
+        }
+
+        return fromRanges(ranges);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the class of all characters that are not in this class, except the zero character
+     * (which is never matched by {@link Any}, as it terminates the input).
+     */
+    public CharClass complement()
+    {
+        char[] out = new char[ranges.length + 2];
+        int size = 0;
+        int next = 1;
+
+        for (int i = 0; i < ranges.length; i += 2)
+        {
+            if (ranges[i] > next)
+            {
+                out[size++] = (char) next;
+                out[size++] = (char) (ranges[i] - 1);
+            }
+
+            next = ranges[i + 1] + 1;
+        }
+
+        if (next <= Character.MAX_VALUE)
+        {
+            out[size++] = (char) next;
+            out[size++] = Character.MAX_VALUE;
+        }
+
+        return fromRanges(Arrays.copyOf(out, size));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static char[] normalize(char[] ranges)
+    {
+        int count = ranges.length / 2;
+        long[] packed = new long[count];
+
+        for (int i = 0; i < count; ++i)
+            packed[i] = (long) ranges[2 * i] << 16 | ranges[2 * i + 1];
+
+        Arrays.sort(packed);
+
+        char[] out = new char[ranges.length];
+        int size = 0;
+
+        for (long range: packed)
+        {
+            char start = (char) (range >>> 16);
+            char end = (char) range;
+
+            if (start > end)
+                continue;
+
+            if (size > 0 && start <= out[size - 1] + 1)
+            {
+                if (end > out[size - 1])
+                    out[size - 1] = end;
+            }
+            else
+            {
+                out[size++] = start;
+                out[size++] = end;
+            }
+        }
+
+        return Arrays.copyOf(out, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void compile()
+    {
+        lo = hi = 0;
+        int i = 0;
+
+        for (; i < ranges.length; i += 2)
+        {
+            for (int c = ranges[i]; c <= ranges[i + 1] && c < 128; ++c)
+            {
+                if (c < 64)
+                    lo |= 1L << c;
+                else
+                    hi |= 1L << c - 64;
+            }
+
+            if (ranges[i + 1] >= 128)
+                break;
+        }
+
+        high = Arrays.copyOfRange(ranges, i, ranges.length);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Indicates whether the given character is in the class.
+     */
+    public boolean contains(char c)
+    {
+        if (c < 64)
+            return (lo & 1L << c) != 0;
+
+        if (c < 128)
+            return (hi & 1L << c - 64) != 0;
+
+        for (int i = 0; i < high.length; i += 2)
+        {
+            if (c < high[i])
+                return false;
+
+            if (c <= high[i + 1])
+                return true;
+        }
+
+        return false;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the first position at or after the given position whose character isn't in the
+     * class.
+     */
+    public int scan(CharSequence text, int position)
+    {
+        while (contains(text.charAt(position)))
+            ++position;
+
+        return position;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #scan(CharSequence, int)}, for a text with a byte per character (see {@link
+     * Parser#bytes}).
+     */
+    public int scan(byte[] bytes, int position)
+    {
+        while (contains((char) (bytes[position] & 0xFF)))
+            ++position;
+
+        return position;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #scan(CharSequence, int)}, reading the text from {@link Parser#bytes} if
+     * available.
+     */
+    public int scan(Parser parser, int position)
+    {
+        return parser.bytes != null
+            ? scan(parser.bytes, position)
+            : scan(parser.text, position);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void parse(Parser parser, ParseState state)
+    {
+        if (contains(parser.charAt(state.start)))
+        {
+            state.advance(1);
+        }
+        else
+        {
+            state.fail(this);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public int parseDumb(Parser parser, int position)
+    {
+        return contains(parser.charAt(position))
+            ? position + 1
+            : -1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public String ownDataString()
+    {
+        StringBuilder builder = new StringBuilder("[");
+
+        for (int i = 0; i < ranges.length; i += 2)
+        {
+            builder.append(StringEscape.escape(String.valueOf(ranges[i])));
+
+            if (ranges[i + 1] != ranges[i])
+            {
+                builder.append("-");
+                builder.append(StringEscape.escape(String.valueOf(ranges[i + 1])));
+            }
+        }
+
+        return builder.append("]").toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
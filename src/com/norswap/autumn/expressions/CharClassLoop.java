@@ -0,0 +1,82 @@
+package com.norswap.autumn.expressions;
+
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.expressions.abstrakt.UnaryParsingExpression;
+import com.norswap.autumn.graph.CharClassCompiler;
+import com.norswap.autumn.graph.Nullability;
+import com.norswap.autumn.state.ParseState;
+
+/**
+ * Replacement for a {@link ZeroMore} (or a {@link OneMore} if {@link #atLeastOne} is set) whose
+ * operand is a {@link CharClass}. Created by {@link CharClassCompiler}.
+ * <p>
+ * Matches the longest run of characters in the class in a single loop, then advances the end
+ * position once, instead of invoking the operand (and committing the parse state) for each
+ * character.
+ * <p>
+ * If no character matches, the failure of the operand is reported, followed by the failure of
+ * this expression if {@link #atLeastOne} is set. The failure of the operand at the end of a
+ * non-empty run is not reported (class failures are not tokens and never appear in error
+ * messages).
+ */
+public final class CharClassLoop extends UnaryParsingExpression
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public boolean atLeastOne;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void parse(Parser parser, ParseState state)
+    {
+        int end = ((CharClass) operand).scan(parser, state.start);
+
+        if (end > state.start)
+        {
+            state.advance(end - state.start);
+            return;
+        }
+
+        if (state.recordErrors)
+        {
+            state.fail(operand);
+            state.discard();
+        }
+
+        if (atLeastOne)
+            state.fail(this);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public int parseDumb(Parser parser, int position)
+    {
+        int end = ((CharClass) operand).scan(parser, position);
+
+        return end == position && atLeastOne
+            ? -1
+            : end;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public String ownDataString()
+    {
+        return atLeastOne ? "+" : "*";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public Nullability nullability()
+    {
+        return atLeastOne
+            ? super.nullability()
+            : Nullability.yes(this);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -23,7 +23,7 @@ public final class CharRange extends ParsingExpression
     @Override
     public void parse(Parser parser, ParseState state)
     {
-        char c = parser.text.charAt(state.start);
+        char c = parser.charAt(state.start);
 
         if (start <= c && c <= end)
         {
@@ -40,7 +40,7 @@ public final class CharRange extends ParsingExpression
     @Override
     public int parseDumb(Parser parser, int position)
     {
-        char c = parser.text.charAt(position);
+        char c = parser.charAt(position);
 
         return start <= c && c <= end
             ? position + 1
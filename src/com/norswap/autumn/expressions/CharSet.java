@@ -23,7 +23,7 @@ public final class CharSet extends ParsingExpression
     @Override
     public void parse(Parser parser, ParseState state)
     {
-        char c = parser.text.charAt(state.start);
+        char c = parser.charAt(state.start);
 
         for (char d : chars)
         {
@@ -42,7 +42,7 @@ public final class CharSet extends ParsingExpression
     @Override
     public int parseDumb(Parser parser, int position)
     {
-        char c = parser.text.charAt(position);
+        char c = parser.charAt(position);
 
         for (char d : chars)
         {
@@ -4,6 +4,8 @@ import com.norswap.autumn.expressions.abstrakt.NaryParsingExpression;
 import com.norswap.autumn.state.ParseState;
 import com.norswap.autumn.Parser;
 import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.graph.DispatchTable;
+import com.norswap.autumn.graph.DispatchTableBuilder;
 import com.norswap.autumn.graph.Nullability;
 
 import java.util.function.Predicate;
@@ -14,20 +16,50 @@ import java.util.function.Predicate;
  * Succeeds iff one operand succeeds.
  *
  * On success, its end position is that of the operand that succeeded.
+ *
+ * If a dispatch table is available, operands that cannot succeed on the current input character
+ * are not invoked.
  */
 public final class Choice extends NaryParsingExpression
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Optional first-character dispatch table, set by {@link DispatchTableBuilder}.
+     */
+    public DispatchTable dispatch;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     @Override
     public void parse(Parser parser, ParseState state)
     {
-        for (ParsingExpression operand : operands)
+        state.openBacktrackPoint();
+
+        int[] candidates = dispatch != null
+            ? dispatch.candidates(parser.charAt(state.start))
+            : null;
+
+        for (int i = 0, next = 0; i < operands.length; ++i)
         {
-            operand.parse(parser, state);
+            if (candidates != null)
+            {
+                if (next < candidates.length && candidates[next] == i)
+                {
+                    ++next;
+                }
+                else
+                {
+                    dispatch.skip(i, state);
+                    continue;
+                }
+            }
+
+            operands[i].parse(parser, state);
 
             if (state.succeeded())
             {
+                state.closeBacktrackPoint();
                 return;
             }
             else
@@ -36,6 +68,7 @@ public final class Choice extends NaryParsingExpression
             }
         }
 
+        state.closeBacktrackPoint();
         state.fail(this);
     }
 
@@ -44,6 +77,21 @@ public final class Choice extends NaryParsingExpression
     @Override
     public int parseDumb(Parser parser, int position)
     {
+        if (dispatch != null)
+        {
+            for (int i: dispatch.candidates(parser.charAt(position)))
+            {
+                int result = operands[i].parseDumb(parser, position);
+
+                if (result != - 1)
+                {
+                    return result;
+                }
+            }
+
+            return -1;
+        }
+
         for (ParsingExpression operand : operands)
         {
             int result = operand.parseDumb(parser, position);
@@ -74,4 +122,22 @@ public final class Choice extends NaryParsingExpression
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void setChild(int position, ParsingExpression pe)
+    {
+        super.setChild(position, pe);
+        dispatch = null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void copyOwnData()
+    {
+        super.copyOwnData();
+        dispatch = null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
 }
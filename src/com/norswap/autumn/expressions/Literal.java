@@ -5,6 +5,9 @@ import com.norswap.autumn.Parser;
 import com.norswap.autumn.ParsingExpression;
 import com.norswap.autumn.graph.Nullability;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * Attempt to match a literal string to the input.
  *
@@ -16,26 +19,63 @@ public final class Literal extends ParsingExpression
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * The string in ISO-8859-1, packed 8 bytes at a time in the native byte order, along with the
+     * string it was computed from. Immutable, so that it can be shared between threads.
+     */
+    private static final class Packed
+    {
+        final String string;
+
+        /**
+         * Null if the string can't be represented with a byte per character.
+         */
+        final long[] words;
+
+        Packed(String string)
+        {
+            this.string = string;
+            byte[] bytes = new byte[string.length()];
+
+            for (int i = 0; i < bytes.length; ++i)
+            {
+                char c = string.charAt(i);
+
+                if (c >= 256)
+                {
+                    this.words = null;
+                    return;
+                }
+
+                bytes[i] = (byte) c;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder());
+            this.words = new long[bytes.length / 8];
+
+            for (int i = 0; i < words.length; ++i)
+                words[i] = buffer.getLong(i * 8);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     public String string;
 
+    /**
+     * Computed on first use in byte mode, for strings of at least 8 characters, and recomputed if
+     * {@link #string} changes.
+     */
+    private Packed packed;
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
     public void parse(Parser parser, ParseState state)
     {
-        int index = 0;
-        int pos = state.start;
-        final int len = string.length();
-
-        while (index < len && parser.text.charAt(pos) == string.charAt(index))
-        {
-            ++index;
-            ++pos;
-        }
-
-        if (index == len)
+        if (matches(parser, state.start))
         {
-            state.advance(len);
+            state.advance(string.length());
         }
         else
         {
@@ -48,19 +88,68 @@ public final class Literal extends ParsingExpression
     @Override
     public int parseDumb(Parser parser, int position)
     {
-        int index = 0;
-        int pos = position;
+        return matches(parser, position)
+            ? position + string.length()
+            : -1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the string matches the input at the given position.
+     * <p>
+     * In byte mode, strings of at least 8 characters are compared to the input 8 bytes at a time,
+     * then the remaining characters are compared one by one.
+     */
+    private boolean matches(Parser parser, int position)
+    {
+        String string = this.string;
         int len = string.length();
+        int index = 0;
+
+        if (parser.bytes != null)
+        {
+            byte[] bytes = parser.bytes;
+
+            if (len >= 8)
+            {
+                // The input ends with a 0 byte, which only a string holding one could match.
+                if (position + len > bytes.length)
+                    return false;
 
-        while (index < len && parser.text.charAt(pos) == string.charAt(index))
+                Packed packed = this.packed;
+
+                if (packed == null || packed.string != string)
+                    this.packed = packed = new Packed(string);
+
+                long[] words = packed.words;
+
+                if (words == null)
+                    return false;
+
+                ByteBuffer buffer = parser.byteBuffer;
+
+                for (long word: words)
+                {
+                    if (buffer.getLong(position + index) != word)
+                        return false;
+
+                    index += 8;
+                }
+            }
+
+            while (index < len && (bytes[position + index] & 0xFF) == string.charAt(index))
+                ++index;
+        }
+        else
         {
-            ++index;
-            ++pos;
+            CharSequence text = parser.text;
+
+            while (index < len && text.charAt(position + index) == string.charAt(index))
+                ++index;
         }
 
-        return index != string.length()
-            ? -1
-            : pos;
+        return index == len;
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -0,0 +1,361 @@
+package com.norswap.autumn.expressions;
+
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.abstrakt.NaryParsingExpression;
+import com.norswap.autumn.graph.LiteralTrieRewriter;
+import com.norswap.autumn.graph.Nullability;
+import com.norswap.autumn.state.ParseState;
+import com.norswap.util.Array;
+
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Replacement for a {@link Choice} (or a {@link LongestMatch} if {@link #longest} is set) whose
+ * operands are all literals ({@link Literal}), possibly wrapped in a {@link Token}. Created by
+ * {@link LiteralTrieRewriter}.
+ * <p>
+ * Instead of invoking the operands one after the other, the literals are matched by a single walk
+ * over a trie built from the operands. The result is the same as that of the original expression:
+ * the first (resp. longest) matching operand is selected, and the failures of the operands that
+ * would have been reported are reported, in order.
+ * <p>
+ * The operands are retained as children, but are never invoked. The trie must be rebuilt (via
+ * {@link #buildTrie}) whenever the operands change.
+ */
+public final class LiteralTrie extends NaryParsingExpression
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Whether the expression has longest match semantics rather than ordered choice semantics.
+     */
+    public boolean longest;
+
+    // The literal matched by each operand, and whether the operand is a token.
+
+    private String[] strings;
+    private boolean[] tokens;
+
+    // For each trie node (the root has index 0): the characters labelling its outgoing edges, the
+    // nodes these edges lead to, and the index of the operand matched by the node (or -1).
+
+    private char[][] edges;
+    private int[][] targets;
+    private int[] accepts;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the literal matched by the given operand, or null if the operand is not a literal or
+     * a token wrapping a literal.
+     */
+    public static Literal literal(ParsingExpression operand)
+    {
+        if (operand instanceof Token)
+            operand = ((Token) operand).operand;
+
+        return operand instanceof Literal
+            ? (Literal) operand
+            : null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Builds the trie from the operands.
+     */
+    public void buildTrie()
+    {
+        int size = operands.length;
+        strings = new String[size];
+        tokens = new boolean[size];
+
+        TrieNode root = new TrieNode();
+        Array<TrieNode> nodes = new Array<>(root);
+
+        for (int i = 0; i < size; ++i)
+        {
+            Literal literal = literal(operands[i]);
+
+            if (literal == null)
+                throw new IllegalArgumentException(
+                    "Literal trie operand is not a literal: " + operands[i]);
+
+            strings[i] = literal.string;
+            tokens[i] = operands[i] instanceof Token;
+
+            TrieNode node = root;
+            boolean shadowed = !longest && root.accept >= 0;
+
+            for (int j = 0; j < literal.string.length() && !shadowed; ++j)
+            {
+                node = node.child(literal.string.charAt(j), nodes);
+                shadowed = !longest && node.accept >= 0 && j < literal.string.length() - 1;
+            }
+
+            // In an ordered choice, an operand can never succeed if an earlier operand matches one
+            // of its prefixes. An operand is also never selected if an earlier operand matches the
+            // same literal.
+
+            if (!shadowed && node.accept < 0)
+                node.accept = i;
+        }
+
+        edges = new char[nodes.size()][];
+        targets = new int[nodes.size()][];
+        accepts = new int[nodes.size()];
+
+        for (int i = 0; i < nodes.size(); ++i)
+        {
+            TrieNode node = nodes.get(i);
+            int j = 0;
+            edges[i] = new char[node.children.size()];
+            targets[i] = new int[node.children.size()];
+            accepts[i] = node.accept;
+
+            for (TrieNode child: node.children.values())
+            {
+                edges[i][j] = child.c;
+                targets[i][j] = child.index;
+                ++j;
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void parse(Parser parser, ParseState state)
+    {
+        int start = state.start;
+        int node = 0;
+        int pos = start;
+        int match = accepts[0];
+        int matchEnd = match < 0 ? -1 : longest ? end(parser, match, pos) : pos;
+
+        while (true)
+        {
+            node = next(node, parser.charAt(pos));
+
+            if (node < 0)
+                break;
+
+            int accept = accepts[node];
+            ++pos;
+
+            if (accept < 0)
+                continue;
+
+            if (!longest)
+            {
+                match = accept;
+                matchEnd = pos;
+                continue;
+            }
+
+            int end = end(parser, accept, pos);
+
+            if (end > matchEnd || end == matchEnd && accept < match)
+            {
+                match = accept;
+                matchEnd = end;
+            }
+        }
+
+        if (state.recordErrors)
+            reportFailures(parser, state, match);
+
+        if (match < 0)
+        {
+            state.fail(this);
+            return;
+        }
+
+        state.advance(strings[match].length());
+
+        if (!longest)
+            matchEnd = end(parser, match, state.end);
+
+        state.end = matchEnd;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public int parseDumb(Parser parser, int position)
+    {
+        int node = 0;
+        int pos = position;
+        int match = accepts[0];
+        int matchEnd = match < 0 ? -1 : longest ? end(parser, match, pos) : pos;
+
+        while (true)
+        {
+            node = next(node, parser.charAt(pos));
+
+            if (node < 0)
+                break;
+
+            int accept = accepts[node];
+            ++pos;
+
+            if (accept < 0)
+                continue;
+
+            if (!longest)
+            {
+                match = accept;
+                matchEnd = pos;
+                continue;
+            }
+
+            int end = end(parser, accept, pos);
+
+            if (end > matchEnd)
+                matchEnd = end;
+        }
+
+        return match >= 0 && !longest
+            ? end(parser, match, matchEnd)
+            : matchEnd;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the node reached by following the edge labelled with the given character from the
+     * given node, or -1 if there is no such edge.
+     */
+    private int next(int node, char c)
+    {
+        char[] chars = edges[node];
+
+        for (int i = 0; i < chars.length; ++i)
+            if (chars[i] == c)
+                return targets[node][i];
+
+        return -1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the end position of the given operand, given that it matched its literal up to the
+     * given position: this is the position itself, or the position after the whitespace that
+     * follows if the operand is a token.
+     */
+    private int end(Parser parser, int operand, int position)
+    {
+        if (!tokens[operand])
+            return position;
+
+        return parser.skipWhitespace(position);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Reports the failures of the operands that would have failed in the original expression, in
+     * the order in which they would have been invoked. {@code match} is the index of the selected
+     * operand, or -1.
+     */
+    private void reportFailures(Parser parser, ParseState state, int match)
+    {
+        int count = longest || match < 0 ? operands.length : match;
+
+        if (count == 0)
+            return;
+
+        for (int i = 0; i < count; ++i)
+        {
+            if (longest && matches(parser, i, state.start))
+                continue;
+
+            if (tokens[i])
+                state.fail(((Token) operands[i]).operand);
+
+            state.fail(operands[i]);
+        }
+
+        state.discard();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private boolean matches(Parser parser, int operand, int position)
+    {
+        String string = strings[operand];
+
+        for (int i = 0; i < string.length(); ++i)
+            if (parser.charAt(position + i) != string.charAt(i))
+                return false;
+
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public ParsingExpression[] firsts(Predicate<ParsingExpression> nullability)
+    {
+        return operands;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public Nullability nullability()
+    {
+        return Nullability.any(this, operands);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public String ownDataString()
+    {
+        return longest ? "longest" : "first";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void setChild(int position, ParsingExpression pe)
+    {
+        if (operands[position] != pe)
+        {
+            super.setChild(position, pe);
+            buildTrie();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class TrieNode
+    {
+        char c;
+        int index;
+        int accept = -1;
+        TreeMap<Character, TrieNode> children = new TreeMap<>();
+
+        TrieNode child(char c, Array<TrieNode> nodes)
+        {
+            TrieNode child = children.get(c);
+
+            if (child == null)
+            {
+                child = new TrieNode();
+                child.c = c;
+                child.index = nodes.size();
+                children.put(c, child);
+                nodes.add(child);
+            }
+
+            return child;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
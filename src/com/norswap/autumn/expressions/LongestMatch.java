@@ -5,6 +5,8 @@ import com.norswap.autumn.state.ParseChanges;
 import com.norswap.autumn.state.ParseState;
 import com.norswap.autumn.Parser;
 import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.graph.DispatchTable;
+import com.norswap.autumn.graph.DispatchTableBuilder;
 import com.norswap.autumn.graph.Nullability;
 
 import java.util.function.Predicate;
@@ -16,19 +18,47 @@ import java.util.function.Predicate;
  *
  * On success, its end position is the largest amongst the end positions of its
  * successful operands.
+ *
+ * If a dispatch table is available, operands that cannot succeed on the current input character
+ * are not invoked.
  */
 public final class LongestMatch extends NaryParsingExpression
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Optional first-character dispatch table, set by {@link DispatchTableBuilder}.
+     */
+    public DispatchTable dispatch;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     @Override
     public void parse(Parser parser, ParseState state)
     {
         ParseChanges farthestChanges = ParseChanges.failure();
+        state.openBacktrackPoint();
 
-        for (ParsingExpression operand : operands)
+        int[] candidates = dispatch != null
+            ? dispatch.candidates(parser.charAt(state.start))
+            : null;
+
+        for (int i = 0, next = 0; i < operands.length; ++i)
         {
-            operand.parse(parser, state);
+            if (candidates != null)
+            {
+                if (next < candidates.length && candidates[next] == i)
+                {
+                    ++next;
+                }
+                else
+                {
+                    dispatch.skip(i, state);
+                    continue;
+                }
+            }
+
+            operands[i].parse(parser, state);
 
             if (state.end > farthestChanges.end)
             {
@@ -38,6 +68,7 @@ public final class LongestMatch extends NaryParsingExpression
             state.discard();
         }
 
+        state.closeBacktrackPoint();
         state.merge(farthestChanges);
 
         if (state.failed())
@@ -53,6 +84,21 @@ public final class LongestMatch extends NaryParsingExpression
     {
         int farthestPosition = -1;
 
+        if (dispatch != null)
+        {
+            for (int i: dispatch.candidates(parser.charAt(position)))
+            {
+                int result = operands[i].parseDumb(parser, position);
+
+                if (result > farthestPosition)
+                {
+                    farthestPosition = result;
+                }
+            }
+
+            return farthestPosition;
+        }
+
         for (ParsingExpression operand: operands)
         {
             int result = operand.parseDumb(parser, position);
@@ -83,4 +129,22 @@ public final class LongestMatch extends NaryParsingExpression
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void setChild(int position, ParsingExpression pe)
+    {
+        super.setChild(position, pe);
+        dispatch = null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void copyOwnData()
+    {
+        super.copyOwnData();
+        dispatch = null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
 }
@@ -19,7 +19,9 @@ public final class Lookahead extends UnaryParsingExpression
     @Override
     public void parse(Parser parser, ParseState state)
     {
+        state.openBacktrackPoint();
         operand.parse(parser, state);
+        state.closeBacktrackPoint();
 
         if (state.succeeded())
         {
@@ -1,27 +1,65 @@
 package com.norswap.autumn.expressions;
 
+import com.norswap.autumn.config.DenseMemoHandler;
 import com.norswap.autumn.state.ParseChanges;
 import com.norswap.autumn.state.ParseState;
 import com.norswap.autumn.Parser;
 import com.norswap.autumn.expressions.abstrakt.UnaryParsingExpression;
 
+/**
+ * Memoizes the results of its operand using the memoization handler of the parse state (see {@link
+ * ParseState}, section "Memoization").
+ * <p>
+ * The memoization handler is passed this expression (and not its operand) as the key.
+ */
 public final class Memo extends UnaryParsingExpression
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * A dense index, unique amongst the memo expressions of a grammar, assigned when the grammar
+     * is built. -1 if no slot was assigned. Used by {@link DenseMemoHandler}.
+     */
+    public int slot = -1;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     @Override
     public void parse(Parser parser, ParseState state)
     {
-        ParseChanges changes = state.memo.get(operand, state);
+        parseMemo(parser, state);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Same as {@link #parse}, but indicates whether the result was retrieved from the memoization
+     * handler (rather than obtained by parsing the operand).
+     */
+    public boolean parseMemo(Parser parser, ParseState state)
+    {
+        ParseChanges changes = state.memo.get(this, state);
 
         if (changes != null)
         {
             state.merge(changes);
-            return;
+            return true;
         }
 
         operand.parse(parser, state);
-        state.memo.memoize(operand, state, state.extract());
+        state.memo.memoize(this, state, state.extract());
+        return false;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Dumb parsing doesn't manipulate the parse state, hence there is nothing to memoize.
+     */
+    @Override
+    public int parseDumb(Parser parser, int position)
+    {
+        return operand.parseDumb(parser, position);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -21,7 +21,9 @@ public final class Not extends UnaryParsingExpression
     {
         state.recordErrors = false;
 
+        state.openBacktrackPoint();
         operand.parse(parser, state);
+        state.closeBacktrackPoint();
 
         if (state.succeeded())
         {
@@ -2,7 +2,6 @@ package com.norswap.autumn.expressions;
 
 import com.norswap.autumn.state.ParseState;
 import com.norswap.autumn.Parser;
-import com.norswap.autumn.state.ParseStateSnapshot;
 import com.norswap.autumn.expressions.abstrakt.UnaryParsingExpression;
 
 /**
@@ -20,13 +19,13 @@ public final class OneMore extends UnaryParsingExpression
     @Override
     public void parse(Parser parser, ParseState state)
     {
-        ParseStateSnapshot snapshot = state.snapshot();
+        int mark = state.mark();
 
         operand.parse(parser, state);
 
         if (state.failed())
         {
-            state.restore(snapshot);
+            state.restore(mark);
             state.fail(this);
             return;
         }
@@ -37,7 +36,9 @@ public final class OneMore extends UnaryParsingExpression
 
         while (true)
         {
+            state.openBacktrackPoint();
             operand.parse(parser, state);
+            state.closeBacktrackPoint();
 
             if (state.failed())
             {
@@ -48,7 +49,7 @@ public final class OneMore extends UnaryParsingExpression
             state.commit();
         }
 
-        state.uncommit(snapshot);
+        state.uncommit(mark);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -20,7 +20,9 @@ public final class Optional extends UnaryParsingExpression
     @Override
     public void parse(Parser parser, ParseState state)
     {
+        state.openBacktrackPoint();
         operand.parse(parser, state);
+        state.closeBacktrackPoint();
 
         if (state.failed())
         {
@@ -0,0 +1,189 @@
+package com.norswap.autumn.expressions;
+
+import com.norswap.autumn.ParseResult;
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.capture.Decorate;
+import com.norswap.autumn.capture.DecorateWithAccessor;
+import com.norswap.autumn.capture.DecorateWithKind;
+import com.norswap.autumn.capture.ParseTreeBuild;
+import com.norswap.autumn.errors.ErrorChanges;
+import com.norswap.autumn.graph.Nullability;
+import com.norswap.autumn.state.ParseState;
+import java.util.function.Predicate;
+
+/**
+ * Invokes its operand; if the operand fails, records the errors it caused, then skips the input
+ * until the sync expression matches, and invokes the sync expression.
+ * <p>
+ * Succeeds iff the operand succeeds, or the sync expression eventually matches (before the end of
+ * the input). The sync expression can match a set of delimiters (e.g. {@code choice(token(";"),
+ * token("}"))}), or be a lookahead for the start of the construct that follows (e.g. {@code
+ * lookahead(statement)}), in which case it doesn't consume any input. The skipped input is never
+ * empty: an empty match of the sync expression at the start position is ignored.
+ * <p>
+ * On success, its end position is the end position of the operand, or the end position of the
+ * sync expression if the operand failed.
+ * <p>
+ * When recovering, an error node is inserted into the parse tree before the nodes captured by the
+ * sync expression. Its accessor and kind are {@link #ERROR}, and its text is the skipped input.
+ * The errors are those recorded by the error state since the invocation of the operand (see
+ * {@link ParseState}, section "Error Handling"), and are reported by {@link
+ * ParseResult#recoveredErrors}. This lets a single parse report all the errors of an input.
+ */
+public final class Recover extends ParsingExpression
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The accessor and kind of the error nodes.
+     */
+    public static final String ERROR = "error";
+
+    private static final Decorate[] ERROR_DECORATIONS = {
+        new DecorateWithAccessor(ERROR),
+        new DecorateWithKind(ERROR) };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public ParsingExpression operand;
+
+    public ParsingExpression sync;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void parse(Parser parser, ParseState state)
+    {
+        state.errors.requestErrorRecordPoint();
+
+        state.openBacktrackPoint();
+        operand.parse(parser, state);
+        state.closeBacktrackPoint();
+
+        if (state.succeeded())
+        {
+            state.errors.dismissErrorRecordPoint();
+            return;
+        }
+
+        ErrorChanges errors = state.errors.changes();
+        state.errors.dismissErrorRecordPoint();
+        state.discard();
+
+        int start = state.start;
+        int mark = state.mark();
+        int end;
+
+        while ((end = syncEnd(parser, state)) == -1 || end == start)
+        {
+            if (parser.charAt(state.start) == 0)
+            {
+                state.restore(mark);
+                state.fail(this);
+                return;
+            }
+
+            state.advance(1);
+            state.commit();
+        }
+
+        ParseTreeBuild node = new ParseTreeBuild(true, ERROR_DECORATIONS);
+        node.valueStart = start;
+        node.valueEnd = state.start;
+        node.setError(errors);
+        state.tree.addChild(node);
+        state.commit();
+
+        sync.parse(parser, state);
+
+        if (state.failed())
+        {
+            state.restore(mark);
+            state.fail(this);
+            return;
+        }
+
+        state.uncommit(mark);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the end position of the sync expression invoked at the current position, or -1 if it
+     * fails; without recording errors nor modifying the parse state.
+     */
+    private int syncEnd(Parser parser, ParseState state)
+    {
+        boolean recordErrors = state.recordErrors;
+        state.recordErrors = false;
+
+        state.openBacktrackPoint();
+        sync.parse(parser, state);
+        state.closeBacktrackPoint();
+
+        int end = state.end;
+        state.discard();
+        state.recordErrors = recordErrors;
+        return end;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public int parseDumb(Parser parser, int position)
+    {
+        int end = operand.parseDumb(parser, position);
+
+        if (end != -1)
+            return end;
+
+        for (int pos = position; ; ++pos)
+        {
+            end = sync.parseDumb(parser, pos);
+
+            if (end != -1 && end != position)
+                return end;
+
+            if (parser.charAt(pos) == 0)
+                return -1;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public ParsingExpression[] children()
+    {
+        return new ParsingExpression[]{ operand, sync };
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void setChild(int position, ParsingExpression pe)
+    {
+        if (position == 0)
+            operand = pe;
+        else
+            sync = pe;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public ParsingExpression[] firsts(Predicate<ParsingExpression> nullability)
+    {
+        return children();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public Nullability nullability()
+    {
+        return Nullability.single(this, operand);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
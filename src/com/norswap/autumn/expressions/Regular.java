@@ -0,0 +1,186 @@
+package com.norswap.autumn.expressions;
+
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.graph.Nullability;
+import com.norswap.autumn.graph.RegularCompiler;
+import com.norswap.autumn.state.ParseState;
+
+import java.util.Arrays;
+
+/**
+ * Replacement for an expression with regular semantics, which matches the input using a
+ * deterministic finite automaton. Created by {@link RegularCompiler}, which also defines which
+ * expressions can be replaced.
+ * <p>
+ * The automaton reads the input character by character, starting in state 0, until it reaches a
+ * character for which its current state has no transition. The end position is the position that
+ * follows the last character read in an accepting state (or the start position if state 0 is
+ * accepting). If no accepting state was ever reached, the expression fails.
+ * <p>
+ * Characters are first mapped to a character class: each class is a set of characters that cause
+ * the same transitions in every state. The transitions are stored in a single array, indexed by
+ * {@code state * classCount + class}.
+ * <p>
+ * The expression has no children: the sub-expressions it replaces are never invoked. The
+ * replaced expression is kept in {@link #expression} for reference. If the expression fails, it
+ * reports its own failure only.
+ */
+public final class Regular extends ParsingExpression
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The expression that this expression replaces.
+     */
+    public ParsingExpression expression;
+
+    /**
+     * The class of each ASCII character.
+     */
+    public int[] asciiClasses;
+
+    /**
+     * The sorted first characters of the ranges that partition the non-ASCII characters; the class
+     * of the range starting at {@code bounds[i]} is {@code boundClasses[i]}. The first bound is
+     * always 128.
+     */
+    public char[] bounds;
+
+    public int[] boundClasses;
+
+    public int classCount;
+
+    /**
+     * The transition table, holding the next state (or -1 if there is no transition) for each
+     * state and class.
+     */
+    public int[] transitions;
+
+    public boolean[] accepting;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the class of the given character.
+     */
+    public int classOf(char c)
+    {
+        if (c < 128)
+            return asciiClasses[c];
+
+        int i = Arrays.binarySearch(bounds, c);
+
+        return i >= 0
+            ? boundClasses[i]
+            : boundClasses[-i - 2];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Runs the automaton on the text at the given position, and returns the end position of the
+     * longest match, or -1 if there is no match.
+     */
+    public int match(CharSequence text, int position)
+    {
+        int state = 0;
+        int end = accepting[0] ? position : -1;
+
+        while (true)
+        {
+            state = transitions[state * classCount + classOf(text.charAt(position))];
+
+            if (state < 0)
+                return end;
+
+            ++position;
+
+            if (accepting[state])
+                end = position;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #match(CharSequence, int)}, for a text with a byte per character (see {@link
+     * Parser#bytes}).
+     */
+    public int match(byte[] bytes, int position)
+    {
+        int state = 0;
+        int end = accepting[0] ? position : -1;
+
+        while (true)
+        {
+            state = transitions[state * classCount + classOf((char) (bytes[position] & 0xFF))];
+
+            if (state < 0)
+                return end;
+
+            ++position;
+
+            if (accepting[state])
+                end = position;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #match(CharSequence, int)}, reading the text from {@link Parser#bytes} if
+     * available.
+     */
+    public int match(Parser parser, int position)
+    {
+        return parser.bytes != null
+            ? match(parser.bytes, position)
+            : match(parser.text, position);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void parse(Parser parser, ParseState state)
+    {
+        int end = match(parser, state.start);
+
+        if (end >= 0)
+        {
+            state.advance(end - state.start);
+        }
+        else
+        {
+            state.fail(this);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public int parseDumb(Parser parser, int position)
+    {
+        return match(parser, position);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public Nullability nullability()
+    {
+        return accepting[0]
+            ? Nullability.yes(this)
+            : Nullability.no(this);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public String ownDataString()
+    {
+        return accepting.length + " states, " + classCount + " classes";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
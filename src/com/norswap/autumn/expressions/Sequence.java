@@ -1,6 +1,5 @@
 package com.norswap.autumn.expressions;
 
-import com.norswap.autumn.state.ParseStateSnapshot;
 import com.norswap.autumn.expressions.abstrakt.NaryParsingExpression;
 import com.norswap.autumn.state.ParseState;
 import com.norswap.autumn.Parser;
@@ -25,7 +24,7 @@ public final class Sequence extends NaryParsingExpression
     @Override
     public void parse(Parser parser, ParseState state)
     {
-        ParseStateSnapshot snapshot = state.snapshot();
+        int mark = state.mark();
 
         for (ParsingExpression operand : operands)
         {
@@ -37,13 +36,13 @@ public final class Sequence extends NaryParsingExpression
             }
             else
             {
-                state.restore(snapshot);
+                state.restore(mark);
                 state.fail(this);
                 return;
             }
         }
 
-        state.uncommit(snapshot);
+        state.uncommit(mark);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -0,0 +1,312 @@
+package com.norswap.autumn.expressions;
+
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.graph.Nullability;
+import com.norswap.autumn.state.ParseState;
+
+import java.util.function.Predicate;
+
+/**
+ * Repeatedly invokes its body over the input, until the terminator matches, then invokes the
+ * terminator. Equivalent to {@code sequence(zeroMore(not(terminator), body), terminator)}, or to
+ * {@code sequence(oneMore(not(terminator), body), terminator)} if {@link #atLeastOne} is set.
+ * <p>
+ * Succeeds iff the terminator eventually matches (after at least one invocation of the body if
+ * {@link #atLeastOne} is set), and all invocations of the body succeed.
+ * <p>
+ * On success, its end position is the end position of the terminator.
+ * <p>
+ * If the body is {@link Any} and the terminator is a {@link Literal} or a {@link CharClass} that
+ * can't match the zero character, the terminator is located by a single scan over the input text,
+ * without invoking any expression. In this case, the failures of the body and of the terminator
+ * are reported at the same positions as if they had been invoked: when the terminator can't be
+ * found, at the position of the zero character that stops the scan (usually the end of the input).
+ */
+public final class SkipTo extends ParsingExpression
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public ParsingExpression body;
+
+    public ParsingExpression terminator;
+
+    public boolean atLeastOne;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void parse(Parser parser, ParseState state)
+    {
+        if (!scannable())
+        {
+            parseGeneral(parser, state);
+            return;
+        }
+
+        int start = state.start;
+        int pos = scan(parser, start);
+
+        if (parser.charAt(pos) == 0)
+        {
+            failUnterminated(state, pos);
+        }
+        else if (atLeastOne && pos == start)
+        {
+            state.fail(this);
+        }
+        else
+        {
+            state.advance(pos + terminatorLength() - start);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void parseGeneral(Parser parser, ParseState state)
+    {
+        int mark = state.mark();
+        int count = 0;
+
+        while (!terminatorMatches(parser, state))
+        {
+            state.openBacktrackPoint();
+            body.parse(parser, state);
+            state.closeBacktrackPoint();
+
+            if (state.failed())
+            {
+                state.discard();
+                break;
+            }
+
+            state.commit();
+            ++count;
+        }
+
+        if (atLeastOne && count == 0)
+        {
+            state.restore(mark);
+            state.fail(this);
+            return;
+        }
+
+        terminator.parse(parser, state);
+
+        if (state.failed())
+        {
+            state.restore(mark);
+            state.fail(this);
+            return;
+        }
+
+        state.uncommit(mark);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the terminator matches at the current position, without recording errors
+     * nor modifying the parse state.
+     */
+    private boolean terminatorMatches(Parser parser, ParseState state)
+    {
+        boolean recordErrors = state.recordErrors;
+        state.recordErrors = false;
+
+        state.openBacktrackPoint();
+        terminator.parse(parser, state);
+        state.closeBacktrackPoint();
+
+        boolean matches = state.succeeded();
+        state.discard();
+        state.recordErrors = recordErrors;
+        return matches;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Fails after a scan that didn't find the terminator, reporting the failures that {@link
+     * #parseGeneral} reports: those of the body and of the terminator at the position where the
+     * scan stopped (the terminator isn't invoked if no invocation of the body succeeded and {@link
+     * #atLeastOne} is set), then the failure of this expression at the start position.
+     */
+    private void failUnterminated(ParseState state, int pos)
+    {
+        int start = state.start;
+        int blackStart = state.blackStart;
+
+        state.start = pos;
+        state.blackStart = pos;
+        state.fail(body);
+
+        if (!atLeastOne || pos != start)
+            state.fail(terminator);
+
+        state.start = start;
+        state.blackStart = blackStart;
+        state.fail(this);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public int parseDumb(Parser parser, int position)
+    {
+        if (scannable())
+        {
+            int pos = scan(parser, position);
+
+            return parser.charAt(pos) == 0 || atLeastOne && pos == position
+                ? -1
+                : pos + terminatorLength();
+        }
+
+        int count = 0;
+
+        while (terminator.parseDumb(parser, position) == -1)
+        {
+            int result = body.parseDumb(parser, position);
+
+            if (result == -1)
+                break;
+
+            position = result;
+            ++count;
+        }
+
+        return atLeastOne && count == 0
+            ? -1
+            : terminator.parseDumb(parser, position);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the terminator can be located by scanning the input text: the body must be
+     * {@link Any}, and the terminator a {@link Literal} or a {@link CharClass} that can't match the
+     * zero character.
+     */
+    private boolean scannable()
+    {
+        if (!(body instanceof Any))
+            return false;
+
+        if (terminator instanceof Literal)
+        {
+            String string = ((Literal) terminator).string;
+            return !string.isEmpty() && string.charAt(0) != 0;
+        }
+
+        return terminator instanceof CharClass
+            && !((CharClass) terminator).contains((char) 0);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private int terminatorLength()
+    {
+        return terminator instanceof Literal
+            ? ((Literal) terminator).string.length()
+            : 1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the first position, starting from the given position, where the terminator matches
+     * or where the input holds a zero character (which {@link Any} doesn't match). The expression
+     * must be {@link #scannable}.
+     */
+    private int scan(Parser parser, int position)
+    {
+        int pos = position;
+        char c;
+
+        if (terminator instanceof Literal)
+        {
+            CharSequence text = parser.text;
+            String string = ((Literal) terminator).string;
+            char first = string.charAt(0);
+
+            while ((c = parser.charAt(pos)) != 0)
+            {
+                if (c == first && regionMatches(text, pos, string))
+                    break;
+
+                ++pos;
+            }
+        }
+        else
+        {
+            CharClass klass = (CharClass) terminator;
+
+            while ((c = parser.charAt(pos)) != 0 && !klass.contains(c))
+                ++pos;
+        }
+
+        return pos;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static boolean regionMatches(CharSequence text, int position, String string)
+    {
+        if (text instanceof String)
+            return ((String) text).regionMatches(position, string, 0, string.length());
+
+        for (int i = 0; i < string.length(); ++i)
+            if (text.charAt(position + i) != string.charAt(i))
+                return false;
+
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public ParsingExpression[] children()
+    {
+        return new ParsingExpression[]{ body, terminator };
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void setChild(int position, ParsingExpression pe)
+    {
+        if (position == 0)
+            body = pe;
+        else
+            terminator = pe;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public ParsingExpression[] firsts(Predicate<ParsingExpression> nullability)
+    {
+        return children();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public Nullability nullability()
+    {
+        return atLeastOne
+            ? Nullability.all(this, children())
+            : Nullability.single(this, terminator);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public String ownDataString()
+    {
+        return atLeastOne ? "++" : "*+";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -125,8 +125,9 @@ public final class SubGrammar extends ParsingExpression
         }
         else
         {
-            state.tree.addChild(
-                new ParseTreeBuild(false, new Decorate[]{ new DecorateWithSubtree(result.tree)}));
+            if (parser.captures && result.tree != null)
+                state.tree.addChild(new ParseTreeBuild(
+                    false, new Decorate[]{ new DecorateWithSubtree(result.tree)}));
 
             for (int i = 0; i < outputMerge.size(); i++)
             {
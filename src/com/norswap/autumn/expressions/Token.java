@@ -1,5 +1,6 @@
 package com.norswap.autumn.expressions;
 
+import com.norswap.autumn.errors.DefaultErrorState;
 import com.norswap.autumn.state.ParseState;
 import com.norswap.autumn.Parser;
 import com.norswap.autumn.expressions.abstrakt.UnaryParsingExpression;
@@ -8,6 +9,14 @@ public final class Token extends UnaryParsingExpression
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * A dense index, unique amongst the tokens of a grammar, assigned when the grammar is built.
+     * -1 if no id was assigned. Used by {@link DefaultErrorState}.
+     */
+    public int id = -1;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     @Override
     public void parse(Parser parser, ParseState state)
     {
@@ -19,10 +28,7 @@ public final class Token extends UnaryParsingExpression
             return;
         }
 
-        int pos = parser.whitespace.parseDumb(parser, state.end);
-
-        if (pos > 0)
-            state.end = pos;
+        state.end = parser.skipWhitespace(state.end);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -35,8 +41,7 @@ public final class Token extends UnaryParsingExpression
         if (position == -1)
             return -1;
 
-        int pos = parser.whitespace.parseDumb(parser, position);
-        return pos > 0 ? pos : position;
+        return parser.skipWhitespace(position);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
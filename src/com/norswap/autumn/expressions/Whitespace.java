@@ -19,12 +19,7 @@ public final class Whitespace extends ParsingExpression
     @Override
     public void parse(Parser parser, ParseState state)
     {
-        int end = parser.whitespace.parseDumb(parser, state.end);
-
-        if (end > 0)
-        {
-            state.end = end;
-        }
+        state.end = parser.skipWhitespace(state.end);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -2,7 +2,6 @@ package com.norswap.autumn.expressions;
 
 import com.norswap.autumn.state.ParseState;
 import com.norswap.autumn.Parser;
-import com.norswap.autumn.state.ParseStateSnapshot;
 import com.norswap.autumn.expressions.abstrakt.UnaryParsingExpression;
 import com.norswap.autumn.graph.Nullability;
 
@@ -22,11 +21,13 @@ public final class ZeroMore extends UnaryParsingExpression
     @Override
     public void parse(Parser parser, ParseState state)
     {
-        ParseStateSnapshot snapshot = state.snapshot();
+        int mark = state.mark();
 
         while (true)
         {
+            state.openBacktrackPoint();
             operand.parse(parser, state);
+            state.closeBacktrackPoint();
 
             if (state.failed())
             {
@@ -37,7 +38,7 @@ public final class ZeroMore extends UnaryParsingExpression
             state.commit();
         }
 
-        state.uncommit(snapshot);
+        state.uncommit(mark);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -17,7 +17,7 @@ public final class CustomStateIndex
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    public static Supplier<Integer> allocator = new DefaultAllocator();
+    public static volatile Supplier<Integer> allocator = new DefaultAllocator();
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
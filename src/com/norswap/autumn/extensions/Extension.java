@@ -4,6 +4,7 @@ import com.norswap.autumn.GrammarBuilderExtensionView;
 import com.norswap.autumn.Parser;
 import com.norswap.autumn.state.CustomState;
 import com.norswap.autumn.state.ParseState;
+import com.norswap.autumn.support.InputGenerator;
 import com.norswap.util.annotations.NonNull;
 
 /**
@@ -44,6 +45,15 @@ public interface Extension
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Registers handlers with an input generator created for a grammar that uses this extension,
+     * for the parsing expressions defined by the extension that can't be generated from their
+     * children alone. See {@link InputGenerator#handle}.
+     */
+    default void setupGenerator(InputGenerator generator) {}
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * Returns the index at with the custom state for this extension can be found in {@link
      * ParseState#customStates}. This index should be made static to the extension and must be
@@ -0,0 +1,79 @@
+package com.norswap.autumn.extensions.cluster;
+
+import com.norswap.autumn.extensions.cluster.expressions.ExpressionCluster;
+import com.norswap.autumn.extensions.cluster.expressions.Filter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Assigns ids to the names of the alternates of expression clusters. {@link ExpressionCluster}
+ * outputs the id of the alternate it selected, and {@link Filter} tests it against bitsets of the
+ * ids of its allowed and forbidden names.
+ * <p>
+ * The ids are scoped to a grammar: they are assigned by {@link ClusterIdAllocator} when the grammar
+ * is built. A filter and the clusters it filters must therefore belong to the same grammar.
+ */
+public final class AlternateNames
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the id of the given name, or -1 if it is null.
+     */
+    public int id(String name)
+    {
+        if (name == null)
+            return -1;
+
+        Integer id = ids.get(name);
+
+        if (id == null)
+            ids.put(name, id = ids.size());
+
+        return id;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a bitset of the ids of the given names.
+     */
+    public long[] bitset(String[] names)
+    {
+        long[] bits = new long[0];
+
+        for (String name: names)
+        {
+            int id = id(name);
+            int word = id >>> 6;
+
+            if (id < 0)
+                continue;
+
+            if (word >= bits.length)
+                bits = Arrays.copyOf(bits, word + 1);
+
+            bits[word] |= 1L << id;
+        }
+
+        return bits;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the given bitset contains the given id (which may be -1).
+     */
+    public static boolean contains(long[] bits, int id)
+    {
+        int word = id >>> 6;
+        return id >= 0 && word < bits.length && (bits[word] & 1L << id) != 0;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -1,5 +1,6 @@
 package com.norswap.autumn.extensions.cluster;
 
+import com.norswap.autumn.GrammarBuilderExtensionView;
 import com.norswap.autumn.extensions.CustomStateIndex;
 import com.norswap.autumn.extensions.Extension;
 import com.norswap.autumn.extensions.SyntaxExtension;
@@ -21,14 +22,13 @@ public final class ClusterExtension implements Extension
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    private final ClusterState cstate = new ClusterState();
     private SyntaxExtension[] syntaxExtensions;
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     public ExpressionCluster cluster(ExpressionCluster.Group... groups)
     {
-        ExpressionCluster result = new ExpressionCluster(cstate);
+        ExpressionCluster result = new ExpressionCluster();
 
         // Sort in decreasing order of precedence.
         Arrays.sort(groups, (g1, g2) -> g2.precedence - g1.precedence);
@@ -42,7 +42,17 @@ public final class ClusterExtension implements Extension
     @Override
     public CustomState customParseState()
     {
-        return cstate;
+        return new ClusterState();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void transform(GrammarBuilderExtensionView grammar)
+    {
+        ClusterIdAllocator idAllocator = new ClusterIdAllocator();
+        grammar.compute(idAllocator);
+        idAllocator.conclude();
     }
 
     // ---------------------------------------------------------------------------------------------
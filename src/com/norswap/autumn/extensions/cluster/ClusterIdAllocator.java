@@ -0,0 +1,63 @@
+package com.norswap.autumn.extensions.cluster;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.extensions.cluster.expressions.ExpressionCluster;
+import com.norswap.autumn.extensions.cluster.expressions.Filter;
+import com.norswap.autumn.graph.ParsingExpressionVisitor;
+import com.norswap.util.graph.Slot;
+
+/**
+ * Assigns a dense id ({@link ExpressionCluster#id}) to each {@link ExpressionCluster} in a parsing
+ * expression graph, as well as the name ids ({@link AlternateNames}) of its alternates ({@link
+ * ExpressionCluster#alternateIds}) and of the names tested by each {@link Filter}. After the visit,
+ * {@link #ids} holds the number of assigned cluster ids.
+ * <p>
+ * This is run by {@link ClusterExtension}.
+ */
+public final class ClusterIdAllocator extends ParsingExpressionVisitor
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public int ids = 0;
+
+    public final AlternateNames names = new AlternateNames();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void beforeNode(Slot<ParsingExpression> slot)
+    {
+        if (slot.initial instanceof ExpressionCluster)
+        {
+            ExpressionCluster cluster = (ExpressionCluster) slot.initial;
+            cluster.id = ids++;
+            cluster.alternateIds = alternateIds(cluster);
+        }
+        else if (slot.initial instanceof Filter)
+        {
+            Filter filter = (Filter) slot.initial;
+            filter.allowedIds = names.bitset(filter.allowed);
+            filter.forbiddenIds = names.bitset(filter.forbidden);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private int[][] alternateIds(ExpressionCluster cluster)
+    {
+        int[][] ids = new int[cluster.groups.length][];
+
+        for (int g = 0; g < ids.length; ++g)
+        {
+            ParsingExpression[] operands = cluster.groups[g].operands;
+            ids[g] = new int[operands.length];
+
+            for (int i = 0; i < operands.length; ++i)
+                ids[g][i] = names.id(operands[i].name);
+        }
+
+        return ids;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
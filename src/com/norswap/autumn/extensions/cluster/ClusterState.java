@@ -1,151 +1,279 @@
 package com.norswap.autumn.extensions.cluster;
 
-import com.google.auto.value.AutoValue;
-import com.norswap.autumn.ParsingExpression;
-import com.norswap.autumn.extensions.Seeds;
 import com.norswap.autumn.extensions.cluster.expressions.ExpressionCluster;
 import com.norswap.autumn.extensions.cluster.expressions.Filter;
 import com.norswap.autumn.extensions.cluster.expressions.WithMinPrecedence;
 import com.norswap.autumn.state.CustomState;
 import com.norswap.autumn.state.ParseChanges;
 import com.norswap.autumn.state.ParseState;
-import com.norswap.autumn.state.patterns.ValueOutput;
-import com.norswap.util.Array;
-import com.norswap.util.annotations.Nullable;
-
-import java.util.HashMap;
-
-import static com.norswap.util.Caster.cast;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * The state of {@link ClusterExtension}: the seeds and precedences of the ongoing invocations of
+ * {@link ExpressionCluster} expressions, and the alternate selected by the last cluster.
+ * <p>
+ * Each cluster is mapped to a slot: its id ({@link ExpressionCluster#id}) for the clusters of the
+ * grammar, or an extra slot for clusters that have no id or whose id is already taken (e.g.
+ * clusters from syntax extensions). The seeds and the precedences are held in arrays indexed by
+ * slot, and the values they had before each invocation are held in stacks.
+ * <p>
+ * As for {@link com.norswap.autumn.extensions.leftrec.LeftRecursionState}, a seed is only visible
+ * at the position where it was set, hence the seeds need not be saved by marks.
+ * <p>
+ * The inputs are immutable snapshots that are cached until the state changes. They are null when
+ * no cluster invocation is ongoing.
+ */
 public final class ClusterState implements CustomState
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    public static class Precedence
-    {
-        Precedence(int value)
-        {
-            this.value = value;
-        }
-
-        // Value is above the history stack.
-
-        public int value;
-        Array<Integer> history = new Array<>();
+    /**
+     * Maps slots to the clusters that occupy them.
+     */
+    private ExpressionCluster[] owners = new ExpressionCluster[8];
 
-        public int oldPrecedence()
-        {
-            return history.peekOr(0);
-        }
-    }
+    /**
+     * Slots of the clusters that couldn't use their id as slot, or null.
+     */
+    private IdentityHashMap<ExpressionCluster, Integer> extraSlots;
 
-    ////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * The seed of each slot, or null.
+     */
+    private ParseChanges[] seeds = new ParseChanges[8];
 
     /**
-     * The seeds for ongoing expression clusters.
+     * The position at which the seed of each slot was set.
      */
-    private Seeds seeds = new Seeds();
+    private int[] positions = new int[8];
 
     /**
-     * The current cluster alternate; set by {@link ExpressionCluster} and read by {@link Filter}.
+     * The current precedence of each slot, 0 if no invocation of its cluster is ongoing.
      */
-    private ValueOutput<ParsingExpression> alternate = new ValueOutput<>();
+    private int[] precedences = new int[8];
+
+    // The stack of seeded slots, in invocation order, along with the seed (and its position) that
+    // each slot held before being seeded.
+
+    private int[] seedSlots = new int[8];
+    private ParseChanges[] seedStack = new ParseChanges[8];
+    private int[] positionStack = new int[8];
+    private int seedDepth;
+
+    // The stack of ongoing cluster invocations, along with the precedence that the slot of each
+    // invocation held before the invocation. The top of the stack is the slot whose precedence is
+    // set by {@link WithMinPrecedence}.
+
+    private int[] precedenceSlots = new int[8];
+    private int[] precedenceStack = new int[8];
+    private int precedenceDepth;
 
     /**
-     * Maps from expression clusters to their current precedence.
+     * The name id ({@link AlternateNames}) of the alternate selected by the last successful
+     * cluster; set by {@link ExpressionCluster} and read by {@link Filter}. This is an output: it
+     * follows the usual commit / discard discipline.
      */
-    private HashMap<ExpressionCluster, Precedence> precedences = new HashMap<>();
+    private int alternate = -1;
+
+    private int alternateCommitted = -1;
 
     /**
-     * A stack of expressions with a precedence level that are currently being visited. These
-     * expressions are the keys of {@link #precedences}.
-     * <p>
-     * This data structure is necessary for {@link #getCurrentPrecedence} (used by {@link
-     * WithMinPrecedence}) to work.
+     * The last inputs returned by {@link #inputs}, or null if the state changed since then.
      */
-    private Array<ExpressionCluster> history = new Array<>();
+    private Inputs inputs;
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    public ParseChanges getSeed(ParsingExpression pe)
+    public ParseChanges getSeed(ExpressionCluster pe, ParseState state)
     {
-        return seeds.get(pe);
+        int slot = slot(pe);
+        ParseChanges seed = seeds[slot];
+
+        return seed != null && positions[slot] == state.start
+            ? seed
+            : null;
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public void setSeed(ParsingExpression pe, ParseChanges seed, int position)
+    public void setSeed(ExpressionCluster pe, ParseChanges seed, int position)
     {
-        seeds.set(pe, seed, position);
+        int slot = slot(pe);
+        inputs = null;
+
+        if (seedDepth > 0 && seedSlots[seedDepth - 1] == slot && positions[slot] == position)
+        {
+            seeds[slot] = seed;
+            return;
+        }
+
+        if (seedDepth == seedSlots.length)
+        {
+            seedSlots = Arrays.copyOf(seedSlots, seedDepth * 2);
+            seedStack = Arrays.copyOf(seedStack, seedDepth * 2);
+            positionStack = Arrays.copyOf(positionStack, seedDepth * 2);
+        }
+
+        seedSlots[seedDepth] = slot;
+        seedStack[seedDepth] = seeds[slot];
+        positionStack[seedDepth] = positions[slot];
+        ++seedDepth;
+
+        seeds[slot] = seed;
+        positions[slot] = position;
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public void removeSeed(ParsingExpression pe)
+    public void removeSeed(ExpressionCluster pe)
     {
-        seeds.remove(pe);
+        --seedDepth;
+        int slot = seedSlots[seedDepth];
+        seeds[slot] = seedStack[seedDepth];
+        positions[slot] = positionStack[seedDepth];
+        seedStack[seedDepth] = null;
+        inputs = null;
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public ParsingExpression getAlternate()
+    public int getAlternate()
     {
-        return alternate.get();
+        return alternate;
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public void setAlternate(ParsingExpression pe)
+    public void setAlternate(int alternate)
     {
-        alternate.set(pe);
+        this.alternate = alternate;
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public Precedence getPrecedence(ExpressionCluster pe)
+    /**
+     * Starts an invocation of the given cluster, and returns the precedence of the enclosing
+     * invocation of the same cluster, or 0 if there is none. The precedence of the new invocation
+     * is initially the same.
+     */
+    public int pushPrecedence(ExpressionCluster pe)
     {
-        history.push(pe);
-
-        return precedences.compute(pe, (k, v) -> {
-            if (v != null)
-            {
-                v.history.push(v.value);
-                return v;
-            }
-            else
-            {
-                return new Precedence(0);
-            }
-        });
+        int slot = slot(pe);
+
+        if (precedenceDepth == precedenceSlots.length)
+        {
+            precedenceSlots = Arrays.copyOf(precedenceSlots, precedenceDepth * 2);
+            precedenceStack = Arrays.copyOf(precedenceStack, precedenceDepth * 2);
+        }
+
+        precedenceSlots[precedenceDepth] = slot;
+        precedenceStack[precedenceDepth] = precedences[slot];
+        ++precedenceDepth;
+        inputs = null;
+
+        return precedences[slot];
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public void removePrecedence(ExpressionCluster pe, Precedence precedence)
+    /**
+     * Ends the innermost cluster invocation.
+     */
+    public void popPrecedence()
     {
-        history.pop();
+        --precedenceDepth;
+        precedences[precedenceSlots[precedenceDepth]] = precedenceStack[precedenceDepth];
+        inputs = null;
+    }
 
-        if (precedence.history.isEmpty())
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the precedence of the innermost cluster invocation.
+     */
+    public int getCurrentPrecedence()
+    {
+        return precedences[currentSlot()];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the precedence of the innermost cluster invocation.
+     */
+    public void setCurrentPrecedence(int precedence)
+    {
+        int slot = currentSlot();
+
+        if (precedences[slot] != precedence)
         {
-            precedences.remove(pe);
+            precedences[slot] = precedence;
+            inputs = null;
         }
-        else
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private int currentSlot()
+    {
+        if (precedenceDepth == 0)
         {
-            precedence.value = precedence.history.pop();
+            throw new Error(
+                "Trying to retrieve a cluster precedence while none is currently parsing.");
         }
+
+        return precedenceSlots[precedenceDepth - 1];
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public Precedence getCurrentPrecedence()
+    /**
+     * Returns the slot of the given cluster, assigning one if needed.
+     */
+    private int slot(ExpressionCluster pe)
     {
-        if (history.isEmpty())
+        int id = pe.id;
+
+        if (id >= 0 && id < owners.length && owners[id] == pe)
+            return id;
+
+        if (id >= 0 && (id >= owners.length || owners[id] == null))
         {
-            throw new Error(
-                "Trying to retrieve a cluster precedence while none is currently parsing.");
+            grow(id + 1);
+            owners[id] = pe;
+            return id;
         }
 
-        return precedences.get(history.peek());
+        if (extraSlots == null)
+            extraSlots = new IdentityHashMap<>();
+
+        Integer slot = extraSlots.get(pe);
+
+        if (slot == null)
+        {
+            slot = owners.length;
+            grow(slot + 1);
+            owners[slot] = pe;
+            extraSlots.put(pe, slot);
+        }
+
+        return slot;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void grow(int size)
+    {
+        if (size <= owners.length)
+            return;
+
+        int length = Math.max(size, owners.length * 2);
+        owners = Arrays.copyOf(owners, length);
+        seeds = Arrays.copyOf(seeds, length);
+        positions = Arrays.copyOf(positions, length);
+        precedences = Arrays.copyOf(precedences, length);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -153,10 +281,58 @@ public final class ClusterState implements CustomState
     @Override
     public Inputs inputs(ParseState state)
     {
-        return Inputs.create(
-            seeds.inputs(state),
-            cast(precedences.clone()),
-            history.clone());
+        int position = state.start;
+
+        if (precedenceDepth == 0)
+            return null;
+
+        if (inputs != null && inputs.position == position)
+            return inputs;
+
+        // Only the seeds at the top of the stack can be visible, since nested invocations never
+        // start before their ancestors.
+
+        int bottom = seedDepth;
+
+        while (bottom > 0 && positions[seedSlots[bottom - 1]] == position)
+            --bottom;
+
+        ExpressionCluster[] seeded = new ExpressionCluster[seedDepth - bottom];
+        ParseChanges[] seedArray = new ParseChanges[seedDepth - bottom];
+
+        for (int i = bottom; i < seedDepth; ++i)
+        {
+            seeded[i - bottom] = owners[seedSlots[i]];
+            seedArray[i - bottom] = seeds[seedSlots[i]];
+        }
+
+        // The precedence of each invocation is the precedence that the next invocation of the
+        // same cluster saved, or the current precedence of the cluster for the innermost one.
+        // Walk the stack down to collect them, then up to restore the current precedences.
+
+        ExpressionCluster[] clusters = new ExpressionCluster[precedenceDepth];
+        int[] precedenceArray = new int[precedenceDepth];
+
+        for (int i = precedenceDepth - 1; i >= 0; --i)
+        {
+            int slot = precedenceSlots[i];
+            clusters[i] = owners[slot];
+            precedenceArray[i] = precedences[slot];
+            precedences[slot] = precedenceStack[i];
+        }
+
+        for (int i = 0; i < precedenceDepth; ++i)
+            precedences[precedenceSlots[i]] = precedenceArray[i];
+
+        return inputs = new Inputs(position, seeded, seedArray, clusters, precedenceArray);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean hasDefaultInputs(ParseState state)
+    {
+        return precedenceDepth == 0;
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -164,38 +340,53 @@ public final class ClusterState implements CustomState
     @Override
     public void load(Object inputs)
     {
+        Arrays.fill(seeds, null);
+        Arrays.fill(seedStack, null);
+        Arrays.fill(precedences, 0);
+        seedDepth = 0;
+        precedenceDepth = 0;
+        this.inputs = null;
+
+        if (inputs == null)
+            return;
+
         Inputs in = (Inputs) inputs;
-        seeds.load(cast(in.seeds()));
-        precedences = cast(in.precedences().clone());
-        history = in.history().clone();
+
+        for (int i = 0; i < in.clusters.length; ++i)
+        {
+            pushPrecedence(in.clusters[i]);
+            setCurrentPrecedence(in.precedences[i]);
+        }
+
+        for (int i = 0; i < in.seeded.length; ++i)
+            setSeed(in.seeded[i], in.seeds[i], in.position);
     }
 
     // ---------------------------------------------------------------------------------------------
 
+    // Only the alternate needs to be saved by marks (see the class documentation).
+
     @Override
-    public Object snapshot(ParseState state)
+    public void mark(ParseState state)
     {
-        return new Snapshot(seeds.snapshot(state), alternate.snapshot(state));
+        state.pushMarkInt(alternateCommitted);
     }
 
     // ---------------------------------------------------------------------------------------------
 
     @Override
-    public void restore(Object snapshot, ParseState state)
+    public void restoreMark(ParseState state)
     {
-        Snapshot snap = (Snapshot) snapshot;
-        seeds.restore(snap.seeds, state);
-        alternate.restore(snap.alternate, state);
+        alternateCommitted = state.popMarkInt();
+        alternate = alternateCommitted;
     }
 
     // ---------------------------------------------------------------------------------------------
 
     @Override
-    public void uncommit(Object snapshot, ParseState state)
+    public void uncommitMark(ParseState state)
     {
-        Snapshot snap = (Snapshot) snapshot;
-        seeds.uncommit(snap.seeds, state);
-        alternate.uncommit(snap.alternate, state);
+        alternateCommitted = state.popMarkInt();
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -203,7 +394,7 @@ public final class ClusterState implements CustomState
     @Override
     public void discard(ParseState state)
     {
-        alternate.discard(state);
+        alternate = alternateCommitted;
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -211,16 +402,21 @@ public final class ClusterState implements CustomState
     @Override
     public void commit(ParseState state)
     {
-        seeds.commit(state);
-        alternate.commit(state);
+        alternateCommitted = alternate;
     }
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Returns the uncommitted alternate as an {@link Integer}, or null if it is the committed one.
+     * Since the name ids are small, the boxed values are normally cached by {@link Integer}.
+     */
     @Override
     public Object extract(ParseState state)
     {
-        return alternate.extract(state);
+        return alternate != alternateCommitted
+            ? Integer.valueOf(alternate)
+            : null;
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -228,38 +424,82 @@ public final class ClusterState implements CustomState
     @Override
     public void merge(Object changes, ParseState state)
     {
-        alternate.merge(changes, state);
+        if (changes != null)
+            alternate = (Integer) changes;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    public static final class Snapshot
+    /**
+     * An immutable snapshot of the visible seeds and of the ongoing cluster invocations.
+     */
+    public static final class Inputs
     {
-        final Object seeds, alternate;
-
-        Snapshot(Object seeds, Object alternate)
+        public final int position;
+
+        /**
+         * The clusters with a visible seed, in invocation order.
+         */
+        public final ExpressionCluster[] seeded;
+
+        /**
+         * The seeds of the clusters in {@link #seeded}.
+         */
+        public final ParseChanges[] seeds;
+
+        /**
+         * The clusters of the ongoing invocations, in invocation order.
+         */
+        public final ExpressionCluster[] clusters;
+
+        /**
+         * The precedences of the invocations in {@link #clusters}.
+         */
+        public final int[] precedences;
+
+        private final int hash;
+
+        public Inputs(
+            int position,
+            ExpressionCluster[] seeded,
+            ParseChanges[] seeds,
+            ExpressionCluster[] clusters,
+            int[] precedences)
         {
+            this.position = position;
+            this.seeded = seeded;
             this.seeds = seeds;
-            this.alternate = alternate;
+            this.clusters = clusters;
+            this.precedences = precedences;
+
+            int hash = position;
+            hash = 31 * hash + Arrays.hashCode(seeded);
+            hash = 31 * hash + Arrays.hashCode(seeds);
+            hash = 31 * hash + Arrays.hashCode(clusters);
+            hash = 31 * hash + Arrays.hashCode(precedences);
+            this.hash = hash;
         }
-    }
-
-    ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    @AutoValue
-    public static abstract class Inputs
-    {
-        static Inputs create(
-            @Nullable Object seeds,
-            HashMap<ParsingExpression, Precedence> precedences,
-            Array<ExpressionCluster> history)
+        @Override
+        public boolean equals(Object o)
         {
-            return new AutoValue_ClusterState_Inputs(seeds, precedences, history);
+            Inputs that;
+            return this == o
+                || o instanceof Inputs
+                && (that = (Inputs) o) != null
+                && hash == that.hash
+                && position == that.position
+                && Arrays.equals(seeded, that.seeded)
+                && Arrays.equals(seeds, that.seeds)
+                && Arrays.equals(clusters, that.clusters)
+                && Arrays.equals(precedences, that.precedences);
         }
 
-        abstract @Nullable Object seeds();
-        abstract HashMap<ParsingExpression, Precedence> precedences();
-        abstract Array<ExpressionCluster> history();
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -2,8 +2,14 @@ package com.norswap.autumn.extensions.cluster.expressions;
 
 import com.norswap.autumn.Parser;
 import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.Capture;
+import com.norswap.autumn.expressions.Sequence;
 import com.norswap.autumn.expressions.abstrakt.NaryParsingExpression;
+import com.norswap.autumn.extensions.cluster.AlternateNames;
+import com.norswap.autumn.extensions.cluster.ClusterExtension;
 import com.norswap.autumn.extensions.cluster.ClusterState;
+import com.norswap.autumn.graph.DispatchTable;
+import com.norswap.autumn.graph.DispatchTableBuilder;
 import com.norswap.autumn.graph.Nullability;
 import com.norswap.autumn.state.ParseChanges;
 import com.norswap.autumn.state.ParseState;
@@ -11,21 +17,12 @@ import com.norswap.util.DeepCopy;
 import java.util.Arrays;
 import java.util.function.Predicate;
 
+import static com.norswap.util.Caster.cast;
+
 public final class ExpressionCluster extends ParsingExpression
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    private final ClusterState cstate;
-
-    ////////////////////////////////////////////////////////////////////////////////////////////////
-
-    public ExpressionCluster(ClusterState cstate)
-    {
-        this.cstate = cstate;
-    }
-
-    ////////////////////////////////////////////////////////////////////////////////////////////////
-
     public final static class Group extends NaryParsingExpression
     {
         public int precedence;
@@ -59,14 +56,46 @@ public final class ExpressionCluster extends ParsingExpression
      */
     public Group[] groups;
 
+    /**
+     * A dense index, unique amongst the clusters of a grammar, assigned when the grammar is built.
+     * -1 if no id was assigned. Used by {@link ClusterState}.
+     */
+    public int id = -1;
+
+    /**
+     * The name ids ({@link AlternateNames}) of the alternates of each group, assigned along with
+     * {@link #id} when the grammar is built, and not modified afterwards. Null if no ids were
+     * assigned, in which case the alternates are considered unnamed.
+     * <p>
+     * The transformations that wrap alternates copy their names, so the ids remain valid.
+     */
+    public int[][] alternateIds;
+
+    /**
+     * Optional operator dispatch table, set by {@link DispatchTableBuilder} through {@link
+     * #setDispatch}. Its operands are the alternates of all groups, in the order of {@link
+     * #children}. For each character, it lists the alternates that may succeed when that character
+     * follows the seed: the infix and postfix alternates (see {@link #infix}) whose operator can't
+     * start with the character are excluded.
+     * <p>
+     * If set, the seed is grown by precedence climbing once it has been found (see {@link #climb}).
+     */
+    public DispatchTable dispatch;
+
+    /**
+     * The operator table used along with {@link #dispatch}, built when it is set.
+     */
+    private Operators operators;
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
     public void parse(Parser parser, ParseState state)
     {
+        ClusterState cstate = cast(state.customStates[ClusterExtension.INDEX]);
         ParseChanges changes;
 
-        if ((changes = cstate.getSeed(this)) != null)
+        if ((changes = cstate.getSeed(this, state)) != null)
         {
             // If this is a re-entry, use the seed value.
             state.merge(changes);
@@ -76,12 +105,17 @@ public final class ExpressionCluster extends ParsingExpression
         changes = ParseChanges.failure();
         cstate.setSeed(this, changes, state.start);
 
-        ClusterState.Precedence precedence = cstate.getPrecedence(this);
-        int oldPrecedence = precedence.oldPrecedence();
+        int oldPrecedence = cstate.pushPrecedence(this);
+        Operators operators = this.operators;
+        int climbFrom = -1;
+
+        state.openBacktrackPoint();
 
         // Iterate over groups in order of decreasing precedence.
-        for (Group group: groups)
+        groups: for (int g = 0; g < groups.length; ++g)
         {
+            Group group = groups[g];
+
             // Blocks recursion into alternates of lower precedence. Also blocks recursion into
             // alternate of similar precedence for left-associative groups, to prevent
             // right-recursion.
@@ -89,20 +123,28 @@ public final class ExpressionCluster extends ParsingExpression
             if (group.precedence < oldPrecedence)
                 break;
 
-            precedence.value = group.precedence + (group.leftAssociative ? 1 : 0);
+            cstate.setCurrentPrecedence(group.precedence + (group.leftAssociative ? 1 : 0));
 
             leftRec: do {
-                for (ParsingExpression alternate: group.operands)
+                for (int i = 0; i < group.operands.length; ++i)
                 {
-                    alternate.parse(parser, state);
+                    group.operands[i].parse(parser, state);
 
                     if (state.end > changes.end)
                     {
                         // The seed was grown, try growing it again starting from first group rule.
-                        cstate.setAlternate(alternate);
+                        cstate.setAlternate(alternateIds != null ? alternateIds[g][i] : -1);
                         changes = state.extract();
                         cstate.setSeed(this, changes, state.start);
                         state.discard();
+
+                        if (operators != null)
+                        {
+                            // The seed was found, grow it by precedence climbing.
+                            climbFrom = operators.resumes[operators.firsts[g] + i];
+                            break groups;
+                        }
+
                         continue leftRec;
                     }
                     else
@@ -117,8 +159,12 @@ public final class ExpressionCluster extends ParsingExpression
             while (group.leftRecursive);
         }
 
+        if (climbFrom >= 0)
+            changes = climb(parser, state, cstate, changes, climbFrom, oldPrecedence);
+
+        state.closeBacktrackPoint();
         cstate.removeSeed(this);
-        cstate.removePrecedence(this, precedence);
+        cstate.popPrecedence();
         state.merge(changes);
 
         if (state.failed()) {
@@ -126,6 +172,151 @@ public final class ExpressionCluster extends ParsingExpression
         }
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Grows the seed by precedence climbing, starting from the alternate at the given index (in the
+     * order of {@link #children}), and returns the final seed.
+     * <p>
+     * This is equivalent to resuming the seed-growing loop of {@link #parse} at that alternate,
+     * but only the alternates that may match are invoked. The character that follows the seed is
+     * read, and {@link #dispatch} yields the candidates: the alternates whose operator may start
+     * with that character, and the alternates that are not infix. The candidates are tried in
+     * order of decreasing precedence, down to the minimum precedence. When one grows the seed, the
+     * operator table ({@link Operators}) gives the precedence of the right operand and the
+     * alternate from which to resume; the loop then starts over with the character that follows
+     * the new seed. The failures of the alternates that are not invoked are replayed (see {@link
+     * #skip}).
+     */
+    private ParseChanges climb(
+        Parser parser,
+        ParseState state,
+        ClusterState cstate,
+        ParseChanges seed,
+        int from,
+        int minPrecedence)
+    {
+        Operators operators = this.operators;
+        int g = from < operators.groups.length ? operators.groups[from] : groups.length;
+
+        while (g < groups.length && groups[g].precedence >= minPrecedence)
+            ++g;
+
+        int stop = operators.firsts[g];
+
+        climb: while (from < stop)
+        {
+            int[] candidates = dispatch.candidates(parser.charAt(seed.end));
+            int k = Arrays.binarySearch(candidates, from);
+
+            for (k = k < 0 ? -k - 1 : k; k < candidates.length && candidates[k] < stop; ++k)
+            {
+                int i = candidates[k];
+                skip(from, i, state, seed);
+
+                cstate.setCurrentPrecedence(operators.precedences[i]);
+                operators.alternates[i].parse(parser, state);
+
+                if (state.end > seed.end)
+                {
+                    g = operators.groups[i];
+
+                    cstate.setAlternate(alternateIds != null
+                        ? alternateIds[g][i - operators.firsts[g]]
+                        : -1);
+
+                    seed = state.extract();
+                    cstate.setSeed(this, seed, state.start);
+                    state.discard();
+                    from = operators.resumes[i];
+                    continue climb;
+                }
+
+                state.discard();
+                from = i + 1;
+            }
+
+            skip(from, stop, state, seed);
+            break;
+        }
+
+        return seed;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Replays the failures of the infix alternates whose index is in [from, to) (see {@link
+     * #dispatch}), none of which can match: for each, its operator fails at the end of the seed,
+     * then its sequence fails at the start position. The uncommitted state is discarded once at the
+     * end, and nothing is replayed if the failures can't be observed.
+     */
+    private void skip(int from, int to, ParseState state, ParseChanges seed)
+    {
+        if (from == to || !state.recordErrors && dispatch.quiet(from, to))
+            return;
+
+        int start = state.start;
+        int blackStart = state.blackStart;
+
+        for (int i = from; i < to; ++i)
+        {
+            state.start = seed.end;
+            state.blackStart = seed.blackEnd;
+            dispatch.replay(i, state);
+
+            state.start = start;
+            state.blackStart = blackStart;
+            state.fail(operators.infixes[i]);
+        }
+
+        state.discard();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * If the given alternate is an infix or postfix alternate, i.e. a sequence (possibly wrapped in
+     * captures) whose first operand is this cluster (possibly wrapped in captures), returns the
+     * sequence; returns null otherwise.
+     * <p>
+     * The first operand of such an alternate re-enters the cluster and yields the seed, hence the
+     * rest of the sequence (the operator) is invoked at the end of the seed.
+     */
+    public Sequence infix(ParsingExpression alternate)
+    {
+        while (alternate.getClass() == Capture.class)
+            alternate = ((Capture) alternate).operand;
+
+        if (alternate.getClass() != Sequence.class)
+            return null;
+
+        Sequence sequence = (Sequence) alternate;
+
+        if (sequence.operands.length < 2)
+            return null;
+
+        ParsingExpression first = sequence.operands[0];
+
+        while (first.getClass() == Capture.class)
+            first = ((Capture) first).operand;
+
+        return first == this
+            ? sequence
+            : null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets {@link #dispatch}, which may be null.
+     */
+    public void setDispatch(DispatchTable dispatch)
+    {
+        this.dispatch = dispatch;
+        this.operators = dispatch == null ? null : new Operators(this);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
@@ -148,6 +339,7 @@ public final class ExpressionCluster extends ParsingExpression
             if (position < pos + group.operands.length)
             {
                 group.operands[position - pos] = pe;
+                setDispatch(null);
                 return;
             }
 
@@ -167,6 +359,8 @@ public final class ExpressionCluster extends ParsingExpression
 
         for (Group group: groups)
             group.operands = group.operands.clone();
+
+        setDispatch(null);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -209,4 +403,71 @@ public final class ExpressionCluster extends ParsingExpression
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The operator table of a cluster, built from its groups: for each alternate, in the order of
+     * {@link #children}, what precedence climbing needs to know about it (see {@link #climb}).
+     */
+    private static final class Operators
+    {
+        final ParsingExpression[] alternates;
+
+        /**
+         * The index of the group of each alternate.
+         */
+        final int[] groups;
+
+        /**
+         * The index of the first alternate of each group, followed by the number of alternates.
+         */
+        final int[] firsts;
+
+        /**
+         * The precedence of the operands invoked after the operator of each alternate: the
+         * precedence of its group, plus one if the group is left-associative.
+         */
+        final int[] precedences;
+
+        /**
+         * The index of the alternate from which to resume once each alternate has grown the seed:
+         * the first alternate of its group if the group is left-recursive, the first alternate of
+         * the next group otherwise.
+         */
+        final int[] resumes;
+
+        /**
+         * The result of {@link ExpressionCluster#infix} for each alternate.
+         */
+        final Sequence[] infixes;
+
+        Operators(ExpressionCluster cluster)
+        {
+            alternates = cluster.children();
+            groups = new int[alternates.length];
+            firsts = new int[cluster.groups.length + 1];
+            precedences = new int[alternates.length];
+            resumes = new int[alternates.length];
+            infixes = new Sequence[alternates.length];
+
+            for (int g = 0, i = 0; g < cluster.groups.length; ++g)
+            {
+                Group group = cluster.groups[g];
+                firsts[g] = i;
+
+                for (int j = 0; j < group.operands.length; ++j, ++i)
+                {
+                    groups[i] = g;
+                    precedences[i] = group.precedence + (group.leftAssociative ? 1 : 0);
+                    resumes[i] = group.leftRecursive
+                        ? firsts[g]
+                        : firsts[g] + group.operands.length;
+                    infixes[i] = cluster.infix(alternates[i]);
+                }
+            }
+
+            firsts[cluster.groups.length] = alternates.length;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
 }
@@ -1,5 +1,6 @@
 package com.norswap.autumn.extensions.cluster.expressions;
 
+import com.norswap.autumn.extensions.cluster.AlternateNames;
 import com.norswap.autumn.extensions.cluster.ClusterExtension;
 import com.norswap.autumn.extensions.cluster.ClusterState;
 import com.norswap.autumn.state.ParseState;
@@ -34,6 +35,18 @@ public final class Filter extends UnaryParsingExpression
     public final @NonNull String[] allowed;
     public final @NonNull String[] forbidden;
 
+    /**
+     * Bitset of the name ids ({@link AlternateNames}) of the allowed names, assigned when the
+     * grammar is built.
+     */
+    public long[] allowedIds;
+
+    /**
+     * Bitset of the name ids ({@link AlternateNames}) of the forbidden names, assigned when the
+     * grammar is built.
+     */
+    public long[] forbiddenIds;
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     public Filter(ParsingExpression operand, @NonNull String[] allowed, @NonNull String[] forbidden)
@@ -55,26 +68,11 @@ public final class Filter extends UnaryParsingExpression
         if (state.failed())
             return;
 
-        boolean success = allowed.length == 0;
-        ParsingExpression clusterAlternate = cstate.getAlternate();
+        int alternate = cstate.getAlternate();
 
-        for (String name: allowed)
-        {
-            if (name.equals(clusterAlternate.name))
-            {
-                success = true;
-                break;
-            }
-        }
-
-        for (String name: forbidden)
-        {
-            if (name.equals(clusterAlternate.name))
-            {
-                success = false;
-                break;
-            }
-        }
+        boolean success
+            =  (allowed.length == 0 || AlternateNames.contains(allowedIds, alternate))
+            && !AlternateNames.contains(forbiddenIds, alternate);
 
         if (!success)
         {
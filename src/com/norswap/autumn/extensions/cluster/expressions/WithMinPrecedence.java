@@ -20,12 +20,11 @@ public final class WithMinPrecedence extends UnaryParsingExpression
     public void parse(Parser parser, ParseState state)
     {
         ClusterState cstate = cast(state.customStates[ClusterExtension.INDEX]);
-        ClusterState.Precedence precedence = cstate.getCurrentPrecedence();
+        int oldPrecedence = cstate.getCurrentPrecedence();
 
-        int oldPrecedence = precedence.value;
-        precedence.value = minPrecedence;
+        cstate.setCurrentPrecedence(minPrecedence);
         operand.parse(parser, state);
-        precedence.value = oldPrecedence;
+        cstate.setCurrentPrecedence(oldPrecedence);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
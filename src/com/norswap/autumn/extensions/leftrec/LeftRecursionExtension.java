@@ -34,6 +34,10 @@ public final class LeftRecursionExtension implements Extension
 
         LeftRecursionVisitor lrHandler = new LeftRecursionVisitor(true, calc);
         grammar.transform(lrHandler);
+
+        LeftRecursiveIdAllocator idAllocator = new LeftRecursiveIdAllocator();
+        grammar.compute(idAllocator);
+        idAllocator.conclude();
     }
 
     // ---------------------------------------------------------------------------------------------
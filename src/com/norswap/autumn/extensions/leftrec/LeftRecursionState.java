@@ -1,138 +1,359 @@
 package com.norswap.autumn.extensions.leftrec;
 
-import com.google.auto.value.AutoValue;
-import com.norswap.autumn.ParsingExpression;
-import com.norswap.autumn.extensions.Seeds;
 import com.norswap.autumn.state.CustomState;
 import com.norswap.autumn.state.ParseChanges;
 import com.norswap.autumn.state.ParseState;
-import com.norswap.util.Array;
-import com.norswap.util.annotations.Nullable;
-
-import java.util.HashSet;
-
-import static com.norswap.util.Caster.cast;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * The state of {@link LeftRecursionExtension}: the seeds of the ongoing invocations of {@link
+ * LeftRecursive} expressions, and the left-associative expressions in which recursion is blocked.
+ * <p>
+ * Each expression is mapped to a slot: its id ({@link LeftRecursive#id}) for the expressions of the
+ * grammar, or an extra slot for expressions that have no id or whose id is already taken (e.g.
+ * expressions from syntax extensions). The seeds are held in arrays indexed by slot, and the
+ * blocked expressions in a bitset over slots.
+ * <p>
+ * A seed is only visible at the position where it was set: as soon as the parse moves past this
+ * position, the left-recursive expression can't be re-entered anymore. Since the parse can only go
+ * back to this position by restoring a mark, the seeds need not be saved by marks. If an expression
+ * is invoked while its seed is not visible, the seed is pushed onto a stack and restored when the
+ * invocation completes.
+ * <p>
+ * The inputs are immutable snapshots that are cached until the state changes. They are null when
+ * no seed is visible and no expression is blocked.
+ */
 public final class LeftRecursionState implements CustomState
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * The seeds for ongoing left recursive parsing expression.
+     * Maps slots to the expressions that occupy them.
+     */
+    private LeftRecursive[] owners = new LeftRecursive[8];
+
+    /**
+     * Slots of the expressions that couldn't use their id as slot, or null.
+     */
+    private IdentityHashMap<LeftRecursive, Integer> extraSlots;
+
+    /**
+     * The seed of each slot, or null.
+     */
+    private ParseChanges[] seeds = new ParseChanges[8];
+
+    /**
+     * The position at which the seed of each slot was set.
      */
-    private Seeds seeds = new Seeds();
+    private int[] positions = new int[8];
+
+    private long[] blocked = new long[1];
+
+    private int blockedCount;
+
+    // The stack of seeded slots, in invocation order, along with the seed (and its position) that
+    // each slot held before being seeded.
+
+    private int[] stackSlots = new int[8];
+    private ParseChanges[] stackSeeds = new ParseChanges[8];
+    private int[] stackPositions = new int[8];
+    private int depth;
 
     /**
-     * Set of expressions in which we can't recurse, in order to ensure left-associativity.
+     * The last inputs returned by {@link #inputs}, or null if the state changed since then.
      */
-    private Array<LeftRecursive> blocked = new Array<>();
+    private Inputs inputs;
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    public ParseChanges getSeed(ParsingExpression pe)
+    public ParseChanges getSeed(LeftRecursive pe, ParseState state)
     {
-        return seeds.get(pe);
+        int slot = slot(pe);
+        ParseChanges seed = seeds[slot];
+
+        return seed != null && positions[slot] == state.start
+            ? seed
+            : null;
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public void setSeed(ParsingExpression pe, ParseChanges seed, int position)
+    public void setSeed(LeftRecursive pe, ParseChanges seed, int position)
     {
-        seeds.set(pe, seed, position);
+        int slot = slot(pe);
+        inputs = null;
+
+        if (depth > 0 && stackSlots[depth - 1] == slot && positions[slot] == position)
+        {
+            seeds[slot] = seed;
+            return;
+        }
+
+        if (depth == stackSlots.length)
+        {
+            stackSlots = Arrays.copyOf(stackSlots, depth * 2);
+            stackSeeds = Arrays.copyOf(stackSeeds, depth * 2);
+            stackPositions = Arrays.copyOf(stackPositions, depth * 2);
+        }
+
+        stackSlots[depth] = slot;
+        stackSeeds[depth] = seeds[slot];
+        stackPositions[depth] = positions[slot];
+        ++depth;
+
+        seeds[slot] = seed;
+        positions[slot] = position;
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public void removeSeed(ParsingExpression pe)
+    public void removeSeed(LeftRecursive pe)
     {
-        seeds.remove(pe);
+        --depth;
+        int slot = stackSlots[depth];
+        seeds[slot] = stackSeeds[depth];
+        positions[slot] = stackPositions[depth];
+        stackSeeds[depth] = null;
+        inputs = null;
     }
 
     // ---------------------------------------------------------------------------------------------
 
     public void block(LeftRecursive pe)
     {
-        blocked.add(pe);
+        int slot = slot(pe);
+        int word = slot >>> 6;
+
+        if (word >= blocked.length)
+            blocked = Arrays.copyOf(blocked, Math.max(word + 1, blocked.length * 2));
+
+        blocked[word] |= 1L << slot;
+        ++blockedCount;
+        inputs = null;
     }
 
     // ---------------------------------------------------------------------------------------------
 
     public void unblock(LeftRecursive pe)
     {
-        blocked.remove(pe);
+        int slot = slot(pe);
+        blocked[slot >>> 6] &= ~(1L << slot);
+        --blockedCount;
+        inputs = null;
     }
 
     // ---------------------------------------------------------------------------------------------
 
     public boolean blocked(LeftRecursive pe)
     {
-        return blocked.contains(pe);
+        int slot = slot(pe);
+        int word = slot >>> 6;
+        return word < blocked.length && (blocked[word] & 1L << slot) != 0;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    @Override
-    public Inputs inputs(ParseState state)
+    /**
+     * Returns the slot of the given expression, assigning one if needed.
+     */
+    private int slot(LeftRecursive pe)
     {
-        return Inputs.create(seeds.inputs(state), cast(blocked.clone()));
+        int id = pe.id;
+
+        if (id >= 0 && id < owners.length && owners[id] == pe)
+            return id;
+
+        if (id >= 0 && (id >= owners.length || owners[id] == null))
+        {
+            grow(id + 1);
+            owners[id] = pe;
+            return id;
+        }
+
+        if (extraSlots == null)
+            extraSlots = new IdentityHashMap<>();
+
+        Integer slot = extraSlots.get(pe);
+
+        if (slot == null)
+        {
+            slot = owners.length;
+            grow(slot + 1);
+            owners[slot] = pe;
+            extraSlots.put(pe, slot);
+        }
+
+        return slot;
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    @Override
-    public void load(Object inputs)
+    private void grow(int size)
     {
-        Inputs in = (Inputs) inputs;
-        seeds.load(in.seeds());
-        this.blocked = cast(in.blocked().clone());
+        if (size <= owners.length)
+            return;
+
+        int length = Math.max(size, owners.length * 2);
+        owners = Arrays.copyOf(owners, length);
+        seeds = Arrays.copyOf(seeds, length);
+        positions = Arrays.copyOf(positions, length);
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    @Override
-    public Object snapshot(ParseState state)
+    /**
+     * Indicates whether a seed is visible at the given position. Only the seeds at the top of the
+     * stack can be visible, since nested invocations never start before their ancestors.
+     */
+    private boolean seedVisible(int position)
     {
-        return seeds.snapshot(state);
+        return depth > 0 && positions[stackSlots[depth - 1]] == position;
     }
 
-    // ---------------------------------------------------------------------------------------------
+    ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
-    public void restore(Object snapshot, ParseState state)
+    public Inputs inputs(ParseState state)
     {
-        seeds.restore(snapshot, state);
+        int position = state.start;
+
+        if (blockedCount == 0 && !seedVisible(position))
+            return null;
+
+        if (inputs != null && inputs.position == position)
+            return inputs;
+
+        int bottom = depth;
+
+        while (bottom > 0 && positions[stackSlots[bottom - 1]] == position)
+            --bottom;
+
+        LeftRecursive[] seeded = new LeftRecursive[depth - bottom];
+        ParseChanges[] seedArray = new ParseChanges[depth - bottom];
+
+        for (int i = bottom; i < depth; ++i)
+        {
+            seeded[i - bottom] = owners[stackSlots[i]];
+            seedArray[i - bottom] = seeds[stackSlots[i]];
+        }
+
+        LeftRecursive[] blockedArray = new LeftRecursive[blockedCount];
+        int count = 0;
+
+        for (int i = 0; i < blocked.length; ++i)
+            for (long word = blocked[i]; word != 0; word &= word - 1)
+                blockedArray[count++] = owners[i << 6 | Long.numberOfTrailingZeros(word)];
+
+        return inputs = new Inputs(position, seeded, seedArray, blockedArray);
     }
 
     // ---------------------------------------------------------------------------------------------
 
     @Override
-    public void uncommit(Object snapshot, ParseState state)
+    public boolean hasDefaultInputs(ParseState state)
     {
-        seeds.uncommit(snapshot, state);
+        return blockedCount == 0 && !seedVisible(state.start);
     }
 
     // ---------------------------------------------------------------------------------------------
 
     @Override
-    public void commit(ParseState state)
+    public void load(Object inputs)
     {
-        seeds.commit(state);
+        Arrays.fill(seeds, null);
+        Arrays.fill(stackSeeds, null);
+        Arrays.fill(blocked, 0);
+        depth = 0;
+        blockedCount = 0;
+        this.inputs = null;
+
+        if (inputs == null)
+            return;
+
+        Inputs in = (Inputs) inputs;
+
+        for (int i = 0; i < in.seeded.length; ++i)
+            setSeed(in.seeded[i], in.seeds[i], in.position);
+
+        for (LeftRecursive pe: in.blocked)
+            block(pe);
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    // Marks don't need to save anything (see the class documentation).
+
+    @Override
+    public void mark(ParseState state) {}
+
+    @Override
+    public void restoreMark(ParseState state) {}
+
+    @Override
+    public void uncommitMark(ParseState state) {}
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    @AutoValue
-    public static abstract class Inputs
+    /**
+     * An immutable snapshot of the visible seeds and of the blocked expressions.
+     */
+    public static final class Inputs
     {
-        public static Inputs create(
-            @Nullable Object seeds,
-            HashSet<ParsingExpression> blocked)
+        public final int position;
+
+        /**
+         * The expressions with a visible seed, in invocation order.
+         */
+        public final LeftRecursive[] seeded;
+
+        /**
+         * The seeds of the expressions in {@link #seeded}.
+         */
+        public final ParseChanges[] seeds;
+
+        public final LeftRecursive[] blocked;
+
+        private final int hash;
+
+        public Inputs(
+            int position,
+            LeftRecursive[] seeded,
+            ParseChanges[] seeds,
+            LeftRecursive[] blocked)
         {
-            return new AutoValue_LeftRecursionState_Inputs(seeds, blocked);
+            this.position = position;
+            this.seeded = seeded;
+            this.seeds = seeds;
+            this.blocked = blocked;
+
+            int hash = position;
+            hash = 31 * hash + Arrays.hashCode(seeded);
+            hash = 31 * hash + Arrays.hashCode(seeds);
+            hash = 31 * hash + Arrays.hashCode(blocked);
+            this.hash = hash;
         }
 
-        abstract @Nullable Object seeds();
-        abstract HashSet<ParsingExpression> blocked();
+        @Override
+        public boolean equals(Object o)
+        {
+            Inputs that;
+            return this == o
+                || o instanceof Inputs
+                && (that = (Inputs) o) != null
+                && hash == that.hash
+                && position == that.position
+                && Arrays.equals(seeded, that.seeded)
+                && Arrays.equals(seeds, that.seeds)
+                && Arrays.equals(blocked, that.blocked);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -13,6 +13,12 @@ public final class LeftRecursive extends UnaryParsingExpression
 
     public boolean leftAssociative;
 
+    /**
+     * A dense index, unique amongst the left-recursive expressions of a grammar, assigned when the
+     * grammar is built. -1 if no id was assigned. Used by {@link LeftRecursionState}.
+     */
+    public int id = -1;
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
@@ -21,7 +27,7 @@ public final class LeftRecursive extends UnaryParsingExpression
         LeftRecursionState lrstate = cast(state.customStates[LeftRecursionExtension.INDEX]);
         ParseChanges changes;
 
-        if ((changes = lrstate.getSeed(this)) != null)
+        if ((changes = lrstate.getSeed(this, state)) != null)
         {
             // If this is a re-entry, use the seed value.
             state.merge(changes);
@@ -46,6 +52,8 @@ public final class LeftRecursive extends UnaryParsingExpression
 
         // Keep parsing the operand, as long as long as the seed keeps growing.
 
+        state.openBacktrackPoint();
+
         while (true)
         {
             operand.parse(parser, state);
@@ -65,6 +73,7 @@ public final class LeftRecursive extends UnaryParsingExpression
             }
         }
 
+        state.closeBacktrackPoint();
         state.merge(changes);
 
         lrstate.removeSeed(this);
@@ -0,0 +1,31 @@
+package com.norswap.autumn.extensions.leftrec;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.graph.ParsingExpressionVisitor;
+import com.norswap.util.graph.Slot;
+
+/**
+ * Assigns a dense id ({@link LeftRecursive#id}) to each {@link LeftRecursive} expression in a
+ * parsing expression graph. After the visit, {@link #ids} holds the number of assigned ids.
+ * <p>
+ * This is run by {@link LeftRecursionExtension}, after the left-recursive cycles have been broken.
+ */
+public final class LeftRecursiveIdAllocator extends ParsingExpressionVisitor
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public int ids = 0;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void beforeNode(Slot<ParsingExpression> slot)
+    {
+        if (slot.initial instanceof LeftRecursive)
+        {
+            ((LeftRecursive) slot.initial).id = ids++;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,52 @@
+package com.norswap.autumn.extensions.profiler;
+
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.Memo;
+import com.norswap.autumn.expressions.abstrakt.InstrumentedExpression;
+import com.norswap.autumn.state.ParseState;
+
+/**
+ * Collects statistics about the invocations of its operand into the {@link ProfileState}.
+ * <p>
+ * If the operand is a {@link Memo}, also counts the memoization hits and misses.
+ */
+public final class Profile extends InstrumentedExpression
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Identifies the profiled expression in the {@link ProfileState}.
+     */
+    public final int id;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public Profile(ParsingExpression pe, int id)
+    {
+        this.operand = pe;
+        this.id = id;
+
+        // Some expressions identify their children by name (e.g. cluster arrows, see Filter).
+        this.name = pe.name;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void parse(Parser parser, ParseState state)
+    {
+        ProfileState pstate = (ProfileState) state.customStates[ProfilerExtension.INDEX];
+        int position = state.start;
+        long time = pstate.enter(id, position);
+
+        if (operand instanceof Memo)
+            pstate.memo(id, ((Memo) operand).parseMemo(parser, state));
+        else
+            operand.parse(parser, state);
+
+        pstate.exit(id, state.failed() ? -1 : state.end - position, time);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
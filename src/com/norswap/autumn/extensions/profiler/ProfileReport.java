@@ -0,0 +1,153 @@
+package com.norswap.autumn.extensions.profiler;
+
+import com.norswap.util.Array;
+
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * The statistics collected by the {@link ProfilerExtension} for each rule (see {@link
+ * RuleProfile}), during one or more parses.
+ * <p>
+ * The reports of multiple parses can be aggregated in a single report with {@link #add}, which is
+ * synchronized so that the results of concurrent parses can be aggregated as they complete.
+ * <p>
+ * {@link #toString} lists the hot rules, in decreasing order of self time (or of invocations if
+ * time wasn't measured).
+ */
+public final class ProfileReport
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final Comparator<RuleProfile> BY_SELF_TIME =
+        Comparator.comparingLong((RuleProfile rule) -> rule.selfTime).reversed();
+
+    public static final Comparator<RuleProfile> BY_TOTAL_TIME =
+        Comparator.comparingLong((RuleProfile rule) -> rule.totalTime).reversed();
+
+    public static final Comparator<RuleProfile> BY_INVOCATIONS =
+        Comparator.comparingLong((RuleProfile rule) -> rule.invocations).reversed();
+
+    public static final Comparator<RuleProfile> BY_REPARSES =
+        Comparator.comparingLong((RuleProfile rule) -> rule.reparses).reversed();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The statistics of the rules, one entry per rule name.
+     */
+    public final Array<RuleProfile> rules = new Array<>();
+
+    /**
+     * The number of parses whose statistics are included in this report.
+     */
+    public int parses;
+
+    private final HashMap<String, RuleProfile> byName = new HashMap<>();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the statistics of the rule with the given name, or null if there is no such rule.
+     */
+    public RuleProfile rule(String name)
+    {
+        return byName.get(name);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    RuleProfile ruleOrCreate(String name)
+    {
+        return byName.computeIfAbsent(name, key ->
+        {
+            RuleProfile out = new RuleProfile(key);
+            rules.add(out);
+            return out;
+        });
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds the statistics of the other report to this one.
+     */
+    public synchronized void add(ProfileReport other)
+    {
+        for (RuleProfile rule: other.rules)
+            ruleOrCreate(rule.name).add(rule);
+
+        parses += other.parses;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the statistics of the rules that were invoked, sorted in the given order.
+     */
+    public Array<RuleProfile> sorted(Comparator<RuleProfile> order)
+    {
+        Array<RuleProfile> out = new Array<>();
+
+        for (RuleProfile rule: rules)
+            if (rule.invocations > 0)
+                out.add(rule);
+
+        out.sort(order);
+        return out;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public String toString()
+    {
+        boolean timed = false;
+
+        for (RuleProfile rule: rules)
+            timed |= rule.totalTime > 0;
+
+        return toString(timed ? BY_SELF_TIME : BY_INVOCATIONS, Integer.MAX_VALUE);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a table listing the statistics of at most {@code limit} rules, sorted in the given
+     * order. Times are in milliseconds.
+     */
+    public String toString(Comparator<RuleProfile> order, int limit)
+    {
+        Array<RuleProfile> sorted = sorted(order);
+        int width = 4;
+
+        for (RuleProfile rule: sorted)
+            width = Math.max(width, rule.name.length());
+
+        String format = "%-" + width + "s %12s %12s %12s %12s %10s %10s %10s %10s %12s%n";
+
+        StringBuilder b = new StringBuilder();
+        b.append(String.format(format, "rule", "invocations", "successes", "failures", "consumed",
+            "self", "total", "memo hits", "memo miss", "reparses"));
+
+        for (int i = 0; i < sorted.size() && i < limit; ++i)
+        {
+            RuleProfile rule = sorted.get(i);
+
+            b.append(String.format(format, rule.name, rule.invocations, rule.successes,
+                rule.failures, rule.consumed, millis(rule.selfTime), millis(rule.totalTime),
+                rule.memoHits, rule.memoMisses, rule.reparses));
+        }
+
+        return b.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static String millis(long nanos)
+    {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,159 @@
+package com.norswap.autumn.extensions.profiler;
+
+import com.norswap.autumn.state.CustomState;
+import com.norswap.autumn.state.ParseState;
+import com.norswap.util.Array;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The state of a parse made with the {@link ProfilerExtension}: the report being filled, as well
+ * as the information needed to compute the time spent in each rule and to detect re-parses.
+ * <p>
+ * The statistics are not part of the parse proper: they are not affected by backtracking, and
+ * {@link #extract} always returns the same report, which isn't modified by {@link #merge}.
+ */
+public final class ProfileState implements CustomState
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public final ProfileReport report;
+
+    private final boolean timed;
+
+    // The statistics of each rule, indexed by the id of its wrapper. Expressions with the same name
+    // share the same statistics.
+
+    private final RuleProfile[] profiles;
+
+    // The positions at which each rule has been invoked.
+
+    private final BitSet[] positions;
+
+    // The number of ongoing invocations of each rule. Only the outermost invocation contributes
+    // to the total time of a recursive rule.
+
+    private final int[] active;
+
+    // The time spent in the ongoing invocations of the rules that were called by each of the
+    // ongoing (profiled) invocations, indexed by nesting level.
+
+    private long[] childTime = new long[64];
+
+    private int level;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public ProfileState(Array<String> names, boolean timed)
+    {
+        this.report = new ProfileReport();
+        this.report.parses = 1;
+        this.timed = timed;
+        this.profiles = new RuleProfile[names.size()];
+        this.positions = new BitSet[names.size()];
+        this.active = new int[names.size()];
+
+        for (int i = 0; i < profiles.length; ++i)
+            profiles[i] = report.ruleOrCreate(names.get(i));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Records the start of an invocation of the rule at the given position, and returns the start
+     * time of the invocation (or 0 if the extension is not timed).
+     */
+    public long enter(int rule, int position)
+    {
+        RuleProfile profile = profiles[rule];
+        ++profile.invocations;
+
+        BitSet set = positions[rule];
+
+        if (set == null)
+            set = positions[rule] = new BitSet();
+
+        if (set.get(position))
+            ++profile.reparses;
+        else
+            set.set(position);
+
+        ++active[rule];
+
+        if (++level == childTime.length)
+            childTime = Arrays.copyOf(childTime, level * 2);
+
+        childTime[level] = 0;
+        return timed ? System.nanoTime() : 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Records the end of an invocation of the rule that started at the given time, and that
+     * consumed the given number of characters (-1 if it failed).
+     */
+    public void exit(int rule, int consumed, long start)
+    {
+        RuleProfile profile = profiles[rule];
+
+        if (consumed < 0)
+        {
+            ++profile.failures;
+        }
+        else
+        {
+            ++profile.successes;
+            profile.consumed += consumed;
+        }
+
+        --active[rule];
+
+        if (timed)
+        {
+            long time = System.nanoTime() - start;
+            profile.selfTime += time - childTime[level];
+            childTime[level - 1] += time;
+
+            if (active[rule] == 0)
+                profile.totalTime += time;
+        }
+
+        --level;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Records a memoization hit or miss for the rule.
+     */
+    public void memo(int rule, boolean hit)
+    {
+        RuleProfile profile = profiles[rule];
+
+        if (hit)
+            ++profile.memoHits;
+        else
+            ++profile.memoMisses;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void mark(ParseState state) {}
+
+    @Override
+    public void restoreMark(ParseState state) {}
+
+    @Override
+    public void uncommitMark(ParseState state) {}
+
+    @Override
+    public Object extract(ParseState state)
+    {
+        return report;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
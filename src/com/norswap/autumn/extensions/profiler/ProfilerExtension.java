@@ -0,0 +1,94 @@
+package com.norswap.autumn.extensions.profiler;
+
+import com.norswap.autumn.GrammarBuilderExtensionView;
+import com.norswap.autumn.ParseResult;
+import com.norswap.autumn.extensions.CustomStateIndex;
+import com.norswap.autumn.extensions.Extension;
+import com.norswap.autumn.graph.Transformer;
+import com.norswap.autumn.state.CustomState;
+import com.norswap.util.Array;
+
+/**
+ * This extension wraps every named parsing expression (usually, every rule) in a {@link Profile}
+ * parsing expression that collects statistics about its invocations, excepted in dumb mode.
+ * <p>
+ * The statistics are returned as a {@link ProfileReport} in {@link ParseResult#customChanges} (see
+ * {@link #report}). The reports of multiple parses can be aggregated with {@link
+ * ProfileReport#add}.
+ * <p>
+ * Note that the wrappers prevent some optimizations from being applied across rules (e.g. the
+ * compilation of regular expressions), so the profiled grammar can be slower than the original.
+ */
+public final class ProfilerExtension implements Extension
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final int INDEX = CustomStateIndex.allocate();
+
+    /**
+     * Whether the time spent in each rule is measured. Measuring time requires two calls to {@link
+     * System#nanoTime} per invocation.
+     */
+    public final boolean timed;
+
+    // The names of the profiled expressions, indexed by the id of their wrapper.
+
+    private final Array<String> names = new Array<>();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public ProfilerExtension()
+    {
+        this(true);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public ProfilerExtension(boolean timed)
+    {
+        this.timed = timed;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the report of a parse made with a grammar that uses this extension.
+     */
+    public static ProfileReport report(ParseResult result)
+    {
+        return (ProfileReport) result.customChanges.get(INDEX);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public CustomState customParseState()
+    {
+        return new ProfileState(names, timed);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void transform(GrammarBuilderExtensionView grammar)
+    {
+        grammar.transform(new Transformer(pe ->
+        {
+            if (pe.name == null)
+                return pe;
+
+            names.add(pe.name);
+            return new Profile(pe, names.size() - 1);
+        }));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public int stateIndex()
+    {
+        return INDEX;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,64 @@
+package com.norswap.autumn.extensions.profiler;
+
+/**
+ * The statistics collected by the {@link ProfilerExtension} for a rule.
+ * <p>
+ * Times are in nanoseconds. The self time of a rule excludes the time spent in the profiled rules
+ * it invokes, while its total time includes it. The total time of a recursive rule only counts its
+ * outermost invocations.
+ * <p>
+ * A re-parse is an invocation of the rule at a position where it had already been invoked during
+ * the same parse: this is work wasted to backtracking, which could be avoided by memoizing the
+ * rule, reordering choices or factoring out common prefixes. Left-recursive rules (and the
+ * rules they invoke at their start) are re-parsed by design, as their seed is grown.
+ */
+public final class RuleProfile
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public final String name;
+
+    public long invocations;
+    public long successes;
+    public long failures;
+
+    /**
+     * The number of characters consumed by the successful invocations.
+     */
+    public long consumed;
+
+    public long selfTime;
+    public long totalTime;
+
+    public long memoHits;
+    public long memoMisses;
+
+    public long reparses;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public RuleProfile(String name)
+    {
+        this.name = name;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds the statistics of the other profile to this one.
+     */
+    public void add(RuleProfile other)
+    {
+        invocations += other.invocations;
+        successes   += other.successes;
+        failures    += other.failures;
+        consumed    += other.consumed;
+        selfTime    += other.selfTime;
+        totalTime   += other.totalTime;
+        memoHits    += other.memoHits;
+        memoMisses  += other.memoMisses;
+        reparses    += other.reparses;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,51 @@
+package com.norswap.autumn.extensions.tracer;
+
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.abstrakt.InstrumentedExpression;
+import com.norswap.autumn.state.ParseState;
+
+/**
+ * Records the invocations of its operand in the {@link TraceRecorder} of the parser, if it has one.
+ */
+public final class RecordTrace extends InstrumentedExpression
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Identifies the operand in the recorded events (see {@link TraceRecorderExtension#names}).
+     */
+    public final int id;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public RecordTrace(ParsingExpression pe, int id)
+    {
+        this.operand = pe;
+        this.id = id;
+
+        // Some expressions identify their children by name (e.g. cluster arrows, see Filter).
+        this.name = pe.name;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void parse(Parser parser, ParseState state)
+    {
+        TraceRecorder recorder = parser.traceRecorder;
+
+        if (recorder == null)
+        {
+            operand.parse(parser, state);
+            return;
+        }
+
+        int position = state.start;
+        recorder.enter(id, position);
+        operand.parse(parser, state);
+        recorder.exit(id, position, state.end);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
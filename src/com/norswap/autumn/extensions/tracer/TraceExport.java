@@ -0,0 +1,173 @@
+package com.norswap.autumn.extensions.tracer;
+
+import com.norswap.util.Array;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Offline exporters for the events recorded by a {@link TraceRecorder}.
+ * <p>
+ * If the oldest events of the trace were overwritten, the expressions that were already ongoing
+ * when the first retained event was recorded are recovered from their exit events, so that the
+ * stacks remain complete. Their invocations are not counted, however.
+ */
+public final class TraceExport
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The number of invocations and failures of the recorded expressions, for each bucket of
+     * consecutive input positions (the bucket of an invocation is determined by its start
+     * position). Failures indicate work wasted to backtracking.
+     */
+    public static final class HeatMap
+    {
+        public final int bucketSize;
+        public final long[] invocations;
+        public final long[] failures;
+
+        HeatMap(int bucketSize, int buckets)
+        {
+            this.bucketSize = bucketSize;
+            this.invocations = new long[buckets];
+            this.failures = new long[buckets];
+        }
+
+        /**
+         * Returns one line per non-empty bucket, holding the start offset of the bucket, the
+         * number of invocations and the number of failures, separated by spaces.
+         */
+        @Override
+        public String toString()
+        {
+            StringBuilder b = new StringBuilder();
+
+            for (int i = 0; i < invocations.length; ++i)
+                if (invocations[i] != 0)
+                    b.append(i * (long) bucketSize).append(' ')
+                        .append(invocations[i]).append(' ')
+                        .append(failures[i]).append('\n');
+
+            return b.toString();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the recorded invocations in the collapsed stack format used by flame graph tools
+     * (e.g. {@code flamegraph.pl}): one line per distinct stack, holding the names of the
+     * expressions in the stack (outermost first) separated by semicolons, then a space and the
+     * number of invocations of the innermost expression with this stack.
+     * <p>
+     * The width of an expression in the flame graph is hence the number of invocations made
+     * while it was running (including its own). The names are those returned by {@link
+     * TraceRecorderExtension#names} for the grammar that produced the trace.
+     */
+    public static String collapsedStacks(TraceRecorder trace, Array<String> names)
+    {
+        int size = trace.size();
+        Array<String> paths = new Array<>();
+        TreeMap<String, Long> counts = new TreeMap<>();
+
+        for (int id: ongoing(trace))
+            paths.push(paths.isEmpty() ? names.get(id) : paths.peek() + ";" + names.get(id));
+
+        for (int i = 0; i < size; ++i)
+        {
+            long event = trace.event(i);
+
+            if (TraceRecorder.kind(event) == TraceRecorder.ENTER)
+            {
+                String name = names.get(TraceRecorder.id(event));
+                String path = paths.isEmpty() ? name : paths.peek() + ";" + name;
+                paths.push(path);
+                counts.merge(path, 1L, Long::sum);
+            }
+            else
+            {
+                paths.pop();
+            }
+        }
+
+        StringBuilder b = new StringBuilder();
+
+        for (Map.Entry<String, Long> entry: counts.entrySet())
+            b.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+
+        return b.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the heat map of the recorded invocations, with the given number of input positions
+     * per bucket.
+     */
+    public static HeatMap heatMap(TraceRecorder trace, int bucketSize)
+    {
+        int size = trace.size();
+        int max = 0;
+
+        for (int i = 0; i < size; ++i)
+            max = Math.max(max, TraceRecorder.position(trace.event(i)));
+
+        HeatMap out = new HeatMap(bucketSize, max / bucketSize + 1);
+
+        for (int i = 0; i < size; ++i)
+        {
+            long event = trace.event(i);
+            int bucket = TraceRecorder.position(event) / bucketSize;
+
+            switch (TraceRecorder.kind(event))
+            {
+                case TraceRecorder.ENTER:
+                    ++out.invocations[bucket];
+                    break;
+
+                case TraceRecorder.FAILURE:
+                    ++out.failures[bucket];
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        return out;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the ids of the expressions that were ongoing when the oldest retained event was
+     * recorded, outermost first.
+     */
+    private static Array<Integer> ongoing(TraceRecorder trace)
+    {
+        Array<Integer> out = new Array<>();
+        int size = trace.size();
+        int depth = 0;
+
+        // Exits without matching enter are found innermost first.
+
+        for (int i = 0; i < size; ++i)
+        {
+            long event = trace.event(i);
+
+            if (TraceRecorder.kind(event) == TraceRecorder.ENTER)
+                ++depth;
+            else if (depth > 0)
+                --depth;
+            else
+                out.add(TraceRecorder.id(event));
+        }
+
+        Collections.reverse(out);
+        return out;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,160 @@
+package com.norswap.autumn.extensions.tracer;
+
+import com.norswap.autumn.config.ParserConfiguration;
+
+/**
+ * A ring buffer of trace events, filled by the {@link RecordTrace} expressions inserted by the
+ * {@link TraceRecorderExtension} during the parses whose configuration specifies this recorder (see
+ * {@link ParserConfiguration#traceRecorder}).
+ * <p>
+ * An event is recorded when an expression is entered, and when it exits (successfully or not).
+ * Each event is packed in a single long: the input position (the start position for enter events
+ * and failures, the end position for successes), the id of the expression (see {@link
+ * TraceRecorderExtension#names}) and the kind of the event. Recording does no allocation and no
+ * string work.
+ * <p>
+ * When the buffer is full, new events overwrite the oldest ones. The events that remain can be
+ * exported with {@link TraceExport}.
+ * <p>
+ * A recorder must not be used by concurrent parses. Successive parses append to the buffer, unless
+ * it is {@link #clear cleared}.
+ */
+public final class TraceRecorder
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final int ENTER = 0;
+    public static final int SUCCESS = 1;
+    public static final int FAILURE = 2;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final long[] buffer;
+
+    private final int mask;
+
+    // Total number of events recorded.
+
+    private long count;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Creates a recorder that retains the given number of most recent events, rounded up to a
+     * power of two.
+     */
+    public TraceRecorder(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity, 1));
+
+        if (size < capacity)
+            size <<= 1;
+
+        buffer = new long[size];
+        mask = size - 1;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // RECORDING
+
+    public void enter(int id, int position)
+    {
+        buffer[(int) count++ & mask] = (long) position << 32 | id << 2 | ENTER;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Records the exit of the expression, given the position where it was invoked and the end
+     * position of its match (-1 if it failed).
+     */
+    public void exit(int id, int position, int end)
+    {
+        buffer[(int) count++ & mask] = end < 0
+            ? (long) position << 32 | id << 2 | FAILURE
+            : (long) end << 32 | id << 2 | SUCCESS;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Discards all events.
+     */
+    public void clear()
+    {
+        count = 0;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // EVENTS
+
+    /**
+     * Returns the maximum number of events the recorder retains.
+     */
+    public int capacity()
+    {
+        return buffer.length;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of events retained in the buffer.
+     */
+    public int size()
+    {
+        return (int) Math.min(count, buffer.length);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of events that were overwritten by more recent ones.
+     */
+    public long dropped()
+    {
+        return count - size();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the i-th retained event, from oldest to most recent.
+     */
+    public long event(int i)
+    {
+        return buffer[(int) (dropped() + i) & mask];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the kind of the event: {@link #ENTER}, {@link #SUCCESS} or {@link #FAILURE}.
+     */
+    public static int kind(long event)
+    {
+        return (int) event & 3;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the id of the expression of the event.
+     */
+    public static int id(long event)
+    {
+        return (int) event >>> 2;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the input position of the event.
+     */
+    public static int position(long event)
+    {
+        return (int) (event >>> 32);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
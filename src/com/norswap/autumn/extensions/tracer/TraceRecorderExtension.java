@@ -0,0 +1,51 @@
+package com.norswap.autumn.extensions.tracer;
+
+import com.norswap.autumn.GrammarBuilderExtensionView;
+import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.extensions.Extension;
+import com.norswap.autumn.graph.Transformer;
+import com.norswap.util.Array;
+
+/**
+ * This extension wraps every named parsing expression (usually, every rule) in a {@link
+ * RecordTrace} parsing expression, which records its invocations in a {@link TraceRecorder},
+ * excepted in dumb mode.
+ * <p>
+ * Unlike {@link TracerExtension}, this extension is meant to stay in production grammars: the
+ * events are only recorded for the parses whose configuration specifies a recorder (see {@link
+ * ParserConfiguration#traceRecorder}). Otherwise, the overhead is a check per invocation.
+ */
+public final class TraceRecorderExtension implements Extension
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final Array<String> names = new Array<>();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the names of the recorded expressions, indexed by the id that identifies them in the
+     * recorded events.
+     */
+    public Array<String> names()
+    {
+        return names;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void transform(GrammarBuilderExtensionView grammar)
+    {
+        grammar.transform(new Transformer(pe ->
+        {
+            if (pe.name == null)
+                return pe;
+
+            names.add(pe.name);
+            return new RecordTrace(pe, names.size() - 1);
+        }));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
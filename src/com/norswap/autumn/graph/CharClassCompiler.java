@@ -0,0 +1,154 @@
+package com.norswap.autumn.graph;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.*;
+import com.norswap.autumn.expressions.abstrakt.UnaryParsingExpression;
+
+import java.util.HashMap;
+
+/**
+ * Compiles character-matching expressions into {@link CharClass} expressions, and repetitions of
+ * such expressions into {@link CharClassLoop} expressions. Use through a {@link Transformer}:
+ * {@code new Transformer(new CharClassCompiler()::rewrite)}.
+ * <p>
+ * The following expressions are compiled into classes:
+ * <ul>
+ * <li>{@link CharSet} and {@link CharRange}</li>
+ * <li>{@link Choice} whose operands can all be compiled into classes, or are single-character
+ * {@link Literal}</li>
+ * <li>a {@link Sequence} of a {@link Not} over an expression that can be compiled into a class,
+ * followed by {@link Any}</li>
+ * </ul>
+ * <p>
+ * {@link ZeroMore} and {@link OneMore} whose operand can be compiled into a class are compiled into
+ * loops.
+ * <p>
+ * A compiled class reports its own failure in lieu of the failures of the expressions it
+ * replaces. Since these are never tokens, this doesn't affect error messages.
+ */
+public final class CharClassCompiler
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Maps expressions to their compiled class, or to null if they can't be compiled. This ensures
+     * that an expression is always replaced by the same class.
+     */
+    private final HashMap<ParsingExpression, CharClass> classes = new HashMap<>();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public ParsingExpression rewrite(ParsingExpression pe)
+    {
+        if (pe instanceof ZeroMore || pe instanceof OneMore)
+        {
+            CharClass klass = compile(((UnaryParsingExpression) pe).operand);
+
+            if (klass == null)
+                return pe;
+
+            CharClassLoop loop = new CharClassLoop();
+            loop.name = pe.name;
+            loop.operand = klass;
+            loop.atLeastOne = pe instanceof OneMore;
+            return loop;
+        }
+
+        // Literals are only compiled as part of a larger class, so as not to prevent their
+        // inclusion in literal tries.
+
+        if (pe instanceof CharClass || pe instanceof Literal)
+            return pe;
+
+        CharClass klass = compile(pe);
+
+        return klass == null
+            ? pe
+            : klass;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private CharClass compile(ParsingExpression pe)
+    {
+        if (pe instanceof CharClass)
+            return (CharClass) pe;
+
+        if (classes.containsKey(pe))
+            return classes.get(pe);
+
+        // Guard against recursion.
+        classes.put(pe, null);
+
+        CharClass out = compileNew(pe);
+
+        if (out != null && out.name == null)
+            out.name = pe.name;
+
+        classes.put(pe, out);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private CharClass compileNew(ParsingExpression pe)
+    {
+        if (pe instanceof CharSet)
+        {
+            char[] chars = ((CharSet) pe).chars;
+            char[] ranges = new char[2 * chars.length];
+
+            for (int i = 0; i < chars.length; ++i)
+                ranges[2 * i] = ranges[2 * i + 1] = chars[i];
+
+            return CharClass.fromRanges(ranges);
+        }
+
+        if (pe instanceof CharRange)
+        {
+            CharRange range = (CharRange) pe;
+            return CharClass.fromRanges(new char[]{ range.start, range.end });
+        }
+
+        if (pe instanceof Literal)
+        {
+            String string = ((Literal) pe).string;
+
+            return string.length() == 1
+                ? CharClass.fromRanges(new char[]{ string.charAt(0), string.charAt(0) })
+                : null;
+        }
+
+        if (pe instanceof Choice)
+        {
+            ParsingExpression[] operands = ((Choice) pe).operands;
+            CharClass[] union = new CharClass[operands.length];
+
+            for (int i = 0; i < operands.length; ++i)
+                if ((union[i] = compile(operands[i])) == null)
+                    return null;
+
+            return CharClass.union(union);
+        }
+
+        if (pe instanceof Sequence)
+        {
+            ParsingExpression[] operands = ((Sequence) pe).operands;
+
+            if (operands.length != 2
+                    || !(operands[0] instanceof Not)
+                    || !(operands[1] instanceof Any))
+                return null;
+
+            CharClass excluded = compile(((Not) operands[0]).operand);
+
+            return excluded == null
+                ? null
+                : excluded.complement();
+        }
+
+        return null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,131 @@
+package com.norswap.autumn.graph;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.Choice;
+import com.norswap.autumn.expressions.LongestMatch;
+import com.norswap.autumn.expressions.Not;
+import com.norswap.autumn.extensions.cluster.expressions.ExpressionCluster;
+import com.norswap.autumn.state.ParseState;
+
+/**
+ * A first-character dispatch table for the operands of a {@link Choice} or {@link LongestMatch}
+ * expression, or the alternates of an {@link ExpressionCluster}, built by {@link
+ * DispatchTableBuilder}.
+ * <p>
+ * For each input character, the table lists the operands that may succeed when invoked on that
+ * character. The other operands are bound to fail; their invocation can be skipped and replaced
+ * by a call to {@link #skip}, which replays the effect that the failed invocation would have had
+ * on the parse state (namely, the errors it would have reported).
+ */
+public final class DispatchTable
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Index of the candidates for all non-ASCII characters in {@link #candidates}.
+     */
+    public static final int NON_ASCII = 128;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Maps each ASCII character (and {@link #NON_ASCII}) to the sorted indices of the operands
+     * that may succeed on that character. The arrays are shared between characters.
+     */
+    public final int[][] candidates;
+
+    /**
+     * For each operand, the expressions that would have reported a failure (via {@link
+     * ParseState#fail(ParsingExpression)}) if the operand had been invoked on a character for
+     * which it isn't a candidate, in order. {@link Not} instances indicate the point where a not
+     * expression would have re-enabled error recording.
+     */
+    public final ParsingExpression[][] failures;
+
+    /**
+     * For each index, the number of operands before it whose failures are relevant even when not
+     * recording errors (i.e. they include a {@link Not} instance). The failures of the other
+     * operands are quiet.
+     */
+    private final int[] loud;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public DispatchTable(int[][] candidates, ParsingExpression[][] failures)
+    {
+        this.candidates = candidates;
+        this.failures = failures;
+        this.loud = new int[failures.length + 1];
+
+        for (int i = 0; i < failures.length; ++i)
+        {
+            loud[i + 1] = loud[i];
+
+            for (ParsingExpression pe: failures[i])
+                if (pe instanceof Not)
+                {
+                    ++loud[i + 1];
+                    break;
+                }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the sorted indices of the operands that may succeed on the given character.
+     */
+    public int[] candidates(char c)
+    {
+        return candidates[c < NON_ASCII ? c : NON_ASCII];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Replays the effects of a failed invocation of the operand at the given index: reports the
+     * failures the operand would have reported, then discards the uncommitted state.
+     */
+    public void skip(int index, ParseState state)
+    {
+        if (replay(index, state))
+            state.discard();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #skip}, but doesn't discard the uncommitted state. Returns false if there was
+     * no failure to report.
+     */
+    public boolean replay(int index, ParseState state)
+    {
+        ParsingExpression[] array = failures[index];
+
+        if (array.length == 0 || quiet(index, index + 1) && !state.recordErrors)
+            return false;
+
+        for (ParsingExpression pe: array)
+        {
+            if (pe instanceof Not)
+                state.recordErrors = true;
+            else
+                state.fail(pe);
+        }
+
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the failures of the operands whose index is in [from, to) are quiet: they
+     * are only relevant when recording errors.
+     */
+    public boolean quiet(int from, int to)
+    {
+        return loud[to] == loud[from];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,547 @@
+package com.norswap.autumn.graph;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.*;
+import com.norswap.autumn.extensions.cluster.expressions.ExpressionCluster;
+import com.norswap.util.Array;
+import com.norswap.util.graph.Slot;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Builds a first-character dispatch table ({@link DispatchTable}) for each {@link Choice} and
+ * {@link LongestMatch} expression in a parsing expression graph, and assigns it to the expression's
+ * {@code dispatch} field. Expressions for which dispatching can't rule out any operand are left
+ * without a table.
+ * <p>
+ * Operator dispatch tables are also built for {@link ExpressionCluster} expressions. Those are
+ * indexed by the character that follows the seed, and only rule out infix and postfix alternates
+ * (see {@link ExpressionCluster#dispatch}).
+ * <p>
+ * To build the tables, we compute a summary of each operand: the set of characters on which the
+ * operand may be able to consume input (its first characters), and how the operand behaves when
+ * invoked on any other character. In the latter case, it either fails or succeeds without consuming
+ * any input, and the list of expressions that report a failure along the way is fixed. An operand
+ * is a candidate for a character if the character is one of its first characters, or if the operand
+ * succeeds on characters outside of its first characters.
+ * <p>
+ * The summary is computed structurally for the core expressions whose behaviour is entirely
+ * determined by the input. All other expressions (e.g. memoized, left-recursive or custom
+ * expressions) are deemed to have every character as first character, and are therefore candidates
+ * for every character.
+ */
+public final class DispatchTableBuilder extends ParsingExpressionVisitor
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Summary
+    {
+        // ASCII first characters (bits 0-63 in lo, 64-127 in hi), and whether any non-ASCII
+        // character is a first character.
+
+        long lo, hi;
+        boolean nonAscii;
+
+        // Behaviour on other characters.
+
+        boolean succeeds;
+        Array<ParsingExpression> failures = new Array<>();
+
+        boolean opaque()
+        {
+            return lo == -1 && hi == -1 && nonAscii;
+        }
+
+        boolean contains(int c)
+        {
+            return c < 64
+                ? (lo & 1L << c) != 0
+                : (hi & 1L << c - 64) != 0;
+        }
+
+        void add(char c)
+        {
+            if (c < 64)
+                lo |= 1L << c;
+            else if (c < 128)
+                hi |= 1L << c - 64;
+            else
+                nonAscii = true;
+        }
+
+        void addRange(char start, char end)
+        {
+            for (int c = start; c <= end && c < 128; ++c)
+                add((char) c);
+
+            if (end >= 128)
+                nonAscii = true;
+        }
+
+        void addFirsts(Summary that)
+        {
+            lo |= that.lo;
+            hi |= that.hi;
+            nonAscii |= that.nonAscii;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final Summary OPAQUE = new Summary();
+
+    static {
+        OPAQUE.lo = -1;
+        OPAQUE.hi = -1;
+        OPAQUE.nonAscii = true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private HashMap<ParsingExpression, Summary> summaries = new HashMap<>();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void afterNode(Slot<ParsingExpression> slot, Array<Slot<ParsingExpression>> children)
+    {
+        ParsingExpression pe = slot.initial;
+
+        if (pe instanceof Choice)
+        {
+            Choice choice = (Choice) pe;
+            choice.dispatch = table(choice.operands);
+        }
+        else if (pe instanceof LongestMatch)
+        {
+            LongestMatch longest = (LongestMatch) pe;
+            longest.dispatch = table(longest.operands);
+        }
+        else if (pe instanceof ExpressionCluster)
+        {
+            ExpressionCluster cluster = (ExpressionCluster) pe;
+            cluster.setDispatch(operatorTable(cluster));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void conclude()
+    {
+        super.conclude();
+        summaries = null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private DispatchTable table(ParsingExpression[] operands)
+    {
+        Summary[] sums = new Summary[operands.length];
+
+        for (int i = 0; i < operands.length; ++i)
+            sums[i] = summary(operands[i]);
+
+        return table(sums);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Builds the operator dispatch table of a cluster. The summary of an infix alternate is that of
+     * its operator: the operands of its sequence after the first, which are invoked at the end of
+     * the seed. The failure of the sequence itself is reported by the cluster. The other alternates
+     * are candidates for every character.
+     */
+    private DispatchTable operatorTable(ExpressionCluster cluster)
+    {
+        ParsingExpression[] alternates = cluster.children();
+        Summary[] sums = new Summary[alternates.length];
+
+        for (int i = 0; i < alternates.length; ++i)
+        {
+            Sequence infix = cluster.infix(alternates[i]);
+
+            sums[i] = infix != null
+                ? operatorSummary(infix)
+                : OPAQUE;
+        }
+
+        return table(sums);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private Summary operatorSummary(Sequence infix)
+    {
+        Summary out = new Summary();
+        out.succeeds = true;
+
+        for (int i = 1; i < infix.operands.length; ++i)
+        {
+            Summary sum = summary(infix.operands[i]);
+            out.addFirsts(sum);
+            out.failures.addAll(sum.failures);
+
+            if (sum.opaque())
+                return OPAQUE;
+
+            if (!sum.succeeds)
+            {
+                out.succeeds = false;
+                break;
+            }
+        }
+
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private DispatchTable table(Summary[] sums)
+    {
+        int[][] candidates = new int[DispatchTable.NON_ASCII + 1][];
+        HashMap<String, int[]> shared = new HashMap<>();
+        boolean useful = false;
+
+        for (int c = 0; c <= DispatchTable.NON_ASCII; ++c)
+        {
+            int[] array = new int[sums.length];
+            int size = 0;
+
+            for (int i = 0; i < sums.length; ++i)
+            {
+                Summary sum = sums[i];
+
+                boolean candidate = sum.succeeds || (c == DispatchTable.NON_ASCII
+                    ? sum.nonAscii
+                    : sum.contains(c));
+
+                if (candidate)
+                    array[size++] = i;
+            }
+
+            useful |= size < sums.length;
+            int[] trimmed = Arrays.copyOf(array, size);
+            candidates[c] = shared.computeIfAbsent(Arrays.toString(trimmed), k -> trimmed);
+        }
+
+        if (!useful)
+            return null;
+
+        ParsingExpression[][] failures = new ParsingExpression[sums.length][];
+
+        for (int i = 0; i < sums.length; ++i)
+            failures[i] = sums[i].opaque()
+                ? new ParsingExpression[0]
+                : sums[i].failures.toArray(ParsingExpression[]::new);
+
+        return new DispatchTable(candidates, failures);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private Summary summary(ParsingExpression pe)
+    {
+        Summary out = summaries.get(pe);
+
+        if (out == null)
+        {
+            // Guard against recursion: recursive expressions are deemed opaque.
+            summaries.put(pe, OPAQUE);
+            out = compute(pe);
+            summaries.put(pe, out);
+        }
+
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private Summary compute(ParsingExpression pe)
+    {
+        Summary out = new Summary();
+        Class<?> klass = pe.getClass();
+
+        if (klass == Literal.class)
+        {
+            String string = ((Literal) pe).string;
+
+            if (string.isEmpty())
+            {
+                out.succeeds = true;
+            }
+            else
+            {
+                out.add(string.charAt(0));
+                out.failures.add(pe);
+            }
+        }
+        else if (klass == CharSet.class)
+        {
+            for (char c: ((CharSet) pe).chars)
+                out.add(c);
+
+            out.failures.add(pe);
+        }
+        else if (klass == CharRange.class)
+        {
+            CharRange range = (CharRange) pe;
+            out.addRange(range.start, range.end);
+            out.failures.add(pe);
+        }
+        else if (klass == CharClass.class)
+        {
+            char[] ranges = ((CharClass) pe).ranges;
+
+            for (int i = 0; i < ranges.length; i += 2)
+                out.addRange(ranges[i], ranges[i + 1]);
+
+            out.failures.add(pe);
+        }
+        else if (klass == CharClassLoop.class)
+        {
+            // The loop only reports failures if no character matches.
+
+            CharClassLoop loop = (CharClassLoop) pe;
+            Summary sum = summary(loop.operand);
+            out.addFirsts(sum);
+            out.failures.addAll(sum.failures);
+            out.succeeds = !loop.atLeastOne;
+
+            if (loop.atLeastOne)
+                out.failures.add(pe);
+        }
+        else if (klass == Any.class)
+        {
+            // Any fails on the terminating zero character.
+            out.addRange((char) 1, Character.MAX_VALUE);
+            out.failures.add(pe);
+        }
+        else if (klass == Success.class)
+        {
+            out.succeeds = true;
+        }
+        else if (klass == Failure.class)
+        {
+            out.failures.add(pe);
+        }
+        else if (klass == Sequence.class)
+        {
+            out.succeeds = true;
+
+            for (ParsingExpression operand: ((Sequence) pe).operands)
+            {
+                Summary sum = summary(operand);
+                out.addFirsts(sum);
+                out.failures.addAll(sum.failures);
+
+                if (sum.opaque())
+                    return OPAQUE;
+
+                if (!sum.succeeds)
+                {
+                    out.succeeds = false;
+                    out.failures.add(pe);
+                    break;
+                }
+            }
+        }
+        else if (klass == Choice.class)
+        {
+            for (ParsingExpression operand: ((Choice) pe).operands)
+            {
+                Summary sum = summary(operand);
+                out.addFirsts(sum);
+                out.failures.addAll(sum.failures);
+
+                if (sum.opaque())
+                    return OPAQUE;
+
+                if (sum.succeeds)
+                {
+                    out.succeeds = true;
+                    break;
+                }
+            }
+
+            if (!out.succeeds)
+                out.failures.add(pe);
+        }
+        else if (klass == LongestMatch.class)
+        {
+            for (ParsingExpression operand: ((LongestMatch) pe).operands)
+            {
+                Summary sum = summary(operand);
+                out.addFirsts(sum);
+                out.failures.addAll(sum.failures);
+                out.succeeds |= sum.succeeds;
+
+                if (sum.opaque())
+                    return OPAQUE;
+            }
+
+            if (!out.succeeds)
+                out.failures.add(pe);
+        }
+        else if (klass == LiteralTrie.class)
+        {
+            // The operands are literals, possibly wrapped in tokens. On other characters, only the
+            // empty literals succeed. In an ordered choice, the first of them is selected.
+
+            LiteralTrie trie = (LiteralTrie) pe;
+
+            for (ParsingExpression operand: trie.operands)
+            {
+                String string = LiteralTrie.literal(operand).string;
+
+                if (string.isEmpty())
+                {
+                    // A token consumes the whitespace that follows.
+                    if (operand instanceof Token)
+                        return OPAQUE;
+
+                    out.succeeds = true;
+
+                    if (!trie.longest)
+                        break;
+
+                    continue;
+                }
+
+                out.add(string.charAt(0));
+
+                if (operand instanceof Token)
+                    out.failures.add(((Token) operand).operand);
+
+                out.failures.add(operand);
+            }
+
+            if (!out.succeeds)
+                out.failures.add(pe);
+        }
+        else if (klass == Regular.class)
+        {
+            // The first characters are those for which the initial state has a transition.
+
+            Regular regular = (Regular) pe;
+
+            for (int c = 0; c < 128; ++c)
+                if (regular.transitions[regular.asciiClasses[c]] >= 0)
+                    out.add((char) c);
+
+            for (int k: regular.boundClasses)
+                if (regular.transitions[k] >= 0)
+                    out.nonAscii = true;
+
+            out.succeeds = regular.accepting[0];
+
+            if (!out.succeeds)
+                out.failures.add(pe);
+        }
+        else if (klass == Token.class)
+        {
+            // If the operand succeeds, the token consumes the whitespace that follows.
+
+            Summary sum = summary(((Token) pe).operand);
+
+            if (sum.opaque() || sum.succeeds)
+                return OPAQUE;
+
+            out.addFirsts(sum);
+            out.failures.addAll(sum.failures);
+            out.failures.add(pe);
+        }
+        else if (klass == Capture.class)
+        {
+            return summary(((Capture) pe).operand);
+        }
+        else if (klass == Dumb.class)
+        {
+            // Sub-expressions of a dumb expression don't report failures.
+
+            Summary sum = summary(((Dumb) pe).operand);
+
+            if (sum.opaque())
+                return OPAQUE;
+
+            out.addFirsts(sum);
+            out.succeeds = sum.succeeds;
+
+            if (!sum.succeeds)
+                out.failures.add(pe);
+        }
+        else if (klass == Optional.class)
+        {
+            Summary sum = summary(((Optional) pe).operand);
+
+            if (sum.opaque())
+                return OPAQUE;
+
+            out.addFirsts(sum);
+            out.failures.addAll(sum.failures);
+            out.succeeds = true;
+        }
+        else if (klass == ZeroMore.class || klass == OneMore.class)
+        {
+            ParsingExpression operand = klass == ZeroMore.class
+                ? ((ZeroMore) pe).operand
+                : ((OneMore) pe).operand;
+
+            Summary sum = summary(operand);
+
+            if (sum.opaque() || sum.succeeds)
+                return OPAQUE;
+
+            out.addFirsts(sum);
+            out.failures.addAll(sum.failures);
+            out.succeeds = klass == ZeroMore.class;
+
+            if (!out.succeeds)
+                out.failures.add(pe);
+        }
+        else if (klass == Lookahead.class)
+        {
+            Summary sum = summary(((Lookahead) pe).operand);
+
+            if (sum.opaque())
+                return OPAQUE;
+
+            out.addFirsts(sum);
+            out.failures.addAll(sum.failures);
+            out.succeeds = sum.succeeds;
+
+            if (!sum.succeeds)
+                out.failures.add(pe);
+        }
+        else if (klass == Not.class)
+        {
+            // Failures are not reported within a not expression, and the not expression doesn't
+            // report its own failure. Error recording is re-enabled at the end of the expression.
+            // Nested not expressions are not handled.
+
+            Summary sum = summary(((Not) pe).operand);
+
+            if (sum.opaque() || sum.failures.first(x -> x instanceof Not) != null)
+                return OPAQUE;
+
+            out.addFirsts(sum);
+            out.failures.add(pe);
+            out.succeeds = !sum.succeeds;
+        }
+        else if (klass == Precedence.class && ((Precedence) pe).precedence <= 0)
+        {
+            // A precedence expression with no precedence always invokes its operand.
+            return summary(((Precedence) pe).operand);
+        }
+        else
+        {
+            return OPAQUE;
+        }
+
+        return out;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
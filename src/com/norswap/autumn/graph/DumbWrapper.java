@@ -0,0 +1,174 @@
+package com.norswap.autumn.graph;
+
+import com.norswap.autumn.GrammarBuilder;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.*;
+import com.norswap.util.Array;
+import com.norswap.util.graph.NodeState;
+import com.norswap.util.graph.Slot;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Wraps the maximal sub-graphs of a parsing expression graph that can be parsed in dumb mode into
+ * {@link Dumb} expressions, so that they are parsed with {@link ParsingExpression#parseDumb}, which
+ * doesn't manipulate the parse state.
+ * <p>
+ * An expression can be parsed in dumb mode if it is one of the core expressions whose behaviour is
+ * entirely determined by the input, and all its descendants can be parsed in dumb mode as well.
+ * Captures (which build the parse tree), memoized expressions, expressions that depend on custom
+ * parse state (left-recursion, clusters, sub-grammars, extension expressions, ...) and tokens
+ * (whose failures appear in error messages) can't be parsed in dumb mode.
+ * <p>
+ * An expression is wrapped wherever it appears as the child of an expression that can't be parsed
+ * in dumb mode. Roots are not wrapped, and neither are terminal expressions, for which dumb mode
+ * brings no improvement. The same expression always receives the same wrapper.
+ * <p>
+ * This is run when the grammar is built, if {@link GrammarBuilder#autoDumb} is set, after all
+ * other transformations have been applied.
+ */
+public final class DumbWrapper extends ParsingExpressionVisitor
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final HashSet<Class<?>> DUMBABLE = new HashSet<>(Arrays.asList(
+        Any.class, CharClass.class, CharClassLoop.class, CharRange.class, CharSet.class,
+        Choice.class, Dumb.class, Failure.class, Literal.class, LiteralTrie.class,
+        Lookahead.class, LongestMatch.class, Not.class, OneMore.class, Optional.class,
+        Regular.class, Sequence.class, SkipTo.class, Success.class, ZeroMore.class));
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private HashMap<ParsingExpression, Boolean> dumbable = new HashMap<>();
+
+    private HashMap<ParsingExpression, Dumb> wrappers = new HashMap<>();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void afterEdge(
+        Slot<ParsingExpression> parent,
+        Slot<ParsingExpression> child,
+        NodeState state)
+    {
+        ParsingExpression pe = child.initial;
+
+        if (dumbable(parent.initial) || !dumbable(pe) || pe instanceof Dumb)
+            return;
+
+        // Terminals (and loops over classes) already parse without manipulating the state.
+
+        if (pe.children().length == 0 || pe instanceof CharClassLoop)
+            return;
+
+        child.assigned = wrappers.computeIfAbsent(pe, key ->
+        {
+            Dumb dumb = new Dumb();
+            dumb.operand = key;
+            return dumb;
+        });
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    protected void applyChanges(Array<Slot<ParsingExpression>> modified)
+    {
+        for (Slot<ParsingExpression> slot: modified)
+        {
+            if (slot.parent != null)
+            {
+                slot.parent.setChild(slot.index, slot.assigned);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void conclude()
+    {
+        super.conclude();
+        dumbable = null;
+        wrappers = null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Indicates whether the given expression can be parsed in dumb mode.
+     */
+    public boolean dumbable(ParsingExpression pe)
+    {
+        Boolean out = dumbable.get(pe);
+
+        if (out == null)
+        {
+            analyze(pe);
+            out = dumbable.get(pe);
+        }
+
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Determines whether the expressions reachable from the given expression (and not analyzed yet)
+     * can be parsed in dumb mode. Since the graph can be cyclic, this is done by collecting these
+     * expressions, then propagating the impossibility to the parents of each expression that can't
+     * be parsed in dumb mode.
+     */
+    private void analyze(ParsingExpression pe)
+    {
+        HashMap<ParsingExpression, Array<ParsingExpression>> parents = new HashMap<>();
+        Array<ParsingExpression> stack = new Array<>(pe);
+        Array<ParsingExpression> excluded = new Array<>();
+        parents.put(pe, new Array<>());
+
+        while (!stack.isEmpty())
+        {
+            ParsingExpression next = stack.pop();
+            boolean ok = DUMBABLE.contains(next.getClass());
+
+            for (ParsingExpression child: next.children())
+            {
+                Boolean known = dumbable.get(child);
+
+                if (known != null)
+                {
+                    ok &= known;
+                    continue;
+                }
+
+                if (!parents.containsKey(child))
+                {
+                    parents.put(child, new Array<>());
+                    stack.push(child);
+                }
+
+                parents.get(child).add(next);
+            }
+
+            if (!ok)
+                excluded.add(next);
+        }
+
+        parents.keySet().forEach(key -> dumbable.put(key, true));
+
+        while (!excluded.isEmpty())
+        {
+            ParsingExpression next = excluded.pop();
+
+            if (!dumbable.get(next))
+                continue;
+
+            dumbable.put(next, false);
+            excluded.addAll(parents.get(next));
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,48 @@
+package com.norswap.autumn.graph;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.Choice;
+import com.norswap.autumn.expressions.LiteralTrie;
+import com.norswap.autumn.expressions.LongestMatch;
+import com.norswap.autumn.expressions.abstrakt.NaryParsingExpression;
+
+/**
+ * Rewrites {@link Choice} and {@link LongestMatch} expressions whose operands are all literals
+ * (possibly wrapped in tokens) into {@link LiteralTrie} expressions. Use through a {@link
+ * Transformer}: {@code new Transformer(LiteralTrieRewriter::rewrite)}.
+ */
+public final class LiteralTrieRewriter
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Choices with fewer operands than this are not rewritten.
+     */
+    public static final int MIN_OPERANDS = 2;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static ParsingExpression rewrite(ParsingExpression pe)
+    {
+        if (!(pe instanceof Choice || pe instanceof LongestMatch))
+            return pe;
+
+        ParsingExpression[] operands = ((NaryParsingExpression) pe).operands;
+
+        if (operands.length < MIN_OPERANDS)
+            return pe;
+
+        for (ParsingExpression operand: operands)
+            if (LiteralTrie.literal(operand) == null)
+                return pe;
+
+        LiteralTrie trie = new LiteralTrie();
+        trie.name = pe.name;
+        trie.longest = pe instanceof LongestMatch;
+        trie.operands = operands;
+        trie.buildTrie();
+        return trie;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,31 @@
+package com.norswap.autumn.graph;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.Memo;
+import com.norswap.util.graph.Slot;
+
+/**
+ * Assigns a dense slot index ({@link Memo#slot}) to each {@link Memo} expression in a parsing
+ * expression graph. After the visit, {@link #slots} holds the number of assigned slots.
+ * <p>
+ * This is run when the grammar is built, after all transformations have been applied.
+ */
+public final class MemoSlotAllocator extends ParsingExpressionVisitor
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public int slots = 0;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void beforeNode(Slot<ParsingExpression> slot)
+    {
+        if (slot.initial instanceof Memo)
+        {
+            ((Memo) slot.initial).slot = slots++;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
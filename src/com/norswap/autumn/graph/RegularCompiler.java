@@ -0,0 +1,735 @@
+package com.norswap.autumn.graph;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.*;
+import com.norswap.util.Array;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Replaces expressions that have regular semantics by {@link Regular} expressions, which match the
+ * input using a deterministic finite automaton. Use through a {@link Transformer}: {@code new
+ * Transformer(new RegularCompiler()::rewrite)}.
+ * <p>
+ * The following expressions can be part of a regular expression: {@link Literal}, {@link
+ * CharClass}, {@link CharSet}, {@link CharRange}, {@link Any}, {@link Success}, {@link Sequence},
+ * {@link Choice}, {@link Optional}, {@link ZeroMore}, {@link OneMore}, {@link CharClassLoop},
+ * {@link Dumb}, {@link Regular} and {@link LiteralTrie} (if it doesn't select the longest match
+ * and has no tokens). Recursive expressions are never regular.
+ * <p>
+ * The automaton returns the longest match, whereas PEG operators commit to the first alternative
+ * that succeeds and repeat greedily. An expression is only replaced if it has no conflict that
+ * could make the two semantics differ. Each decision point must satisfy the following (where a
+ * prefix conflict between two expressions means that a non-empty string matched by one is a
+ * prefix of (or equal to) a non-empty string matched by the other, and the continuation of an
+ * expression is what follows it within the replaced expression):
+ * <ul>
+ * <li>The operands of a choice have no prefix conflicts, and only the last operand can match the
+ * empty string. If it does, the other operands have no prefix conflict with the continuation of
+ * the choice.</li>
+ * <li>The operand of a repetition or an option can't match the empty string, and has no prefix
+ * conflict with the continuation of the repetition.</li>
+ * </ul>
+ * <p>
+ * Under these conditions, a PEG operator only commits to an alternative that the automaton would
+ * select as well. Since the automaton never reports the failure of sub-expressions, and since
+ * tokens are never replaced, error messages are not affected.
+ * <p>
+ * Only expressions that include a choice or a repetition, and match more than a single class of
+ * characters, are replaced. Expressions whose automaton has more than {@link #MAX_STATES} states,
+ * or that can match the zero character (which terminates the input) are never replaced.
+ */
+public final class RegularCompiler
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Expressions whose automaton has more states than this are not replaced.
+     */
+    public static final int MAX_STATES = 256;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // Regular expression syntax tree.
+
+    private static final int CHARS = 0;
+    private static final int EMPTY = 1;
+    private static final int SEQ   = 2;
+    private static final int ALT   = 3;
+    private static final int STAR  = 4;
+
+    private static final class Node
+    {
+        final int kind;
+        final char[] ranges;
+        final Node[] children;
+        final boolean nullable;
+
+        Node(int kind, char[] ranges, Node... children)
+        {
+            this.kind = kind;
+            this.ranges = ranges;
+            this.children = children;
+
+            boolean nullable = kind == EMPTY || kind == STAR || kind == SEQ;
+
+            for (Node child: children)
+            {
+                if (kind == SEQ)
+                    nullable &= child.nullable;
+                else if (kind == ALT)
+                    nullable |= child.nullable;
+            }
+
+            this.nullable = nullable;
+        }
+    }
+
+    private static final Node EMPTY_NODE = new Node(EMPTY, null);
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * A non-deterministic automaton, whose states each have a set of epsilon transitions, and at
+     * most one transition over a set of characters (given as ranges).
+     */
+    private static final class Nfa
+    {
+        final Array<Array<Integer>> epsilons = new Array<>();
+        final Array<char[]> ranges = new Array<>();
+        final Array<Integer> targets = new Array<>();
+        int accept;
+
+        int state()
+        {
+            epsilons.add(new Array<>());
+            ranges.add(null);
+            targets.add(-1);
+            return ranges.size() - 1;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * A deterministic automaton over the character classes of a {@link Partition}.
+     */
+    private static final class Dfa
+    {
+        int[] transitions;
+        boolean[] accepting;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * A partition of the characters into classes, such that all characters of a class belong to
+     * the same ranges.
+     */
+    private static final class Partition
+    {
+        // The first character of each segment, and its class.
+        char[] starts;
+        int[] classes;
+
+        // A representative character for each class.
+        char[] representatives;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Maps expressions to their syntax tree, or to null if they can't be part of a regular
+     * expression.
+     */
+    private final HashMap<ParsingExpression, Node> trees = new HashMap<>();
+
+    /**
+     * Guards against recursion.
+     */
+    private final HashSet<ParsingExpression> visiting = new HashSet<>();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public ParsingExpression rewrite(ParsingExpression pe)
+    {
+        if (!(pe instanceof Sequence
+                || pe instanceof Choice
+                || pe instanceof Optional
+                || pe instanceof ZeroMore
+                || pe instanceof OneMore
+                || pe instanceof Dumb))
+            return pe;
+
+        Node tree = tree(pe);
+
+        if (tree == null || !hasDecision(tree))
+            return pe;
+
+        // Options and repetitions of a single class are no faster as automata.
+
+        Array<char[]> allRanges = new Array<>();
+        collectRanges(tree, allRanges);
+
+        if (allRanges.size() < 2 || !check(tree, EMPTY_NODE))
+            return pe;
+
+        Partition partition = partition(allRanges);
+        Dfa dfa = dfa(tree, partition);
+
+        if (dfa == null)
+            return pe;
+
+        Regular regular = new Regular();
+        regular.name = pe.name;
+        regular.expression = pe;
+        regular.classCount = partition.representatives.length;
+        regular.transitions = dfa.transitions;
+        regular.accepting = dfa.accepting;
+        regular.asciiClasses = new int[128];
+
+        int i = 0;
+
+        for (int c = 0; c < 128; ++c)
+        {
+            while (i + 1 < partition.starts.length && partition.starts[i + 1] <= c)
+                ++i;
+
+            regular.asciiClasses[c] = partition.classes[i];
+        }
+
+        // The partition always has a segment starting at 128.
+
+        int first = Arrays.binarySearch(partition.starts, (char) 128);
+        regular.bounds = Arrays.copyOfRange(partition.starts, first, partition.starts.length);
+        regular.boundClasses = Arrays.copyOfRange(partition.classes, first, partition.classes.length);
+        return regular;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private Node tree(ParsingExpression pe)
+    {
+        if (trees.containsKey(pe))
+            return trees.get(pe);
+
+        if (!visiting.add(pe))
+            return null;
+
+        Node out = treeNew(pe);
+        visiting.remove(pe);
+        trees.put(pe, out);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private Node treeNew(ParsingExpression pe)
+    {
+        if (pe instanceof Literal)
+        {
+            return literal(((Literal) pe).string);
+        }
+        else if (pe instanceof CharClass)
+        {
+            return chars(((CharClass) pe).ranges);
+        }
+        else if (pe instanceof CharSet)
+        {
+            char[] chars = ((CharSet) pe).chars;
+            char[] ranges = new char[2 * chars.length];
+
+            for (int i = 0; i < chars.length; ++i)
+                ranges[2 * i] = ranges[2 * i + 1] = chars[i];
+
+            return chars(CharClass.fromRanges(ranges).ranges);
+        }
+        else if (pe instanceof CharRange)
+        {
+            CharRange range = (CharRange) pe;
+            return chars(CharClass.fromRanges(new char[]{ range.start, range.end }).ranges);
+        }
+        else if (pe instanceof Any)
+        {
+            return chars(new char[]{ 1, Character.MAX_VALUE });
+        }
+        else if (pe instanceof Success)
+        {
+            return EMPTY_NODE;
+        }
+        else if (pe instanceof CharClassLoop)
+        {
+            CharClassLoop loop = (CharClassLoop) pe;
+            Node operand = tree(loop.operand);
+
+            return operand == null ? null
+                : loop.atLeastOne ? new Node(SEQ, null, operand, new Node(STAR, null, operand))
+                : new Node(STAR, null, operand);
+        }
+        else if (pe instanceof Sequence || pe instanceof Choice)
+        {
+            ParsingExpression[] operands = pe instanceof Sequence
+                ? ((Sequence) pe).operands
+                : ((Choice) pe).operands;
+
+            return node(pe instanceof Sequence ? SEQ : ALT, operands);
+        }
+        else if (pe instanceof LiteralTrie)
+        {
+            LiteralTrie trie = (LiteralTrie) pe;
+
+            for (ParsingExpression operand: trie.operands)
+                if (!(operand instanceof Literal))
+                    return null;
+
+            return trie.longest
+                ? null
+                : node(ALT, trie.operands);
+        }
+        else if (pe instanceof Optional)
+        {
+            Node operand = tree(((Optional) pe).operand);
+
+            return operand == null
+                ? null
+                : new Node(ALT, null, operand, EMPTY_NODE);
+        }
+        else if (pe instanceof ZeroMore || pe instanceof OneMore)
+        {
+            Node operand = tree(pe.children()[0]);
+
+            return operand == null ? null
+                : pe instanceof OneMore ? new Node(SEQ, null, operand, new Node(STAR, null, operand))
+                : new Node(STAR, null, operand);
+        }
+        else if (pe instanceof Dumb)
+        {
+            return tree(((Dumb) pe).operand);
+        }
+        else if (pe instanceof Regular)
+        {
+            return tree(((Regular) pe).expression);
+        }
+
+        return null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private Node node(int kind, ParsingExpression[] operands)
+    {
+        // An empty choice never matches.
+        if (kind == ALT && operands.length == 0)
+            return null;
+
+        Node[] children = new Node[operands.length];
+
+        for (int i = 0; i < operands.length; ++i)
+            if ((children[i] = tree(operands[i])) == null)
+                return null;
+
+        return new Node(kind, null, children);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Node literal(String string)
+    {
+        if (string.indexOf(0) >= 0)
+            return null;
+
+        Node[] chars = new Node[string.length()];
+
+        for (int i = 0; i < chars.length; ++i)
+            chars[i] = new Node(CHARS, new char[]{ string.charAt(i), string.charAt(i) });
+
+        return new Node(SEQ, null, chars);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Node chars(char[] ranges)
+    {
+        return ranges.length == 0 || ranges[0] == 0
+            ? null
+            : new Node(CHARS, ranges);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static boolean hasDecision(Node node)
+    {
+        if (node.kind == ALT || node.kind == STAR)
+            return true;
+
+        for (Node child: node.children)
+            if (hasDecision(child))
+                return true;
+
+        return false;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Checks that the PEG semantics of the node and the semantics of its automaton coincide, given
+     * the continuation of the node.
+     */
+    private boolean check(Node node, Node continuation)
+    {
+        switch (node.kind)
+        {
+            case SEQ:
+                for (int i = 0; i < node.children.length; ++i)
+                {
+                    Node rest = seq(node.children, i + 1, continuation);
+
+                    if (!check(node.children[i], rest))
+                        return false;
+                }
+                return true;
+
+            case ALT:
+                Node[] alts = node.children;
+
+                for (int i = 0; i < alts.length; ++i)
+                {
+                    if (i < alts.length - 1 && alts[i].nullable)
+                        return false;
+
+                    for (int j = i + 1; j < alts.length; ++j)
+                        if (prefixConflict(alts[i], alts[j]))
+                            return false;
+
+                    if (i < alts.length - 1
+                            && alts[alts.length - 1].nullable
+                            && prefixConflict(alts[i], continuation))
+                        return false;
+
+                    if (!check(alts[i], continuation))
+                        return false;
+                }
+                return true;
+
+            case STAR:
+                Node operand = node.children[0];
+
+                return !operand.nullable
+                    && !prefixConflict(operand, continuation)
+                    && check(operand, new Node(SEQ, null, node, continuation));
+
+            default:
+                return true;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Node seq(Node[] nodes, int from, Node continuation)
+    {
+        if (from == nodes.length)
+            return continuation;
+
+        Node[] children = Arrays.copyOfRange(nodes, from, nodes.length + 1);
+        children[children.length - 1] = continuation;
+        return new Node(SEQ, null, children);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates whether a non-empty string matched by one node is a prefix of (or equal to) a
+     * non-empty string matched by the other. This explores the product of the automata of the two
+     * nodes: since every state of these automata can reach an accepting state, there is a conflict
+     * iff a pair of states where one of the states is accepting can be reached.
+     */
+    private boolean prefixConflict(Node node1, Node node2)
+    {
+        if (node2.kind == EMPTY || node1.kind == EMPTY)
+            return false;
+
+        Array<char[]> allRanges = new Array<>();
+        collectRanges(node1, allRanges);
+        collectRanges(node2, allRanges);
+        Partition partition = partition(allRanges);
+
+        Dfa dfa1 = dfa(node1, partition);
+        Dfa dfa2 = dfa(node2, partition);
+
+        // Be conservative if an automaton is too large.
+        if (dfa1 == null || dfa2 == null)
+            return true;
+
+        int classes = partition.representatives.length;
+        HashSet<Long> visited = new HashSet<>();
+        Array<Long> stack = new Array<>(0L);
+        visited.add(0L);
+
+        while (!stack.isEmpty())
+        {
+            long pair = stack.pop();
+            int state1 = (int) (pair >>> 32);
+            int state2 = (int) pair;
+
+            for (int k = 0; k < classes; ++k)
+            {
+                int next1 = dfa1.transitions[state1 * classes + k];
+                int next2 = dfa2.transitions[state2 * classes + k];
+
+                if (next1 < 0 || next2 < 0)
+                    continue;
+
+                if (dfa1.accepting[next1] || dfa2.accepting[next2])
+                    return true;
+
+                long next = (long) next1 << 32 | next2;
+
+                if (visited.add(next))
+                    stack.push(next);
+            }
+        }
+
+        return false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void collectRanges(Node node, Array<char[]> out)
+    {
+        if (node.kind == CHARS)
+            out.add(node.ranges);
+
+        for (Node child: node.children)
+            collectRanges(child, out);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Partitions the characters into segments delimited by the boundaries of the given ranges (and
+     * by 128), then assigns the same class to all segments that belong to the same ranges.
+     */
+    private static Partition partition(Array<char[]> allRanges)
+    {
+        HashSet<Integer> points = new HashSet<>();
+        points.add(0);
+        points.add(128);
+
+        for (char[] ranges: allRanges)
+            for (int i = 0; i < ranges.length; i += 2)
+            {
+                points.add((int) ranges[i]);
+                points.add(ranges[i + 1] + 1);
+            }
+
+        points.remove(Character.MAX_VALUE + 1);
+
+        int[] sorted = points.stream().mapToInt(x -> x).sorted().toArray();
+        HashMap<BitSet, Integer> signatures = new HashMap<>();
+        Array<Character> representatives = new Array<>();
+
+        Partition out = new Partition();
+        out.starts = new char[sorted.length];
+        out.classes = new int[sorted.length];
+
+        for (int s = 0; s < sorted.length; ++s)
+        {
+            char c = (char) sorted[s];
+            BitSet signature = new BitSet();
+
+            for (int r = 0; r < allRanges.size(); ++r)
+                if (contains(allRanges.get(r), c))
+                    signature.set(r);
+
+            Integer klass = signatures.get(signature);
+
+            if (klass == null)
+            {
+                klass = representatives.size();
+                signatures.put(signature, klass);
+                representatives.add(c);
+            }
+
+            out.starts[s] = c;
+            out.classes[s] = klass;
+        }
+
+        out.representatives = new char[representatives.size()];
+
+        for (int i = 0; i < out.representatives.length; ++i)
+            out.representatives[i] = representatives.get(i);
+
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static boolean contains(char[] ranges, char c)
+    {
+        for (int i = 0; i < ranges.length; i += 2)
+            if (ranges[i] <= c && c <= ranges[i + 1])
+                return true;
+
+        return false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Builds the Thompson automaton of the node, then determinizes it using the subset
+     * construction. Returns null if the automaton has more than {@link #MAX_STATES} states.
+     */
+    private static Dfa dfa(Node node, Partition partition)
+    {
+        Nfa nfa = new Nfa();
+        int start = nfa.state();
+        nfa.accept = build(nfa, node, start);
+
+        int classes = partition.representatives.length;
+        HashMap<BitSet, Integer> ids = new HashMap<>();
+        Array<BitSet> sets = new Array<>();
+        Array<int[]> rows = new Array<>();
+
+        BitSet initial = new BitSet();
+        initial.set(start);
+        closure(nfa, initial);
+        ids.put(initial, 0);
+        sets.add(initial);
+
+        for (int i = 0; i < sets.size(); ++i)
+        {
+            BitSet set = sets.get(i);
+            int[] row = new int[classes];
+
+            for (int k = 0; k < classes; ++k)
+            {
+                char c = partition.representatives[k];
+                BitSet next = new BitSet();
+
+                for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1))
+                {
+                    char[] ranges = nfa.ranges.get(s);
+
+                    if (ranges != null && contains(ranges, c))
+                        next.set(nfa.targets.get(s));
+                }
+
+                if (next.isEmpty())
+                {
+                    row[k] = -1;
+                    continue;
+                }
+
+                closure(nfa, next);
+                Integer id = ids.get(next);
+
+                if (id == null)
+                {
+                    if (sets.size() == MAX_STATES)
+                        return null;
+
+                    id = sets.size();
+                    ids.put(next, id);
+                    sets.add(next);
+                }
+
+                row[k] = id;
+            }
+
+            rows.add(row);
+        }
+
+        Dfa out = new Dfa();
+        out.transitions = new int[sets.size() * classes];
+        out.accepting = new boolean[sets.size()];
+
+        for (int i = 0; i < sets.size(); ++i)
+        {
+            System.arraycopy(rows.get(i), 0, out.transitions, i * classes, classes);
+            out.accepting[i] = sets.get(i).get(nfa.accept);
+        }
+
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds the automaton fragment for the node, starting at the given state, and returns its final
+     * state.
+     */
+    private static int build(Nfa nfa, Node node, int start)
+    {
+        switch (node.kind)
+        {
+            case CHARS: {
+                int end = nfa.state();
+                nfa.ranges.set(start, node.ranges);
+                nfa.targets.set(start, end);
+                return end;
+            }
+
+            case EMPTY:
+                return start;
+
+            case SEQ: {
+                int end = start;
+
+                for (Node child: node.children)
+                {
+                    int next = nfa.state();
+                    nfa.epsilons.get(end).add(next);
+                    end = build(nfa, child, next);
+                }
+
+                return end;
+            }
+
+            case ALT: {
+                int end = nfa.state();
+
+                for (Node child: node.children)
+                {
+                    int next = nfa.state();
+                    nfa.epsilons.get(start).add(next);
+                    nfa.epsilons.get(build(nfa, child, next)).add(end);
+                }
+
+                return end;
+            }
+
+            default: { // STAR
+                int loop = nfa.state();
+                int end = nfa.state();
+                nfa.epsilons.get(start).add(loop);
+                nfa.epsilons.get(start).add(end);
+                int last = build(nfa, node.children[0], loop);
+                nfa.epsilons.get(last).add(start);
+                return end;
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static void closure(Nfa nfa, BitSet set)
+    {
+        Array<Integer> stack = new Array<>();
+
+        for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1))
+            stack.push(s);
+
+        while (!stack.isEmpty())
+            for (int next: nfa.epsilons.get(stack.pop()))
+                if (!set.get(next))
+                {
+                    set.set(next);
+                    stack.push(next);
+                }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,63 @@
+package com.norswap.autumn.graph;
+
+import com.norswap.autumn.GrammarBuilder;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.Memo;
+import com.norswap.util.Array;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Wraps the named expressions of a grammar into {@link Memo} expressions, which receive the name
+ * of the expression they wrap. Use through a {@link Transformer}: {@code new Transformer(new
+ * RuleMemoizer(whitespace)::rewrite)}.
+ * <p>
+ * Terminal expressions are not wrapped, since matching them is cheaper than memoizing them, and
+ * neither are the expressions reachable from the whitespace expression, which is matched outside
+ * of the parse state (see {@link com.norswap.autumn.Parser#skipWhitespace}).
+ * <p>
+ * This is run when the grammar is built, if {@link GrammarBuilder#memoizeRules} is set.
+ */
+public final class RuleMemoizer
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final Set<ParsingExpression> excluded =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public RuleMemoizer(ParsingExpression whitespace)
+    {
+        Array<ParsingExpression> stack = new Array<>(whitespace);
+
+        while (!stack.isEmpty())
+        {
+            ParsingExpression next = stack.pop();
+
+            if (excluded.add(next))
+                for (ParsingExpression child: next.children())
+                    stack.push(child);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public ParsingExpression rewrite(ParsingExpression pe)
+    {
+        if (pe.name == null
+        ||  pe.children().length == 0
+        ||  pe instanceof Memo
+        ||  excluded.contains(pe))
+            return pe;
+
+        Memo memo = new Memo();
+        memo.name = pe.name;
+        memo.operand = pe;
+        return memo;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
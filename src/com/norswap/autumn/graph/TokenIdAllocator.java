@@ -0,0 +1,31 @@
+package com.norswap.autumn.graph;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.Token;
+import com.norswap.util.graph.Slot;
+
+/**
+ * Assigns a dense id ({@link Token#id}) to each {@link Token} expression in a parsing expression
+ * graph. After the visit, {@link #ids} holds the number of assigned ids.
+ * <p>
+ * This is run when the grammar is built, after all transformations have been applied.
+ */
+public final class TokenIdAllocator extends ParsingExpressionVisitor
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public int ids = 0;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void beforeNode(Slot<ParsingExpression> slot)
+    {
+        if (slot.initial instanceof Token)
+        {
+            ((Token) slot.initial).id = ids++;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,318 @@
+package com.norswap.autumn.incremental;
+
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.capture.ParseTreeBuild;
+import com.norswap.autumn.config.MemoHandler;
+import com.norswap.autumn.expressions.Recover;
+import com.norswap.autumn.state.ParseChanges;
+import com.norswap.autumn.state.ParseState;
+import com.norswap.util.Array;
+
+/**
+ * The memoization handler of incremental parses (see {@link IncrementalParse}), whose results
+ * survive from one parse to the next.
+ * <p>
+ * Besides its changeset, each memoized invocation records its extent: the length of the input
+ * it examined, from its start position up to (and including) the farthest character that was read
+ * during the invocation, including lookahead. This is measured through the {@link TrackingText}
+ * that serves as source text.
+ * <p>
+ * When the text is edited ({@link #relocate}), the invocations whose examined range does not
+ * intersect the edit are retained, and those that follow the edit are moved by the length
+ * difference of the edit. The positions held by their changesets are shifted lazily, when the
+ * changesets are retrieved.
+ * <p>
+ * Only the invocations whose parse inputs are in their default configuration (see {@link
+ * ParseState#hasDefaultInputs}) are memoized. The others depend on state that is specific to a
+ * point of the parse (such as left-recursion seeds) and are seldom reused.
+ * <p>
+ * The changes to custom states held by the changesets are reused as is: custom states whose changes
+ * refer to input positions are not supported. Reads that precede the start position of an
+ * invocation are not tracked, with the exception of the whitespace between the black start position
+ * and the start position.
+ */
+public final class IncrementalMemoHandler implements MemoHandler
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Entry
+    {
+        final ParsingExpression pe;
+
+        /**
+         * Distance between the start position and the black start position.
+         */
+        final int blackOffset;
+
+        final boolean recordErrors;
+
+        /**
+         * Length of the input examined by the invocation, from the start position.
+         */
+        final int extent;
+
+        /**
+         * The start position in the coordinates of {@link #changes}.
+         */
+        int origin;
+
+        ParseChanges changes;
+
+        Entry next;
+
+        Entry(ParsingExpression pe, int blackOffset, boolean recordErrors, int extent,
+              int origin, ParseChanges changes)
+        {
+            this.pe = pe;
+            this.blackOffset = blackOffset;
+            this.recordErrors = recordErrors;
+            this.extent = extent;
+            this.origin = origin;
+            this.changes = changes;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private TrackingText text;
+
+    /**
+     * Maps input positions to the chain of invocations memoized at that position.
+     */
+    private Entry[] entries;
+
+    /**
+     * The greatest {@link Entry#blackOffset} of the retained invocations.
+     */
+    private int maxBlackOffset = 0;
+
+    /**
+     * For each ongoing invocation that missed the memo, the value of {@link TrackingText#examined}
+     * when it started.
+     */
+    private final Array<Integer> examined = new Array<>();
+
+    private int hits;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public IncrementalMemoHandler(TrackingText text)
+    {
+        this.text = text;
+        this.entries = new Entry[text.length()];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the number of changesets retrieved since the last call to {@link #reset}.
+     */
+    public int hits()
+    {
+        return hits;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void memoize(ParsingExpression pe, ParseState state, ParseChanges changeset)
+    {
+        int start = state.start;
+        int end = Math.max(text.examined, changeset.end);
+        int outer = examined.pop();
+        text.examined = Math.max(outer, end);
+
+        if (!state.hasDefaultInputs())
+            return;
+
+        int blackOffset = start - state.blackStart;
+        Entry entry = new Entry(
+            pe, blackOffset, state.recordErrors, end - start, start, changeset);
+
+        entry.next = entries[start];
+        entries[start] = entry;
+        maxBlackOffset = Math.max(maxBlackOffset, blackOffset);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public ParseChanges get(ParsingExpression pe, ParseState state)
+    {
+        int start = state.start;
+        Entry entry = null;
+
+        if (state.hasDefaultInputs())
+        {
+            int blackOffset = start - state.blackStart;
+            entry = entries[start];
+
+            while (entry != null && (entry.pe != pe
+                    || entry.blackOffset != blackOffset
+                    || entry.recordErrors != state.recordErrors))
+                entry = entry.next;
+        }
+
+        if (entry != null && entry.origin != start)
+        {
+            ParseChanges changes = shift(entry.changes, start - entry.origin);
+
+            if (changes != null)
+            {
+                entry.changes = changes;
+                entry.origin = start;
+            }
+            else
+            {
+                entry = null;
+            }
+        }
+
+        if (entry != null)
+        {
+            text.examined = Math.max(text.examined, start + entry.extent);
+            ++hits;
+            return entry.changes;
+        }
+
+        examined.push(text.examined);
+        text.examined = start;
+        return null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adapts the memoized data to an edit of the text. The offsets of the edit refer to the text
+     * as modified by the previous calls to this method.
+     */
+    public void relocate(TextEdit edit)
+    {
+        int s = edit.start;
+        int e = edit.end;
+        int delta = edit.delta();
+        Entry[] old = entries;
+        Entry[] entries = new Entry[old.length + delta];
+
+        // Before the edit: drop the invocations that examined the edited text.
+
+        for (int p = 0; p < s; ++p)
+            entries[p] = dropExamining(old[p], s - p);
+
+        // After the edit: move the invocations, dropping those whose black start position
+        // precedes the end of the edit.
+
+        int length = Math.min(old.length - e, entries.length - e - delta);
+        System.arraycopy(old, e, entries, e + delta, length);
+
+        int bound = Math.min(e + maxBlackOffset, e + length - 1);
+
+        for (int p = e; p <= bound; ++p)
+            entries[p + delta] = dropBlackBefore(entries[p + delta], p - e);
+
+        this.entries = entries;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the text of the next parse, which must be the result of the edits passed to {@link
+     * #relocate} since the last parse.
+     */
+    public void reset(TrackingText text)
+    {
+        if (text.length() != entries.length)
+            throw new IllegalArgumentException("Text does not match the relocated memo data.");
+
+        this.text = text;
+        hits = 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes from the chain the entries whose extent is greater than {@code limit}.
+     */
+    private static Entry dropExamining(Entry entry, int limit)
+    {
+        Entry head = null, tail = null;
+
+        for (; entry != null; entry = entry.next)
+        {
+            if (entry.extent > limit)
+                continue;
+
+            if (tail == null)
+                head = entry;
+            else
+                tail.next = entry;
+
+            tail = entry;
+        }
+
+        if (tail != null)
+            tail.next = null;
+
+        return head;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes from the chain the entries whose black offset is greater than {@code limit}.
+     */
+    private static Entry dropBlackBefore(Entry entry, int limit)
+    {
+        Entry head = null, tail = null;
+
+        for (; entry != null; entry = entry.next)
+        {
+            if (entry.blackOffset > limit)
+                continue;
+
+            if (tail == null)
+                head = entry;
+            else
+                tail.next = entry;
+
+            tail = entry;
+        }
+
+        if (tail != null)
+            tail.next = null;
+
+        return head;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns a copy of the changeset whose positions are shifted by {@code delta}, or null if the
+     * changeset holds error nodes (see {@link Recover}), whose errors can't be shifted.
+     */
+    private static ParseChanges shift(ParseChanges changes, int delta)
+    {
+        if (changes.failed())
+            return changes;
+
+        Array<ParseTreeBuild> children = changes.children;
+
+        if (children != null)
+        {
+            for (ParseTreeBuild child: children)
+                if (child.hasErrors())
+                    return null;
+
+            children = children.map(child -> child.shift(delta));
+        }
+
+        return new ParseChanges(
+            changes.end + delta,
+            changes.blackEnd + delta,
+            children,
+            changes.customChanges);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,200 @@
+package com.norswap.autumn.incremental;
+
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.GrammarBuilder;
+import com.norswap.autumn.ParseResult;
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.config.MemoHandler;
+import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.errors.ErrorState;
+import com.norswap.autumn.extensions.tracer.TraceRecorder;
+import com.norswap.autumn.source.Source;
+
+/**
+ * The data that an incremental parse keeps in order to reparse its input after it is edited. It is
+ * held by the {@link ParseResult#incremental} field of the results of incremental parses.
+ * <p>
+ * An incremental parse memoizes the invocations of the {@link com.norswap.autumn.expressions.Memo
+ * Memo} expressions of the grammar using an {@link IncrementalMemoHandler}, regardless of the memo
+ * handler of the configuration. When the text is edited, {@link #reparse} retains the memoized
+ * invocations that did not examine the edited text, and reparses the input: only the invocations
+ * that examined the edited text are run again. The grammar should memoize its main rules for this
+ * to pay off (see {@link GrammarBuilder#memoizeRules}).
+ * <p>
+ * The text is used as is: tabs are not expanded and carriage returns are kept, so that the offsets
+ * of the edits match those of the text. Byte mode (see {@link ParserConfiguration#byteMode}) and
+ * the whitespace cache of the parser are not used, and neither are two-phase parses (see {@link
+ * ParserConfiguration#twoPhase}).
+ * <p>
+ * The memoized data is updated in place by {@link #reparse}: only the most recent result of a
+ * sequence of incremental parses can be reparsed.
+ */
+public final class IncrementalParse
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public final Grammar grammar;
+
+    public final ParserConfiguration config;
+
+    /**
+     * The text of the parse, excluding the NUL terminator.
+     */
+    public final String text;
+
+    private final IncrementalMemoHandler memo;
+
+    /**
+     * The generation of the most recent parse that used {@link #memo}, shared by all the parses
+     * that use it.
+     */
+    private final int[] latest;
+
+    private final int generation;
+
+    private int memoHits;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private IncrementalParse(
+        Grammar grammar,
+        ParserConfiguration config,
+        String text,
+        IncrementalMemoHandler memo,
+        int[] latest)
+    {
+        this.grammar = grammar;
+        this.config = config;
+        this.text = text;
+        this.memo = memo;
+        this.latest = latest;
+        this.generation = ++latest[0];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Parses the given text from scratch, retaining the data needed to reparse it after edits.
+     */
+    public static ParseResult parse(Grammar grammar, String text, ParserConfiguration config)
+    {
+        TrackingText tracking = new TrackingText(text + '\0');
+        IncrementalMemoHandler memo = new IncrementalMemoHandler(tracking);
+        IncrementalParse out = new IncrementalParse(grammar, config, text, memo, new int[1]);
+        return out.run(tracking);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Applies the given edits (in order) to the text of this parse, and parses the resulting text,
+     * reusing the memoized invocations that are not affected by the edits.
+     * <p>
+     * If the new text does not match the grammar, it is parsed again from scratch, so that the
+     * error report is the same as that of a non-incremental parse.
+     *
+     * @throws IllegalStateException if this is not the most recent parse of its sequence.
+     */
+    public ParseResult reparse(TextEdit... edits)
+    {
+        if (latest[0] != generation)
+            throw new IllegalStateException(
+                "Only the most recent result of an incremental parse can be reparsed.");
+
+        String string = text;
+
+        for (TextEdit edit: edits)
+            string = edit.apply(string);
+
+        for (TextEdit edit: edits)
+            memo.relocate(edit);
+
+        TrackingText tracking = new TrackingText(string + '\0');
+        memo.reset(tracking);
+        IncrementalParse next = new IncrementalParse(grammar, config, string, memo, latest);
+        ParseResult out = next.run(tracking);
+
+        return out.matched
+            ? out
+            : parse(grammar, string, config);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of memoized invocations that were reused by the parse.
+     */
+    public int memoHits()
+    {
+        return memoHits;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private ParseResult run(TrackingText tracking)
+    {
+        Source source = Source.fromZeroTerminatedText(tracking, null, 0, 4);
+        ParseResult result = new Parser(grammar, source, new Configuration()).parseRoot();
+        memoHits = memo.hits();
+
+        return new ParseResult(
+            result.matched,
+            result.succeeded,
+            result.endPosition,
+            result.tree,
+            result.flatTree,
+            result.customChanges,
+            result.error,
+            result.recoveredErrors,
+            result.memoPeakSize,
+            result.whitespaceCacheHits,
+            this,
+            result.phase);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The configuration of the parse: that of the user, except for the memo handler.
+     */
+    private final class Configuration implements ParserConfiguration
+    {
+        @Override
+        public ErrorState errorState()
+        {
+            return config.errorState();
+        }
+
+        @Override
+        public MemoHandler memoHandler()
+        {
+            return memo;
+        }
+
+        @Override
+        public boolean flatParseTree()
+        {
+            return config.flatParseTree();
+        }
+
+        @Override
+        public TraceRecorder traceRecorder()
+        {
+            return config.traceRecorder();
+        }
+
+        @Override
+        public boolean byteMode()
+        {
+            return config.byteMode();
+        }
+
+        @Override
+        public boolean parseTree()
+        {
+            return config.parseTree();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,77 @@
+package com.norswap.autumn.incremental;
+
+/**
+ * [Immutable] An edit of a text: the replacement of the characters between {@link #start}
+ * (inclusive) and {@link #end} (exclusive) by {@link #text}.
+ * <p>
+ * When multiple edits are applied in sequence (see {@link IncrementalParse#reparse}), the offsets
+ * of each edit refer to the text as modified by the previous edits.
+ */
+public final class TextEdit
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public final int start;
+    public final int end;
+    public final String text;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public TextEdit(int start, int end, String text)
+    {
+        if (start < 0 || end < start)
+            throw new IllegalArgumentException("Invalid edit range: " + start + ", " + end);
+
+        this.start = start;
+        this.end = end;
+        this.text = text;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public static TextEdit insert(int position, String text)
+    {
+        return new TextEdit(position, position, text);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public static TextEdit delete(int start, int end)
+    {
+        return new TextEdit(start, end, "");
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the difference between the length of the text after and before the edit.
+     */
+    public int delta()
+    {
+        return text.length() - (end - start);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the result of applying this edit to the given string.
+     */
+    public String apply(String string)
+    {
+        if (end > string.length())
+            throw new IllegalArgumentException(
+                "Edit range " + start + ", " + end + " exceeds text length " + string.length());
+
+        return string.substring(0, start) + text + string.substring(end);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public String toString()
+    {
+        return "[" + start + ", " + end + ") -> \"" + text + "\"";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,67 @@
+package com.norswap.autumn.incremental;
+
+/**
+ * A string (whose final character is 0, see {@link com.norswap.autumn.source.Source#text}) that
+ * keeps track of the farthest character read through {@link #charAt}.
+ * <p>
+ * Used as source text by incremental parses, so that {@link IncrementalMemoHandler} can determine
+ * which part of the input each memoized invocation examined (including lookahead).
+ * <p>
+ * {@link #subSequence} is not tracked: it is used to retrieve text that has already been matched.
+ */
+public final class TrackingText implements CharSequence
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public final String string;
+
+    /**
+     * One past the farthest position read through {@link #charAt}. May be lowered (and later
+     * raised back) by {@link IncrementalMemoHandler} to measure the extent of an invocation.
+     */
+    public int examined;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public TrackingText(String string)
+    {
+        this.string = string;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int length()
+    {
+        return string.length();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public char charAt(int index)
+    {
+        if (index >= examined)
+            examined = index + 1;
+
+        return string.charAt(index);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        return string.subSequence(start, end);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        return string;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -3,12 +3,16 @@ package com.norswap.autumn.source;
 import com.norswap.util.Array;
 
 import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Maps line numbers to their file offsets and allows the reverse mapping in O(log(number of
  * lines)).
  * <p>
  * Lines start at index 1, while columns start at 0.
+ * <p>
+ * Also records which lines hold tab or carriage return characters, as their columns can't be
+ * derived from the file offsets alone.
  */
 public final class LineMap
 {
@@ -16,6 +20,8 @@ public final class LineMap
 
     private int[] linePositions;
 
+    private final BitSet tabbedLines = new BitSet();
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     public LineMap(CharSequence seq)
@@ -24,9 +30,14 @@ public final class LineMap
 
         for (int i = 0; i < seq.length(); ++i)
         {
-            if (seq.charAt(i) == '\n') {
+            char c = seq.charAt(i);
+
+            if (c == '\n') {
                 positions.add(i + 1);
             }
+            else if (c == '\t' || c == '\r') {
+                tabbedLines.set(positions.size() - 1);
+            }
         }
 
         linePositions = positions.stream().mapToInt(x -> x).toArray();
@@ -50,5 +61,15 @@ public final class LineMap
         return linePositions[line];
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the line holds tab or carriage return characters.
+     */
+    boolean tabbed(int line)
+    {
+        return tabbedLines.get(line);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 }
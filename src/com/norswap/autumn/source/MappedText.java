@@ -0,0 +1,290 @@
+package com.norswap.autumn.source;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The text of a file, read through a memory mapping of the file and decoded lazily, as a {@link
+ * CharSequence} whose final character is 0 (like {@link Source#text}).
+ * <p>
+ * Files in ISO-8859-1 or US-ASCII, as well as UTF-8 files that only contain ASCII characters, are
+ * decoded on the fly by {@link #charAt}, a byte per character. Other UTF-8 files are decoded by
+ * blocks of {@value #BLOCK_SIZE} characters, and the last decoded block is cached. Opening a UTF-8
+ * file requires a pass over its bytes to count its characters, but no other work.
+ * <p>
+ * Each byte of a malformed UTF-8 sequence is decoded as a U+FFFD character. US-ASCII files are
+ * decoded as ISO-8859-1.
+ * <p>
+ * The file must not be modified while the text is in use. Instances are not thread-safe.
+ */
+public final class MappedText implements CharSequence
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    static final int BLOCK_SIZE = 4096;
+
+    private static final int BLOCK_BITS = 12;
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final MappedByteBuffer bytes;
+
+    /**
+     * Number of characters, excluding the NUL terminator.
+     */
+    private final int length;
+
+    /**
+     * For UTF-8 files with non-ASCII characters: for each block, the byte offset of the code point
+     * that holds the first character of the block, shifted left by one. The low bit is set if the
+     * first character is the low half of a surrogate pair. Null if a byte encodes a character.
+     */
+    private final long[] blocks;
+
+    private final char[] block;
+
+    private int blockIndex = -1;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private MappedText(MappedByteBuffer bytes, int length, long[] blocks)
+    {
+        this.bytes = bytes;
+        this.length = length;
+        this.blocks = blocks;
+        this.block = blocks == null ? null : new char[BLOCK_SIZE];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Maps the given file and returns its text. The charset must be UTF-8, ISO-8859-1 or US-ASCII.
+     */
+    public static MappedText map(Path file, Charset charset) throws IOException
+    {
+        boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+
+        if (!utf8
+        &&  !charset.equals(StandardCharsets.ISO_8859_1)
+        &&  !charset.equals(StandardCharsets.US_ASCII))
+            throw new IllegalArgumentException("Unsupported charset for mapped text: " + charset);
+
+        MappedByteBuffer bytes;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (channel.size() >= Integer.MAX_VALUE)
+                throw new IOException("File too large: " + file);
+
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        return utf8
+            ? utf8(bytes)
+            : new MappedText(bytes, bytes.limit(), null);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static MappedText utf8(MappedByteBuffer bytes)
+    {
+        int size = bytes.limit();
+        int i = 0;
+
+        while (i < size && bytes.get(i) >= 0)
+            ++i;
+
+        if (i == size)
+            return new MappedText(bytes, size, null);
+
+        // Count the characters and record the start of the blocks.
+
+        long[] blocks = new long[(size >>> BLOCK_BITS) + 1];
+        int chars = 0;
+        i = 0;
+
+        while (i < size)
+        {
+            int len = sequenceLength(bytes, i, size);
+            int count = len == 4 ? 2 : 1;
+
+            for (int c = 0; c < count; ++c, ++chars)
+                if ((chars & (BLOCK_SIZE - 1)) == 0)
+                    blocks[chars >>> BLOCK_BITS] = (long) i << 1 | c;
+
+            i += len;
+        }
+
+        return new MappedText(bytes, chars, blocks);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the length of the UTF-8 sequence that starts at the given offset, 1 if the sequence
+     * is malformed.
+     */
+    private static int sequenceLength(MappedByteBuffer bytes, int offset, int size)
+    {
+        int b = bytes.get(offset) & 0xFF;
+
+        int len = b < 0x80 ? 1
+            : b < 0xC2 ? 0
+            : b < 0xE0 ? 2
+            : b < 0xF0 ? 3
+            : b < 0xF5 ? 4
+            : 0;
+
+        if (len <= 1)
+            return 1;
+
+        if (offset + len > size)
+            return 1;
+
+        for (int j = 1; j < len; ++j)
+            if ((bytes.get(offset + j) & 0xC0) != 0x80)
+                return 1;
+
+        int second = bytes.get(offset + 1) & 0xFF;
+
+        // Overlong encodings, surrogates and code points above U+10FFFF.
+
+        if (b == 0xE0 && second < 0xA0
+        ||  b == 0xED && second > 0x9F
+        ||  b == 0xF0 && second < 0x90
+        ||  b == 0xF4 && second > 0x8F)
+            return 1;
+
+        return len;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Decodes the code point of the given length at the given offset (see {@link #sequenceLength}).
+     */
+    private static int codePoint(MappedByteBuffer bytes, int offset, int len)
+    {
+        int b = bytes.get(offset) & 0xFF;
+
+        if (len == 1)
+            return b < 0x80 ? b : REPLACEMENT;
+
+        int cp = b & (0xFF >>> (len + 1));
+
+        for (int j = 1; j < len; ++j)
+            cp = cp << 6 | bytes.get(offset + j) & 0x3F;
+
+        return cp;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void decodeBlock(int index)
+    {
+        int size = bytes.limit();
+        int offset = (int) (blocks[index] >>> 1);
+        int skip = (int) (blocks[index] & 1);
+        int end = Math.min(BLOCK_SIZE, length - (index << BLOCK_BITS));
+        int c = 0;
+
+        while (c < end)
+        {
+            int len = sequenceLength(bytes, offset, size);
+            int cp = codePoint(bytes, offset, len);
+            offset += len;
+
+            if (cp < 0x10000)
+            {
+                block[c++] = (char) cp;
+                continue;
+            }
+
+            if (skip == 0)
+                block[c++] = Character.highSurrogate(cp);
+
+            if (c < end)
+                block[c++] = Character.lowSurrogate(cp);
+
+            skip = 0;
+        }
+
+        blockIndex = index;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the length of the text, including the NUL terminator.
+     */
+    @Override
+    public int length()
+    {
+        return length + 1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public char charAt(int index)
+    {
+        if (index >= length)
+        {
+            if (index == length)
+                return 0;
+
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+
+        if (blocks == null)
+            return (char) (bytes.get(index) & 0xFF);
+
+        if (index >>> BLOCK_BITS != blockIndex)
+            decodeBlock(index >>> BLOCK_BITS);
+
+        return block[index & (BLOCK_SIZE - 1)];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public String subSequence(int start, int end)
+    {
+        if (start < 0 || end > length() || start > end)
+            throw new IndexOutOfBoundsException(start + ", " + end);
+
+        if (blocks == null && end <= length)
+        {
+            byte[] array = new byte[end - start];
+
+            for (int i = 0; i < array.length; ++i)
+                array[i] = bytes.get(start + i);
+
+            return new String(array, StandardCharsets.ISO_8859_1);
+        }
+
+        char[] array = new char[end - start];
+
+        for (int i = 0; i < array.length; ++i)
+            array[i] = charAt(start + i);
+
+        return new String(array);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        return subSequence(0, length());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
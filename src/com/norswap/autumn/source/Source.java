@@ -1,14 +1,24 @@
 package com.norswap.autumn.source;
 
-import com.norswap.util.Strings;
-
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Contains the source text and associated meta-data.
  * <p>
- * The source text is available as a string whose final final character is 0 (handy to detect EOF).
+ * The source text is available as a character sequence whose final character is 0 (handy to detect
+ * EOF).
+ * <p>
+ * Columns are always computed by {@link #position}, where a tab counts for {@link #tabSize}
+ * columns and a carriage return for none. Sources whose text is used as is (e.g. memory-mapped
+ * files, see {@link #mapFile}) keep their tabs and carriage returns. Sources built from strings
+ * have their tabs replaced by spaces and their carriage returns removed (see {@link
+ * #fromZeroTerminatedString}), which yields the same columns.
  * <p>
  * Each source has an optional string identifier which is used to refer to it in textual output.
  * <p>
@@ -20,12 +30,18 @@ public final class Source
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    public final String text;
+    public final CharSequence text;
     public final String identifier;
     public final int columnStart;
     public final int tabSize;
     private LineMap lineMap;
 
+    // NO_BYTES if the text is not representable with a byte per character, null if not computed.
+
+    private volatile byte[] bytes;
+
+    private static final byte[] NO_BYTES = new byte[0];
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
@@ -38,9 +54,9 @@ public final class Source
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    // private because text needs to be 0-terminated and tabs needs to be replaced
+    // private because text needs to be 0-terminated
 
-    private Source(String text, String identifier, int columnStart, int tabSize)
+    private Source(CharSequence text, String identifier, int columnStart, int tabSize)
     {
         this.text = text;
         this.identifier = identifier;
@@ -50,16 +66,60 @@ public final class Source
 
     // ---------------------------------------------------------------------------------------------
 
-    public static Source fromZeroTerminatedString(String string, String identifier, int columnStart, int tabSize)
+    /**
+     * Creates a source whose text is the given string, which must end with a 0 character, after
+     * replacing its tabs by {@code tabSize} spaces and removing its carriage returns. The string is
+     * only copied if it holds such characters.
+     * <p>
+     * Unlike with {@link #fromZeroTerminatedText}, the text is rewritten, as the grammars and
+     * extensions written against string sources rely on it: the default whitespace (see {@link
+     * com.norswap.autumn.Whitespace#DEFAULT}) doesn't match carriage returns, and captures and
+     * indentation-sensitive extensions expect spaces.
+     */
+    public static Source fromZeroTerminatedString(
+        String string, String identifier, int columnStart, int tabSize)
     {
-        string = string
-            .replaceAll("\t", Strings.times(tabSize, " "))
-            .replaceAll("\r", "");
+        int i = 0;
+
+        while (i < string.length() && string.charAt(i) != '\t' && string.charAt(i) != '\r')
+            ++i;
+
+        if (i < string.length())
+        {
+            StringBuilder b = new StringBuilder(string.length() + 16);
+            b.append(string, 0, i);
+
+            for (; i < string.length(); ++i)
+            {
+                char c = string.charAt(i);
+
+                if (c == '\t')
+                    for (int j = 0; j < tabSize; ++j)
+                        b.append(' ');
+                else if (c != '\r')
+                    b.append(c);
+            }
+
+            string = b.toString();
+        }
+
         return new Source(string, identifier, columnStart, tabSize);
     }
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Creates a source whose text is the given character sequence, which must end with a 0
+     * character. Unlike {@link #fromZeroTerminatedString}, the text is used as is.
+     */
+    public static Source fromZeroTerminatedText(
+        CharSequence text, String identifier, int columnStart, int tabSize)
+    {
+        return new Source(text, identifier, columnStart, tabSize);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     public static Source fromString(String string, String identifier, int columnStart, int tabSize)
     {
         return fromZeroTerminatedString(string + '\0', identifier, columnStart, tabSize);
@@ -86,6 +146,20 @@ public final class Source
         return SourceBuilder.fromFile(filename, encoding);
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    public static SourceBuilder mapFile(String filename) throws IOException
+    {
+        return SourceBuilder.mapFile(filename);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public static SourceBuilder mapFile(String filename, Charset encoding) throws IOException
+    {
+        return SourceBuilder.mapFile(filename, encoding);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     public TextPosition position(int fileOffset)
@@ -96,13 +170,67 @@ public final class Source
         }
 
         int line = lineMap.lineFromOffset(fileOffset);
-        int column = fileOffset - lineMap.linePosition(line);
+        int lineStart = lineMap.linePosition(line);
+        int column = fileOffset - lineStart;
+
+        if (lineMap.tabbed(line))
+        {
+            column = 0;
+
+            for (int i = lineStart; i < fileOffset; ++i)
+            {
+                char c = text.charAt(i);
+                column += c == '\t' ? tabSize : c == '\r' ? 0 : 1;
+            }
+        }
 
         return new TextPosition(this, fileOffset, line, column);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Returns the source text with a byte per character (ISO-8859-1), or null if the text is not
+     * a string or contains characters that can't be represented in a byte. The result is computed
+     * on the first call.
+     * <p>
+     * Memory-mapped texts are not converted, so that their content is never copied.
+     */
+    public byte[] bytes()
+    {
+        byte[] out = bytes;
+
+        if (out == null)
+        {
+            out = NO_BYTES;
+
+            // A single pass, which stops at the first character that doesn't fit in a byte.
+
+            if (text instanceof String)
+            {
+                try
+                {
+                    ByteBuffer buffer = StandardCharsets.ISO_8859_1.newEncoder()
+                        .encode(CharBuffer.wrap(text));
+
+                    out = buffer.remaining() == buffer.capacity()
+                        ? buffer.array()
+                        : Arrays.copyOf(buffer.array(), buffer.remaining());
+                }
+                catch (CharacterCodingException e)
+                {
+                    // not representable: leave NO_BYTES
+                }
+            }
+
+            bytes = out;
+        }
+
+        return out == NO_BYTES ? null : out;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     @Override
     public String toString()
     {
@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.Paths;
 
 /**
  * Builder pattern for {@link Source}.
@@ -17,6 +18,7 @@ public final class SourceBuilder
 
     private String filename;
     private String string;
+    private MappedText text;
     private String identifier;
     private int columnStart = 0;
     private int tabSize = 4;
@@ -68,6 +70,31 @@ public final class SourceBuilder
         return out;
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the file through a memory mapping, without copying its content (see {@link
+     * MappedText}). The text is used as is: tabs and carriage returns are not rewritten.
+     */
+    public static SourceBuilder mapFile(String filename) throws IOException
+    {
+        return mapFile(filename, Encoding.UTF_8);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #mapFile(String)}, with the given charset, which must be UTF-8, ISO-8859-1 or
+     * US-ASCII.
+     */
+    public static SourceBuilder mapFile(String filename, Charset charset) throws IOException
+    {
+        SourceBuilder out = new SourceBuilder();
+        out.identifier = filename;
+        out.text = MappedText.map(Paths.get(filename), charset);
+        return out;
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     public SourceBuilder identifier(String identifier)
@@ -96,7 +123,9 @@ public final class SourceBuilder
 
     public Source build()
     {
-        return Source.fromZeroTerminatedString(string, identifier, columnStart, tabSize);
+        return text != null
+            ? Source.fromZeroTerminatedText(text, identifier, columnStart, tabSize)
+            : Source.fromZeroTerminatedString(string, identifier, columnStart, tabSize);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
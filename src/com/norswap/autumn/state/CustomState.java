@@ -21,6 +21,33 @@ public interface CustomState
 
     default Object inputs(ParseState state) { return null; }
 
+    /**
+     * Indicates whether the inputs of this state are currently in their default (initial)
+     * configuration; i.e. whether they cannot influence the result of expression invocations.
+     * <p>
+     * Called by {@link ParseState#hasDefaultInputs}. The default implementation considers that
+     * null inputs are default inputs; override it if your inputs are never null.
+     */
+    default boolean hasDefaultInputs(ParseState state) { return inputs(state) == null; }
+
+    /**
+     * Pushes the information needed to restore or uncommit this state onto the mark stack of the
+     * parse state, using {@link ParseState#pushMarkInt} and {@link ParseState#pushMarkObject}.
+     * Called by {@link ParseState#mark}.
+     * <p>
+     * {@link #restoreMark} or {@link #uncommitMark} will be called later to pop the information, in
+     * reverse order of the custom states.
+     * <p>
+     * The default implementation pushes the object returned by {@link #snapshot}; states that
+     * override it do not need to implement {@link #snapshot}, {@link #restore} and {@link
+     * #uncommit}.
+     */
+    default void mark(ParseState state) { state.pushMarkObject(snapshot(state)); }
+
+    default void restoreMark(ParseState state) { restore(state.popMarkObject(), state); }
+
+    default void uncommitMark(ParseState state) { uncommit(state.popMarkObject(), state); }
+
     default Object snapshot(ParseState state) { return null; }
 
     default void restore(Object snapshot, ParseState state) {}
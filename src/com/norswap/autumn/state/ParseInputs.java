@@ -4,6 +4,8 @@ import com.google.auto.value.AutoValue;
 import com.norswap.autumn.ParsingExpression;
 import com.norswap.util.Array;
 
+import java.util.Objects;
+
 /**
  * See {@link ParseState}, "Parse Inputs" section.
  */
@@ -50,6 +52,28 @@ public abstract class ParseInputs
             this.state = state;
             this.input = input;
         }
+
+        // Entries are compared by value, otherwise parse inputs that include custom inputs never
+        // compare equal, defeating memoization.
+
+        @Override
+        public boolean equals(Object o)
+        {
+            Entry that;
+            return this == o
+                || o instanceof Entry
+                && (that = (Entry) o) != null
+                && state == that.state
+                && Objects.equals(input, that.input);
+        }
+
+        // -----------------------------------------------------------------------------------------
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * System.identityHashCode(state) + Objects.hashCode(input);
+        }
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
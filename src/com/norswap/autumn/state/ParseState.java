@@ -4,6 +4,7 @@ import com.norswap.autumn.ParseResult;
 import com.norswap.autumn.capture.Decorate;
 import com.norswap.autumn.capture.ParseTreeBuild;
 import com.norswap.autumn.config.DefaultMemoHandler;
+import com.norswap.autumn.config.DenseMemoHandler;
 import com.norswap.autumn.config.MemoHandler;
 import com.norswap.autumn.config.ParserConfiguration;
 import com.norswap.autumn.expressions.Not;
@@ -15,6 +16,8 @@ import com.norswap.autumn.errors.DefaultErrorState;
 import com.norswap.autumn.errors.ErrorState;
 import com.norswap.util.Array;
 
+import java.util.Arrays;
+
 /**
  * An instance of this class is passed to every parsing expression invocation {@link
  * ParsingExpression#parse}.
@@ -72,41 +75,56 @@ import com.norswap.util.Array;
  * responsibility to decide which invocations should be memoized, for how long, and the
  * implementation.
  * <p>
- * <strong>Snapshots</strong>
+ * Besides the default strategy, {@link DenseMemoHandler} keys invocations by input position and
+ * expression slot whenever the other parse inputs are in their default configuration (see {@link
+ * #hasDefaultInputs}).
+ * <p>
+ * Memoization handlers may want to discard results that can't be reused anymore. To this end,
+ * expressions that may resume parsing at their initial position after invoking a sub-expression
+ * (e.g. choices, repetitions, lookaheads) bracket this invocation between calls to {@link
+ * #openBacktrackPoint} and {@link #closeBacktrackPoint}. {@link #backtrackFloor} returns a
+ * position before which the parse will never be resumed. Expressions that fail to declare their
+ * backtrack points do not compromise correctness, but may cause memoized results to be discarded
+ * too early. The backtrack points are only tracked if the memoization handler asks for it (see
+ * {@link MemoHandler#usesBacktrackFloor}), otherwise these calls do nothing.
+ * <p>
+ * <strong>Marks</strong>
  * <p>
  * As we mentioned earlier, the convention is to not have any committed changes appear after
  * invoking a sub-expression. Yet sub-expressions might need to commit changes. For instance, a
  * sequence expression will need to commit after each successful element in the sequence in order
  * for the next element to parse at the correct position. A solution to this problem is offered by
- * snapshots.
+ * marks.
  * <p>
- * A snapshot ({@link ParseStateSnapshot}) captures the information needed to rollback a parse state
- * to a time before changes were committed to it. A snapshot can be created using the {@link
- * #snapshot} method. A parse state can be rolled back by passing a snapshot to the {@link #restore}
+ * A mark records the information needed to rollback a parse state to a time before changes were
+ * committed to it. A mark can be set using the {@link #mark} method, which returns an identifier
+ * for the mark. A parse state can be rolled back by passing this identifier to the {@link #restore}
  * method.
  * <p>
- * Alternatively, a snapshot can also be passed to the {@link #uncommit} method. In this case,
- * changes made to the state after the snapshot was taken are not discarded, but treated as
- * uncommitted instead.
+ * Alternatively, the identifier can also be passed to the {@link #uncommit} method. In this case,
+ * changes made to the state after the mark was set are not discarded, but treated as uncommitted
+ * instead.
  * <p>
- * In the sequence example, you would create a snapshot before beginning to invoke the elements of
- * the sequence; then commit the results as these element invocations succeed; and finally either
- * call {@link #restore} (if an element invocation fails) or {@link #uncommit} (if all element
+ * In the sequence example, you would set a mark before beginning to invoke the elements of the
+ * sequence; then commit the results as these element invocations succeed; and finally either call
+ * {@link #restore} (if an element invocation fails) or {@link #uncommit} (if all element
  * invocations succeed). This ensures that no changes made to the state by a sequence expression
  * will appear committed to its parent expressions.
  * <p>
- * Snapshots have important restrictions placed on their use. In a {ParsingExpression#parse} method,
- * you should only call {@code restore} and {@code uncommit} with a snapshot that was created in the
- * same method (and for the same parse state). A snapshot should not be passed to parents or
- * sub-expressions.
+ * Marks have important restrictions placed on their use. In a {ParsingExpression#parse} method,
+ * each mark must be passed exactly once to either {@code restore} or {@code uncommit}, in the same
+ * method (and for the same parse state). A mark should not be passed to parents or sub-expressions.
  * <p>
- * These restrictions allow snapshots to be relatively lightweight. They make it possible to use our
- * knowledge that the sub-expressions will not discard certain parts of the parse state, or that we
- * will never see some of the changes made by the sub-expressions because these changes are strictly
- * scoped: they are only visible within an expression and (a subset of) its sub-expressions.
+ * These restrictions allow marks to be kept on a stack: the information is pushed onto an array of
+ * integers and an array of objects, and popped when the mark is restored or uncommitted. Once these
+ * arrays have grown to the maximum nesting depth of the parse, setting and releasing marks does not
+ * allocate any memory. They also make it possible to use our knowledge that the sub-expressions
+ * will not discard certain parts of the parse state, or that we will never see some of the changes
+ * made by the sub-expressions because these changes are strictly scoped: they are only visible
+ * within an expression and (a subset of) its sub-expressions.
  * <p>
- * Despite its name, a snapshot is not a full picture of the parse state, and as such cannot be
- * passed around to recall arbitrary parse states.
+ * A mark is not a full picture of the parse state, and as such cannot be used to recall arbitrary
+ * parse states.
  * <p>
  * <p>
  * <strong>Custom Parse State</strong>
@@ -234,6 +252,35 @@ public final class ParseState
      */
     public final CustomState[] customStates;
 
+    /**
+     * Whether backtrack points are tracked, see {@link MemoHandler#usesBacktrackFloor}.
+     */
+    private final boolean trackBacktrackPoints;
+
+    /**
+     * The number of currently open backtrack points, see {@link #openBacktrackPoint}.
+     */
+    private int backtrackDepth;
+
+    /**
+     * The start position of the outermost open backtrack point, see {@link #backtrackFloor}.
+     */
+    private int backtrackFloor;
+
+    /**
+     * The integer part of the mark stack, see {@link #mark}.
+     */
+    private int[] marks = new int[64];
+
+    private int marksTop;
+
+    /**
+     * The object part of the mark stack, see {@link #mark}.
+     */
+    private Object[] markObjects = new Object[16];
+
+    private int markObjectsTop;
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     public ParseState(
@@ -243,6 +290,7 @@ public final class ParseState
     {
         this.tree = new ParseTreeBuild(true, new Decorate[0]);
         this.memo = memoHandler;
+        this.trackBacktrackPoints = memoHandler.usesBacktrackFloor();
         this.errors = errorState;
         this.recordErrors = true;
         this.customStates = customStates;
@@ -313,6 +361,49 @@ public final class ParseState
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Signals that the parse may resume at the current input position ({@link #start}), whatever
+     * the outcome of the sub-expression invocations that follow. Each call must be matched by a
+     * call to {@link #closeBacktrackPoint}.
+     */
+    public void openBacktrackPoint()
+    {
+        if (trackBacktrackPoints && backtrackDepth++ == 0)
+            backtrackFloor = start;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Closes the last backtrack point opened with {@link #openBacktrackPoint}.
+     */
+    public void closeBacktrackPoint()
+    {
+        if (trackBacktrackPoints)
+            --backtrackDepth;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an input position such that the parse will never again invoke an expression before
+     * it: the start position of the outermost open backtrack point; or the current input position
+     * if no backtrack points are open. Returns 0 if backtrack points are not tracked.
+     * <p>
+     * Since the start position of an expression invocation is never smaller than that of its
+     * ancestors, only the outermost backtrack point needs to be considered.
+     */
+    public int backtrackFloor()
+    {
+        return !trackBacktrackPoints
+            ? 0
+            : backtrackDepth == 0
+                ? start
+                : backtrackFloor;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     public ParseInputs inputs(ParsingExpression pe)
     {
         Array<ParseInputs.Entry> custom = new Array<>();
@@ -332,6 +423,28 @@ public final class ParseState
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Indicates whether the parse inputs, outside of the input position and error recording, are
+     * in their default configuration: no precedence is set and all custom states have default
+     * inputs (see {@link CustomState#hasDefaultInputs}).
+     * <p>
+     * When this is the case, memoization handlers can key expression invocations by position
+     * instead of building a {@link ParseInputs} object.
+     */
+    public boolean hasDefaultInputs()
+    {
+        if (precedence != 0)
+            return false;
+
+        for (CustomState state: customStates)
+            if (state != null && !state.hasDefaultInputs(this))
+                return false;
+
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     public void load(ParseInputs inputs)
     {
         this.start = inputs.start();
@@ -339,56 +452,147 @@ public final class ParseState
         this.precedence = inputs.precedence();
         this.recordErrors = inputs.recordErrors();
 
+        // Backtrack points left open by an exception that escaped a previous parse.
+        this.backtrackDepth = 0;
+
         inputs.customInputs().forEach(e -> e.state.load(e.input));
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public ParseStateSnapshot snapshot()
+    /**
+     * Sets a mark (see {@link ParseState}, section "Marks") and returns its identifier, to be
+     * passed to {@link #restore} or {@link #uncommit}.
+     * <p>
+     * The mark holds the positions, the number of committed parse tree children, and whatever
+     * the custom states push in {@link CustomState#mark}. Two slots are reserved to remember the
+     * height of the stacks after the custom states have pushed their information.
+     */
+    public int mark()
+    {
+        int mark = marksTop;
+        pushMarkInt(start);
+        pushMarkInt(blackStart);
+        pushMarkInt(end);
+        pushMarkInt(blackEnd);
+        pushMarkInt(treeChildrenCount);
+        pushMarkInt(markObjectsTop);
+        pushMarkInt(0);
+        pushMarkInt(0);
+
+        for (CustomState state: customStates)
+            if (state != null)
+                state.mark(this);
+
+        marks[mark + 6] = marksTop;
+        marks[mark + 7] = markObjectsTop;
+        return mark;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Rolls back the state to the given mark (returned by {@link #mark}), discarding all the
+     * changes made since, then releases the mark.
+     */
+    public void restore(int mark)
     {
-        Object[] snapshots = new Object[customStates.length];
+        marksTop = marks[mark + 6];
+        markObjectsTop = marks[mark + 7];
 
-        for (int i = 0; i < customStates.length; ++i)
+        for (int i = customStates.length - 1; i >= 0; --i)
             if (customStates[i] != null)
-                snapshots[i] = customStates[i].snapshot(this);
+                customStates[i].restoreMark(this);
 
-        return new ParseStateSnapshot(
-            start,
-            blackStart,
-            end,
-            blackEnd,
-            treeChildrenCount,
-            snapshots);
+        start               = marks[mark];
+        blackStart          = marks[mark + 1];
+        end                 = marks[mark + 2];
+        blackEnd            = marks[mark + 3];
+        treeChildrenCount   = marks[mark + 4];
+
+        tree.truncate(treeChildrenCount);
+        release(mark);
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public void restore(ParseStateSnapshot snapshot)
+    /**
+     * Rolls back the committed state to the given mark (returned by {@link #mark}), so that the
+     * changes made since appear uncommitted, then releases the mark.
+     */
+    public void uncommit(int mark)
     {
-        start               = snapshot.start;
-        blackStart          = snapshot.blackStart;
-        end                 = snapshot.end;
-        blackEnd            = snapshot.blackEnd;
-        treeChildrenCount   = snapshot.treeChildrenCount;
+        marksTop = marks[mark + 6];
+        markObjectsTop = marks[mark + 7];
 
-        tree.truncate(treeChildrenCount);
+        for (int i = customStates.length - 1; i >= 0; --i)
+            if (customStates[i] != null)
+                customStates[i].uncommitMark(this);
 
-        for (int i = 0; i < customStates.length; i++) {
-            if (customStates[i] != null) customStates[i].restore(snapshot.customSnapshots[i], this);
-        }
+        start               = marks[mark];
+        blackStart          = marks[mark + 1];
+        treeChildrenCount   = marks[mark + 4];
+
+        release(mark);
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    public void uncommit(ParseStateSnapshot snapshot)
+    private void release(int mark)
     {
-        start               = snapshot.start;
-        blackStart          = snapshot.blackStart;
-        treeChildrenCount   = snapshot.treeChildrenCount;
+        // Don't keep the objects alive.
+        Arrays.fill(markObjects, marks[mark + 5], marks[mark + 7], null);
 
-        for (int i = 0; i < customStates.length; ++i) {
-            if (customStates[i] != null) customStates[i].uncommit(snapshot.customSnapshots[i], this);
-        }
+        markObjectsTop = marks[mark + 5];
+        marksTop = mark;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes an integer onto the mark stack. To be called from {@link CustomState#mark}.
+     */
+    public void pushMarkInt(int value)
+    {
+        if (marksTop == marks.length)
+            marks = Arrays.copyOf(marks, marks.length * 2);
+
+        marks[marksTop++] = value;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes an object onto the mark stack. To be called from {@link CustomState#mark}.
+     */
+    public void pushMarkObject(Object value)
+    {
+        if (markObjectsTop == markObjects.length)
+            markObjects = Arrays.copyOf(markObjects, markObjects.length * 2);
+
+        markObjects[markObjectsTop++] = value;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pops an integer pushed by {@link #pushMarkInt}. To be called from {@link
+     * CustomState#restoreMark} and {@link CustomState#uncommitMark}.
+     */
+    public int popMarkInt()
+    {
+        return marks[--marksTop];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pops an object pushed by {@link #pushMarkObject}. To be called from {@link
+     * CustomState#restoreMark} and {@link CustomState#uncommitMark}.
+     */
+    public Object popMarkObject()
+    {
+        return markObjects[--markObjectsTop];
     }
 
     // ---------------------------------------------------------------------------------------------
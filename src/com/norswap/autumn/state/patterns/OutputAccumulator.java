@@ -28,26 +28,26 @@ public class OutputAccumulator<T> implements CustomState
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
-    public Object snapshot(ParseState state)
+    public void mark(ParseState state)
     {
-        return count;
+        state.pushMarkInt(count);
     }
 
     // ---------------------------------------------------------------------------------------------
 
     @Override
-    public void restore(Object snapshot, ParseState state)
+    public void restoreMark(ParseState state)
     {
-        count = (int) snapshot;
+        count = state.popMarkInt();
         items.truncate(count);
     }
 
     // ---------------------------------------------------------------------------------------------
 
     @Override
-    public void uncommit(Object snapshot, ParseState state)
+    public void uncommitMark(ParseState state)
     {
-        count = (int) snapshot;
+        count = state.popMarkInt();
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -294,6 +294,14 @@ public final class GrammarCompiler
                     compilePE(tree.child(0)),
                     compilePE(tree.child(1)));
 
+            case "skipTo":
+                return skipTo(compilePE(tree.child()));
+
+            case "recover":
+                return recover(
+                    compilePE(tree.child(0)),
+                    compilePE(tree.child(1)));
+
             case "separated":
                 return separated(
                     compilePE(tree.child(0)),
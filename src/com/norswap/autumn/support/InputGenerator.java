@@ -0,0 +1,957 @@
+package com.norswap.autumn.support;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.ParseResult;
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.expressions.*;
+import com.norswap.autumn.expressions.abstrakt.UnaryParsingExpression;
+import com.norswap.autumn.extensions.Extension;
+import com.norswap.autumn.extensions.cluster.expressions.ExpressionCluster;
+import com.norswap.autumn.graph.DumbWrapper;
+import com.norswap.autumn.source.Source;
+import com.norswap.autumn.state.ParseInputs;
+import com.norswap.util.Array;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Generates random inputs matched by a grammar, by walking the graph of its parsing expressions
+ * (starting from {@link Grammar#root}).
+ * <p>
+ * The generation is seeded: a generator created with the same grammar and seed always produces the
+ * same sequence of inputs. The expressions are interpreted as follows:
+ * <ul>
+ * <li>Choices ({@link Choice}, {@link LongestMatch}, {@link LiteralTrie}, {@link
+ * ExpressionCluster}) pick a random alternative. If generating the alternative fails, the other
+ * alternatives are tried.</li>
+ * <li>Loops ({@link ZeroMore}, {@link OneMore}, ...) generate a random number of repetitions, at
+ * most {@link #maxRepetitions} (beyond their minimum).</li>
+ * <li>{@link Not} and {@link Lookahead} that appear in a sequence are enforced by
+ * generate-and-verify: the rest of the sequence is generated, then the operand of the predicate is
+ * run against it; the rest of the sequence is generated anew (at most {@link #maxAttempts} times)
+ * until the predicate holds. Predicates that can't be checked that way, because they appear
+ * outside of a sequence or at its end, are checked by parsing the whole input once it has been
+ * generated (see below).</li>
+ * <li>Tokens are followed by whitespace: a single space if the whitespace of the grammar matches
+ * one, sometimes followed by random whitespace generated from the whitespace expression.</li>
+ * <li>Characters are picked among the printable ASCII characters when possible.</li>
+ * </ul>
+ * <p>
+ * The depth of the generation is the number of named expressions (usually rules) that are being
+ * generated. The deeper the generation, the more likely it is that choices pick the alternative
+ * that leads to the shortest derivation, and that loops are not repeated. Beyond {@link
+ * #maxDepth}, this is always the case, which ensures termination.
+ * <p>
+ * To reach a target size, the generator repeats the body of the <i>unit loop</i>: the last loop
+ * reached from the root without going through another loop or a predicate (e.g. the loop over
+ * type declarations in a Java compilation unit). Each repetition (unit) is verified on its own by
+ * parsing the text generated before the loop followed by the unit, which must be matched by the
+ * grammar; if it isn't, the unit is generated anew (and if no valid unit can be found, the whole
+ * input is generated anew). Expressions that maintain state (see below) are reset at the start of
+ * each unit. If no unit loop is found, or if predicates could not be checked during the generation,
+ * the whole input is verified.
+ * <p>
+ * Expressions whose behaviour depends on context (typically, expressions defined by extensions)
+ * can be handled by registering a {@link Handler} for their class with {@link #handle}. Extensions
+ * register their handlers in {@link Extension#setupGenerator}, which is called when the generator
+ * is created. Handlers can store state with {@link #get} and {@link #set}: changes are undone when
+ * the generator backtracks.
+ */
+public final class InputGenerator
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Generates input for parsing expressions of a given class.
+     */
+    @FunctionalInterface
+    public interface Handler
+    {
+        /**
+         * Generates input matched by the expression, at the given depth. Use {@link #fail} if no
+         * such input can be generated in the current context.
+         */
+        void generate(InputGenerator generator, ParsingExpression pe, int depth);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public final Grammar grammar;
+
+    public final Random random;
+
+    private int maxDepth = 32;
+
+    private int maxRepetitions = 3;
+
+    private int maxAttempts = 20;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final int INFINITE = Integer.MAX_VALUE / 2;
+
+    private static final String ANY =
+        "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 ";
+
+    private static final Backtrack BACKTRACK = new Backtrack();
+
+    private static final Restart RESTART = new Restart();
+
+    private final HashMap<Class<?>, Handler> handlers = new HashMap<>();
+
+    // Length of the shortest derivation of each expression, in number of expressions.
+
+    private HashMap<ParsingExpression, Integer> heights;
+
+    private final HashMap<ParsingExpression, char[]> characters = new HashMap<>();
+
+    private ParsingExpression unitLoop;
+
+    private final DumbWrapper dumbable = new DumbWrapper();
+
+    private String separator;
+
+    // Generation state.
+
+    private StringBuilder text;
+    private HashMap<Object, Object> values;
+    private Array<Object> undo;
+    private int target;
+    private int nesting;
+    private boolean unitsGenerated;
+
+    // Whether a predicate was generated that could not be checked, because its outcome depends on
+    // the text that follows it. Not undone by backtracking, which at worst causes an extra check.
+    private boolean unchecked;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Backtrack extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        Backtrack()
+        {
+            super(null, null, false, false);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static final class Restart extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        Restart()
+        {
+            super(null, null, false, false);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public InputGenerator(Grammar grammar, long seed)
+    {
+        this.grammar = grammar;
+        this.random = new Random(seed);
+
+        for (Extension extension: grammar.extensions)
+            extension.setupGenerator(this);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // CONFIGURATION
+
+    /**
+     * Sets the depth beyond which the generation always picks the shortest derivations (default:
+     * 32).
+     */
+    public InputGenerator maxDepth(int maxDepth)
+    {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the maximum number of repetitions of a loop, beyond its minimum (default: 3).
+     */
+    public InputGenerator maxRepetitions(int maxRepetitions)
+    {
+        this.maxRepetitions = maxRepetitions;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the number of times a unit, or the continuation of a predicate, is generated before
+     * giving up (default: 20).
+     */
+    public InputGenerator maxAttempts(int maxAttempts)
+    {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Registers a handler for parsing expressions of the given class (but not its subclasses).
+     */
+    public InputGenerator handle(Class<? extends ParsingExpression> klass, Handler handler)
+    {
+        handlers.put(klass, handler);
+        return this;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // GENERATION
+
+    /**
+     * Generates an input of at least the given size (in characters), unless the grammar has no
+     * unit loop (see the class documentation), in which case a single random input is generated.
+     * <p>
+     * Throws an {@link IllegalStateException} if no valid input could be generated in {@link
+     * #maxAttempts} attempts.
+     */
+    public String generate(int size)
+    {
+        if (heights == null)
+            analyze();
+
+        for (int attempt = 0; attempt < maxAttempts; ++attempt)
+        {
+            text = new StringBuilder();
+            values = new HashMap<>();
+            undo = new Array<>();
+            target = size;
+            nesting = 0;
+            unitsGenerated = false;
+            unchecked = false;
+
+            try {
+                generate(grammar.root, 0);
+            }
+            catch (Backtrack | Restart e) {
+                continue;
+            }
+
+            String out = text.toString();
+
+            if (unitsGenerated && !unchecked || Autumn.parseString(grammar, out).matched)
+                return out;
+        }
+
+        throw new IllegalStateException("Could not generate an input matched by the grammar.");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Generates input matched by the given expression at the given depth, which should be the
+     * depth passed to the handler calling this method.
+     */
+    public void generate(ParsingExpression pe, int depth)
+    {
+        if (pe.name != null)
+            ++depth;
+
+        ++nesting;
+
+        try {
+            Handler handler = handlers.get(pe.getClass());
+
+            if (handler != null)
+                handler.generate(this, pe, depth);
+            else
+                generateDefault(pe, depth);
+        }
+        finally {
+            --nesting;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void generateDefault(ParsingExpression pe, int depth)
+    {
+        if (pe instanceof Literal)
+        {
+            text.append(((Literal) pe).string);
+        }
+        else if (pe instanceof Sequence)
+        {
+            generateSequence(pe.children(), 0, depth);
+        }
+        else if (pe instanceof Choice
+             ||  pe instanceof LongestMatch
+             ||  pe instanceof LiteralTrie
+             ||  pe instanceof ExpressionCluster)
+        {
+            generateChoice(pe.children(), depth);
+        }
+        else if (pe instanceof ZeroMore)
+        {
+            generateLoop(pe, ((ZeroMore) pe).operand, 0, depth);
+        }
+        else if (pe instanceof OneMore)
+        {
+            generateLoop(pe, ((OneMore) pe).operand, 1, depth);
+        }
+        else if (pe instanceof CharClassLoop)
+        {
+            CharClassLoop loop = (CharClassLoop) pe;
+            generateLoop(pe, loop.operand, loop.atLeastOne ? 1 : 0, depth);
+        }
+        else if (pe instanceof Optional)
+        {
+            if (!closing(depth) && random.nextBoolean())
+                generateOptional(((Optional) pe).operand, depth);
+        }
+        else if (pe instanceof Token)
+        {
+            generate(((Token) pe).operand, depth);
+            whitespace(depth);
+        }
+        else if (pe instanceof com.norswap.autumn.expressions.Whitespace)
+        {
+            whitespace(depth);
+        }
+        else if (pe instanceof CharSet
+             ||  pe instanceof CharRange
+             ||  pe instanceof CharClass)
+        {
+            char[] chars = characters.computeIfAbsent(pe, InputGenerator::characters);
+            text.append(chars[random.nextInt(chars.length)]);
+        }
+        else if (pe instanceof Any)
+        {
+            text.append(ANY.charAt(random.nextInt(ANY.length())));
+        }
+        else if (pe instanceof Regular)
+        {
+            generate(((Regular) pe).expression, depth);
+        }
+        else if (pe instanceof SkipTo)
+        {
+            SkipTo skip = (SkipTo) pe;
+            int count = (skip.atLeastOne ? 1 : 0) + repetitions(depth);
+
+            for (int i = 0; i < count; ++i)
+                generate(skip.body, depth);
+
+            generate(skip.terminator, depth);
+        }
+        else if (pe instanceof Recover)
+        {
+            generate(((Recover) pe).operand, depth);
+        }
+        else if (pe instanceof SubGrammar)
+        {
+            generate(((SubGrammar) pe).subgrammar.root, depth);
+        }
+        else if (pe instanceof Failure)
+        {
+            fail();
+        }
+        else if (pe instanceof Reference)
+        {
+            throw new IllegalStateException("Unresolved reference: " + ((Reference) pe).target);
+        }
+        else if (pe instanceof Not
+             ||  pe instanceof Lookahead)
+        {
+            // Outside of a sequence, the text that follows the predicate is generated by the
+            // enclosing expressions: the predicate is checked when the input is complete.
+            unchecked = true;
+        }
+        else if (pe instanceof Success)
+        {
+            // nothing to generate
+        }
+        else if (pe instanceof UnaryParsingExpression)
+        {
+            // Captures, memoization, precedence, left-recursion, ...
+            generate(((UnaryParsingExpression) pe).operand, depth);
+        }
+        else
+        {
+            throw new UnsupportedOperationException(
+                "No way to generate input for expression: " + pe.getClass().getName());
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void generateSequence(ParsingExpression[] children, int from, int depth)
+    {
+        for (int i = from; i < children.length; ++i)
+        {
+            ParsingExpression child = children[i];
+
+            if (child instanceof Not || child instanceof Lookahead)
+            {
+                generatePredicated(children, i, depth);
+                return;
+            }
+
+            generate(child, depth);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Generates the children of the sequence that follow the predicate at the given index, until
+     * they satisfy the predicate.
+     */
+    private void generatePredicated(ParsingExpression[] children, int index, int depth)
+    {
+        boolean lookahead = children[index] instanceof Lookahead;
+        ParsingExpression operand = ((UnaryParsingExpression) children[index]).operand;
+        int start = text.length();
+        long mark = mark();
+
+        for (int attempt = 0; attempt < maxAttempts; ++attempt)
+        {
+            try {
+                generateSequence(children, index + 1, depth);
+
+                // The text that follows the sequence is unknown, so the predicate can't be checked
+                // if the sequence ends here: it is checked when the input is complete.
+
+                if (text.length() == start)
+                {
+                    unchecked = true;
+                    return;
+                }
+
+                if (lookahead == matches(operand, text.substring(start)))
+                    return;
+            }
+            catch (Backtrack e) {
+                // try again
+            }
+
+            restore(mark);
+        }
+
+        fail();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void generateChoice(ParsingExpression[] alternatives, int depth)
+    {
+        // The alternatives are tried in random order, starting with the alternatives with the
+        // shortest derivation when closing.
+
+        boolean closing = closing(depth);
+        int min = INFINITE;
+
+        for (ParsingExpression alternative: alternatives)
+            min = Math.min(min, height(alternative));
+
+        Array<ParsingExpression> preferred = new Array<>();
+        Array<ParsingExpression> others = new Array<>();
+
+        for (ParsingExpression alternative: alternatives)
+        {
+            int height = height(alternative);
+
+            if (height >= INFINITE)
+                continue;
+
+            if (!closing || height == min)
+                preferred.add(alternative);
+            else
+                others.add(alternative);
+        }
+
+        shuffle(preferred);
+        shuffle(others);
+        preferred.addAll(others);
+        long mark = mark();
+
+        for (ParsingExpression alternative: preferred)
+        {
+            try {
+                generate(alternative, depth);
+                return;
+            }
+            catch (Backtrack e) {
+                restore(mark);
+            }
+        }
+
+        fail();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void generateLoop(ParsingExpression pe, ParsingExpression operand, int min, int depth)
+    {
+        if (pe == unitLoop && !unitsGenerated)
+        {
+            generateUnits(operand, min, depth);
+            return;
+        }
+
+        int count = min + repetitions(depth);
+
+        for (int i = 0; i < count; ++i)
+        {
+            long mark = mark();
+
+            try {
+                generate(operand, depth);
+            }
+            catch (Backtrack e) {
+                restore(mark);
+
+                if (i < min)
+                    throw e;
+
+                return;
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void generateOptional(ParsingExpression operand, int depth)
+    {
+        long mark = mark();
+
+        try {
+            generate(operand, depth);
+        }
+        catch (Backtrack e) {
+            restore(mark);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void generateUnits(ParsingExpression operand, int min, int depth)
+    {
+        unitsGenerated = true;
+        String prefix = text.toString();
+        int base = undo.size();
+        int count = 0;
+
+        while (count < min || text.length() < target)
+        {
+            int start = text.length();
+            long mark = mark();
+            boolean valid = false;
+
+            for (int attempt = 0; attempt < maxAttempts && !valid; ++attempt)
+            {
+                try {
+                    generate(operand, depth);
+
+                    valid = text.length() > start
+                        && Autumn.parseString(grammar, prefix + text.substring(start)).matched;
+                }
+                catch (Backtrack e) {
+                    // try again
+                }
+
+                if (!valid)
+                    restore(mark);
+            }
+
+            // The text generated before the loop may not admit any unit: start over.
+
+            if (!valid)
+                throw RESTART;
+
+            // Each unit starts from the same state.
+            rollback(base);
+            ++count;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // HANDLER SUPPORT
+
+    /**
+     * Returns the input generated so far.
+     */
+    public CharSequence text()
+    {
+        return text;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends text to the input.
+     */
+    public void append(CharSequence string)
+    {
+        text.append(string);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Generates the whitespace that follows a token: the separator (a single space if the
+     * whitespace of the grammar matches one), sometimes followed by random whitespace.
+     */
+    public void whitespace(int depth)
+    {
+        if (separator == null)
+            separator = matchLength(grammar.whitespace, " ") == 1 ? " " : "";
+
+        int start = text.length();
+        text.append(separator);
+
+        if (separator.isEmpty() || random.nextInt(8) == 0)
+        {
+            long mark = mark();
+            generateOptional(grammar.whitespace, depth);
+
+            // The separator keeps the whitespace from merging with the preceding token, but the
+            // whitespace must not extend over what follows (e.g. an unterminated line comment).
+
+            String generated = text.substring(start);
+
+            if (text.length() > (int) mark
+                && matchLength(grammar.whitespace, generated + "x") == generated.length())
+                return;
+
+            restore(mark);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates that no input can be generated for the expression being generated. Generation
+     * backtracks to the last choice or loop and proceeds with another alternative.
+     */
+    public void fail()
+    {
+        throw BACKTRACK;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the value associated to the key, or the default value if there is none.
+     */
+    public Object get(Object key, Object defaultValue)
+    {
+        Object out = values.get(key);
+        return out != null ? out : defaultValue;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Associates the value to the key. The association is undone if the generator backtracks.
+     */
+    public void set(Object key, Object value)
+    {
+        undo.push(key);
+        undo.push(values.put(key, value));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Should the generation pick the shortest derivations at this depth? Always true beyond {@link
+     * #maxDepth}, and increasingly likely before.
+     */
+    public boolean closing(int depth)
+    {
+        return depth >= maxDepth
+            || nesting >= 16 * maxDepth
+            || random.nextInt(maxDepth) < depth;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a random number of loop repetitions at the given depth.
+     */
+    public int repetitions(int depth)
+    {
+        return closing(depth) ? 0 : random.nextInt(maxRepetitions + 1);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // STATE
+
+    private long mark()
+    {
+        return (long) undo.size() << 32 | text.length();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void restore(long mark)
+    {
+        text.setLength((int) mark);
+        rollback((int) (mark >>> 32));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void rollback(int size)
+    {
+        while (undo.size() > size)
+        {
+            Object old = undo.pop();
+            Object key = undo.pop();
+
+            if (old == null)
+                values.remove(key);
+            else
+                values.put(key, old);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Does the expression succeed at the start of the text? Expressions that can be parsed in dumb
+     * mode are parsed that way, without creating a parse state.
+     */
+    private boolean matches(ParsingExpression pe, String string)
+    {
+        return matchLength(pe, string) >= 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the length of the prefix of the string matched by the expression, or -1 if the
+     * expression fails.
+     */
+    private int matchLength(ParsingExpression pe, String string)
+    {
+        Parser parser = new Parser(
+            grammar,
+            Source.fromString(string).build(),
+            ParserConfiguration.DEFAULT);
+
+        if (dumbable.dumbable(pe))
+            return pe.parseDumb(parser, 0);
+
+        ParseResult result = parser.parse(ParseInputs.create(pe, 0, 0, 0, false, Array.empty()));
+        return result.succeeded ? result.endPosition : -1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private <T> void shuffle(Array<T> array)
+    {
+        for (int i = array.size() - 1; i > 0; --i)
+        {
+            int j = random.nextInt(i + 1);
+            T tmp = array.get(i);
+            array.set(i, array.get(j));
+            array.set(j, tmp);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // ANALYSIS
+
+    /**
+     * Computes the height of the expressions and finds the unit loop.
+     */
+    private void analyze()
+    {
+        Array<ParsingExpression> reachable = new Array<>();
+        HashSet<ParsingExpression> visited = new HashSet<>();
+        Array<ParsingExpression> stack = new Array<>(grammar.root, grammar.whitespace);
+
+        while (!stack.isEmpty())
+        {
+            ParsingExpression pe = stack.pop();
+
+            if (pe == null || !visited.add(pe))
+                continue;
+
+            reachable.add(pe);
+            stack.addAll(children(pe));
+        }
+
+        heights = new HashMap<>();
+        boolean changed = true;
+
+        while (changed)
+        {
+            changed = false;
+
+            for (ParsingExpression pe: reachable)
+            {
+                int height = Math.min(INFINITE, computeHeight(pe));
+
+                if (height < height(pe))
+                {
+                    heights.put(pe, height);
+                    changed = true;
+                }
+            }
+        }
+
+        findUnitLoop(grammar.root, new HashSet<>());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static ParsingExpression[] children(ParsingExpression pe)
+    {
+        if (pe instanceof Regular)
+            return new ParsingExpression[] { ((Regular) pe).expression };
+
+        if (pe instanceof SubGrammar)
+            return new ParsingExpression[] { ((SubGrammar) pe).subgrammar.root };
+
+        return pe.children();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private int height(ParsingExpression pe)
+    {
+        Integer out = heights.get(pe);
+        return out == null ? INFINITE : out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private int computeHeight(ParsingExpression pe)
+    {
+        if (pe instanceof Failure)
+            return INFINITE;
+
+        if (pe instanceof Not
+        ||  pe instanceof Lookahead
+        ||  pe instanceof ZeroMore
+        ||  pe instanceof Optional
+        ||  pe instanceof CharClassLoop && !((CharClassLoop) pe).atLeastOne)
+            return 1;
+
+        if (pe instanceof SkipTo)
+        {
+            SkipTo skip = (SkipTo) pe;
+
+            return 1 + (skip.atLeastOne
+                ? Math.max(height(skip.body), height(skip.terminator))
+                : height(skip.terminator));
+        }
+
+        if (pe instanceof Recover)
+            return 1 + height(((Recover) pe).operand);
+
+        ParsingExpression[] children = children(pe);
+
+        if (pe instanceof Choice
+        ||  pe instanceof LongestMatch
+        ||  pe instanceof LiteralTrie
+        ||  pe instanceof ExpressionCluster)
+        {
+            int min = INFINITE;
+
+            for (ParsingExpression child: children)
+                min = Math.min(min, height(child));
+
+            return 1 + min;
+        }
+
+        int max = 0;
+
+        for (ParsingExpression child: children)
+            max = Math.max(max, height(child));
+
+        return 1 + max;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void findUnitLoop(ParsingExpression pe, HashSet<ParsingExpression> visited)
+    {
+        if (!visited.add(pe))
+            return;
+
+        if (pe instanceof ZeroMore || pe instanceof OneMore)
+        {
+            unitLoop = pe;
+        }
+        else if (pe instanceof Sequence
+             ||  pe instanceof Choice
+             ||  pe instanceof UnaryParsingExpression
+                 && !(pe instanceof Not)
+                 && !(pe instanceof Lookahead)
+                 && !(pe instanceof CharClassLoop))
+        {
+            for (ParsingExpression child: pe.children())
+                findUnitLoop(child, visited);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the characters that can be generated for a character expression: the printable ASCII
+     * characters it matches, or if there are none, a line feed or the first character it matches.
+     */
+    private static char[] characters(ParsingExpression pe)
+    {
+        char[] ranges;
+
+        if (pe instanceof CharSet)
+        {
+            char[] chars = ((CharSet) pe).chars;
+            ranges = new char[chars.length * 2];
+
+            for (int i = 0; i < chars.length; ++i)
+                ranges[2 * i] = ranges[2 * i + 1] = chars[i];
+        }
+        else if (pe instanceof CharRange)
+        {
+            ranges = new char[] { ((CharRange) pe).start, ((CharRange) pe).end };
+        }
+        else
+        {
+            ranges = ((CharClass) pe).ranges;
+        }
+
+        StringBuilder out = new StringBuilder();
+
+        for (char c = ' '; c <= '~'; ++c)
+            for (int i = 0; i < ranges.length; i += 2)
+                if (ranges[i] <= c && c <= ranges[i + 1])
+                {
+                    out.append(c);
+                    break;
+                }
+
+        // Carriage returns are removed from sources, so prefer line feeds.
+
+        if (out.length() == 0)
+            for (int i = 0; i < ranges.length; i += 2)
+                if (ranges[i] <= '\n' && '\n' <= ranges[i + 1])
+                    out.append('\n');
+
+        if (out.length() == 0)
+            out.append(ranges[0]);
+
+        return out.toString().toCharArray();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -52,6 +52,8 @@ public final class MetaGrammar
     underscore  = ntoken("_"),
     starPlus    = ntoken("*+"),
     plusPlus    = ntoken("++"),
+    skipArrow   = ntoken("~>"),
+    syncArrow   = ntoken("~~>"),
     lAnBra      = ntoken("<"),
     rAnBra      = ntoken(">"),
     comma       = ntoken(","),
@@ -184,6 +186,7 @@ public final class MetaGrammar
         groupLeftRec(++i, // binary & capture
             capture("until", sequence(expr, starPlus, expr)),
             capture("aloUntil", sequence(expr, plusPlus, expr)),
+            capture("recover", sequence(expr, syncArrow, expr)),
             capture("separated", sequence(expr, comma, expr)),
             capture("aloSeparated", sequence(expr, commaPlus, expr)),
             capture("capture", sequence(
@@ -194,7 +197,8 @@ public final class MetaGrammar
             capture("and", sequence(and, expr)),
             capture("not", sequence(bang, expr)),
             capture("token", sequence(percent, expr)),
-            capture("dumb", sequence(hat, expr))),
+            capture("dumb", sequence(hat, expr)),
+            capture("skipTo", sequence(skipArrow, expr))),
 
         group(++i, // suffix
             capture("optional", sequence(expr, qMark)),
@@ -38,7 +38,7 @@ public class DynExtReader extends UnaryParsingExpression
 
         DynExtState destate = cast(state.customStates[DynExtExtension.INDEX]);
         String errMsg = null;
-        String name = state.tree.children().last().value;
+        String name = state.tree.children().last().value(parser.text);
 
         try {
             Class<?> klass = Class.forName(name);
@@ -40,7 +40,7 @@ public final class DynRefReader extends UnaryParsingExpression
         if (state.failed())
             return;
 
-        String name = state.tree.children().last().value;
+        String name = state.tree.children().last().value(parser.text);
         SyntaxExtension ext;
 
         switch (type)
@@ -1,7 +1,13 @@
 package com.norswap.autumn.test;
 
+import com.norswap.autumn.test.parsing.AutoDumbTests;
+import com.norswap.autumn.test.parsing.CharClassTests;
+import com.norswap.autumn.test.parsing.DispatchTests;
 import com.norswap.autumn.test.parsing.FeatureTests;
+import com.norswap.autumn.test.parsing.LiteralTrieTests;
+import com.norswap.autumn.test.parsing.MemoTests;
 import com.norswap.autumn.test.parsing.OperatorTests;
+import com.norswap.autumn.test.parsing.RegularTests;
 
 public final class Main
 {
@@ -12,5 +18,11 @@ public final class Main
     {
         OperatorTests.run();
         FeatureTests.run();
+        MemoTests.run();
+        DispatchTests.run();
+        LiteralTrieTests.run();
+        CharClassTests.run();
+        AutoDumbTests.run();
+        RegularTests.run();
     }
 }
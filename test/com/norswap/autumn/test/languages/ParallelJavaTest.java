@@ -0,0 +1,99 @@
+package com.norswap.autumn.test.languages;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.FileParseResult;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.ParseResult;
+import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.source.Source;
+import com.norswap.util.Glob;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Stress test for {@link Autumn#parseAll}: parses a corpus of Java files sequentially, then
+ * repeatedly on multiple threads sharing the same grammar, and checks that the parse trees and
+ * error messages are the same.
+ * <p>
+ * Arguments (all optional): the corpus directory (default: src), the number of threads (default:
+ * twice the number of processors) and the number of rounds (default: 3).
+ */
+public final class ParallelJavaTest
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static String grammarFile = "grammars/Java8.autumn";
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static void main(String[] args) throws IOException
+    {
+        Path corpus = Paths.get(args.length > 0 ? args[0] : "src");
+
+        int threads = args.length > 1
+            ? Integer.parseInt(args[1])
+            : 2 * Runtime.getRuntime().availableProcessors();
+
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        Source source = Source.fromFile(grammarFile).columnStart(1).build();
+        Grammar grammar = Grammar.fromSource(source).build();
+
+        List<Path> files = Glob.glob("**/*.java", corpus);
+
+        HashMap<Path, String> expected = new HashMap<>();
+
+        for (Path path: files)
+            expected.put(path, summary(Autumn.parseFile(grammar, path.toString())));
+
+        int mismatches = 0;
+
+        for (int round = 0; round < rounds; ++round)
+        {
+            int count = 0;
+
+            for (FileParseResult result: (Iterable<FileParseResult>) Autumn.parseAll(
+                grammar, files, ParserConfiguration.DEFAULT, threads)::iterator)
+            {
+                ++count;
+
+                String summary = result.exception != null
+                    ? result.exception.toString()
+                    : summary(result.result);
+
+                if (!summary.equals(expected.get(result.file)))
+                {
+                    System.err.println("mismatch: " + result.file);
+                    ++mismatches;
+                }
+            }
+
+            if (count != files.size())
+            {
+                System.err.println("missing results: " + count + " / " + files.size());
+                ++mismatches;
+            }
+        }
+
+        System.out.println(files.size() + " files, " + threads + " threads, " + rounds
+            + " rounds: " + mismatches + " mismatches");
+
+        if (mismatches != 0)
+            System.exit(1);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static String summary(ParseResult result)
+    {
+        return result.matched
+            ? String.valueOf(result.tree)
+            : result.endPosition + "\n" + result.error.message();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
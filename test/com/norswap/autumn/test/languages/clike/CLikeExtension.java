@@ -1,9 +1,13 @@
 package com.norswap.autumn.test.languages.clike;
 
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.abstrakt.UnaryParsingExpression;
 import com.norswap.autumn.extensions.CustomStateIndex;
 import com.norswap.autumn.extensions.Extension;
 import com.norswap.autumn.extensions.SyntaxExtension;
 import com.norswap.autumn.state.CustomState;
+import com.norswap.autumn.support.InputGenerator;
+import com.norswap.util.Array;
 
 public final class CLikeExtension implements Extension
 {
@@ -15,6 +19,10 @@ public final class CLikeExtension implements Extension
         new CLikeSyntaxExtension("TYPEDEF"),
         new CLikeSyntaxExtension("TYPEUSE")};
 
+    // Key for the type names defined so far, in the state of the input generator.
+
+    private static final String TYPES = "clike.types";
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
@@ -39,5 +47,47 @@ public final class CLikeExtension implements Extension
         return INDEX;
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void setupGenerator(InputGenerator generator)
+    {
+        generator.handle(TypeDef.class, CLikeExtension::generateTypeDef);
+        generator.handle(TypeUse.class, CLikeExtension::generateTypeUse);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @SuppressWarnings("unchecked")
+    private static Array<String> types(InputGenerator generator)
+    {
+        return (Array<String>) generator.get(TYPES, new Array<>("int"));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static void generateTypeDef(InputGenerator generator, ParsingExpression pe, int depth)
+    {
+        int start = generator.text().length();
+        generator.generate(((UnaryParsingExpression) pe).operand, depth);
+        String name = generator.text().subSequence(start, generator.text().length()).toString();
+
+        Array<String> types = Array.fromIterable(types(generator));
+        types.add(name.trim());
+        generator.set(TYPES, types);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Type uses must refer to a type defined earlier.
+     */
+    private static void generateTypeUse(InputGenerator generator, ParsingExpression pe, int depth)
+    {
+        Array<String> types = types(generator);
+        generator.append(types.get(generator.random.nextInt(types.size())));
+        generator.whitespace(depth);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 }
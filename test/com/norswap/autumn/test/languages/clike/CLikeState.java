@@ -5,6 +5,8 @@ import com.norswap.autumn.state.patterns.OutputAccumulator;
 public class CLikeState extends OutputAccumulator<String>
 {
     {
+        // Committed, so that it isn't removed when the first expression to run fails.
         items.push("int");
+        commit(null);
     }
 }
@@ -28,13 +28,9 @@ public class TypeDef extends UnaryParsingExpression
         }
 
         CLikeState clstate = (CLikeState) state.customStates[CLikeExtension.INDEX];
-        String typeName = state.tree.children().last().value;
+        String typeName = state.tree.children().last().value(parser.text);
 
         clstate.add(typeName);
-
-        System.err.println(String.format("type definition (%s) at: %s",
-            typeName,
-            parser.source.position(state.start)));
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
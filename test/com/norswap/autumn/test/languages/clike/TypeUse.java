@@ -28,21 +28,10 @@ public class TypeUse extends UnaryParsingExpression
         }
 
         CLikeState clstate = (CLikeState) state.customStates[CLikeExtension.INDEX];
-        String typeName = state.tree.children().last().value;
+        String typeName = state.tree.children().last().value(parser.text);
 
         if (!clstate.items.contains(typeName))
-        {
             state.fail();
-            System.err.println(String.format("unsuccessful type use (%s) at: %s",
-                typeName,
-                parser.source.position(state.start)));
-        }
-        else
-        {
-            System.err.println(String.format("successful type use (%s) at: %s",
-                typeName,
-                parser.source.position(state.start)));
-        }
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -1,9 +1,12 @@
 package com.norswap.autumn.test.languages.python;
 
+import com.norswap.autumn.ParsingExpression;
 import com.norswap.autumn.extensions.CustomStateIndex;
 import com.norswap.autumn.extensions.Extension;
 import com.norswap.autumn.extensions.SyntaxExtension;
 import com.norswap.autumn.state.CustomState;
+import com.norswap.autumn.support.InputGenerator;
+import com.norswap.util.Strings;
 
 public class PythonExtension implements Extension
 {
@@ -19,6 +22,14 @@ public class PythonExtension implements Extension
         new PythonSyntaxExtension("START_LINE_JOINING"),
         new PythonSyntaxExtension("END_LINE_JOINING")};
 
+    // Keys for the state of the input generator (mirrors PythonState).
+
+    private static final String
+        INDENT          = "python.indent",
+        LINE_JOINING    = "python.lineJoining",
+        LINE_START      = "python.lineStart",
+        AFTER_TOKEN     = "python.afterToken";
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     @Override
@@ -43,5 +54,80 @@ public class PythonExtension implements Extension
         return INDEX;
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void setupGenerator(InputGenerator generator)
+    {
+        generator.handle(PythonToken.class, PythonExtension::generateToken);
+        generator.handle(PythonIndentToken.class, PythonExtension::generateIndentToken);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Generates a token, preceded by the indentation if it starts a line, and followed by a space.
+     */
+    private static void generateToken(InputGenerator generator, ParsingExpression pe, int depth)
+    {
+        if ((boolean) generator.get(LINE_START, false))
+        {
+            generator.append(Strings.times(4 * (int) generator.get(INDENT, 0), " "));
+            generator.set(LINE_START, false);
+        }
+
+        generator.generate(((PythonToken) pe).operand, depth);
+        generator.append(" ");
+        generator.set(AFTER_TOKEN, true);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Newlines can only follow a token outside of a line-joining context. Indents and dedents can
+     * only start a line, and change the indentation of the tokens that follow.
+     */
+    private static void generateIndentToken(
+        InputGenerator generator, ParsingExpression pe, int depth)
+    {
+        int indent = (int) generator.get(INDENT, 0);
+        int lineJoining = (int) generator.get(LINE_JOINING, 1);
+        boolean lineStart = (boolean) generator.get(LINE_START, false);
+
+        switch (pe.name)
+        {
+            case "NEWLINE":
+                if (lineJoining > 0 || !(boolean) generator.get(AFTER_TOKEN, false))
+                    generator.fail();
+
+                generator.append("\n");
+                generator.set(AFTER_TOKEN, false);
+                generator.set(LINE_START, true);
+                break;
+
+            case "INDENT":
+                if (!lineStart)
+                    generator.fail();
+
+                generator.set(INDENT, indent + 1);
+                break;
+
+            case "DEDENT":
+                if (!lineStart || indent == 0)
+                    generator.fail();
+
+                generator.set(INDENT, indent - 1);
+                break;
+
+            case "START_LINE_JOINING":
+                generator.set(LINE_JOINING, lineJoining + 1);
+                break;
+
+            case "END_LINE_JOINING":
+                generator.set(LINE_JOINING, lineJoining - 1);
+                break;
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 }
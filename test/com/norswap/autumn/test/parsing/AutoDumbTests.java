@@ -0,0 +1,166 @@
+package com.norswap.autumn.test.parsing;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.Capture;
+import com.norswap.autumn.expressions.Choice;
+import com.norswap.autumn.expressions.Dumb;
+import com.norswap.autumn.expressions.OneMore;
+import com.norswap.autumn.expressions.Regular;
+import com.norswap.autumn.expressions.Sequence;
+import com.norswap.autumn.expressions.Token;
+import com.norswap.autumn.test.Ensure;
+import com.norswap.autumn.test.TestRunner;
+
+import static com.norswap.autumn.ParsingExpressionFactory.*;
+
+/**
+ * Tests the automatic wrapping of sub-expressions in dumb mode.
+ */
+public final class AutoDumbTests
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    Runnable[] tests = {
+        this::testSameResults,
+        this::testWrappers,
+        this::testRecursive,
+        this::testErrorPositions
+    };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static void main(String[] args)
+    {
+        run();
+    }
+
+    public static void run()
+    {
+        new AutoDumbTests().doRun();
+        System.out.println("Auto dumb tests succeeded.");
+    }
+
+    void doRun()
+    {
+        TestRunner runner = new TestRunner(tests);
+        runner.run();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static ParsingExpression ident()
+    {
+        return token(sequence(
+            not(sequence(literal("if"), not(charRange('a', 'z')))),
+            oneMore(charRange('a', 'z'))));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static ParsingExpression number()
+    {
+        return token(sequence(oneMore(charRange('0', '9')), optional(literal("L"))));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * A list of numbers and "if" statements, which have an identifier as body.
+     */
+    private static ParsingExpression root(ParsingExpression ident, ParsingExpression number)
+    {
+        return oneMore(choice(
+            sequence(token("if"), capture("id", ident)),
+            capture("num", number)));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public void testSameResults()
+    {
+        Grammar plain = Grammar.fromRoot(root(ident(), number())).build();
+        Grammar dumb = Grammar.fromRoot(root(ident(), number())).autoDumb(true).build();
+
+        // The same tokens are reported, but their printed sub-expressions include the wrappers.
+
+        Common.ensureSameResults(dumb, plain, "if abc 12L 3", "if if", "abc", "if x 12LL", "");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testWrappers()
+    {
+        ParsingExpression ident = ident();
+        ParsingExpression number = number();
+        Grammar dumb = Grammar.fromRoot(root(ident, number)).autoDumb(true).build();
+
+        // The operands of the tokens are wrapped, the tokens and captures are not.
+
+        Ensure.ensure(((Token) ident).operand instanceof Dumb);
+        Ensure.ensure(((Dumb) ((Token) ident).operand).operand instanceof Sequence);
+        Ensure.ensure(((Token) number).operand instanceof Dumb);
+
+        Ensure.ensure(dumb.root instanceof OneMore);
+        ParsingExpression[] operands = ((Choice) ((OneMore) dumb.root).operand).operands;
+        Ensure.ensure(((Sequence) operands[0]).operands[0] instanceof Token);
+        Ensure.ensure(((Capture) ((Sequence) operands[0]).operands[1]).operand == ident);
+        Ensure.ensure(((Capture) operands[1]).operand == number);
+
+        // Regular expressions are terminal, and are not wrapped.
+
+        number = number();
+        Grammar.fromRoot(root(ident(), number)).regularExpressions(true).autoDumb(true).build();
+        Ensure.ensure(((Token) number).operand instanceof Regular);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testRecursive()
+    {
+        ParsingExpression nested = choice(
+            sequence(literal("("), reference("nested"), literal(")")),
+            literal("x"));
+
+        nested.name = "nested";
+        Token token = token(nested);
+        Grammar grammar = Grammar.fromRoot(oneMore(token)).autoDumb(true).build();
+
+        // The cycle is wrapped once, where it is entered.
+
+        Ensure.ensure(token.operand instanceof Dumb);
+        Ensure.ensure(((Dumb) token.operand).operand == nested);
+        Ensure.ensure(((Sequence) ((Choice) nested).operands[0]).operands[1] == nested);
+        Common.ensureMatch(Autumn.parseString(grammar, "((x)) x"));
+
+        // A capture in the cycle prevents its wrapping.
+
+        ParsingExpression captured = choice(
+            sequence(literal("("), capture("inner", reference("captured")), literal(")")),
+            literal("x"));
+
+        captured.name = "captured";
+        token = token(captured);
+        grammar = Grammar.fromRoot(oneMore(token)).autoDumb(true).build();
+
+        Ensure.ensure(token.operand == captured);
+        Ensure.ensure(!(((Choice) captured).operands[0] instanceof Dumb));
+        Common.ensureMatch(Autumn.parseString(grammar, "((x)) x"));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testErrorPositions()
+    {
+        Grammar dumb = Grammar.fromRoot(root(ident(), number())).autoDumb(true).build();
+
+        // The wrapped negative lookahead excludes the keyword from the identifiers.
+
+        Ensure.equals(Common.errorPosition(Autumn.parseString(dumb, "if if")), 3);
+        Ensure.equals(Common.errorPosition(Autumn.parseString(dumb, "abc")), 0);
+        Ensure.equals(Common.errorPosition(Autumn.parseString(dumb, "if x 12LL")), 8);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
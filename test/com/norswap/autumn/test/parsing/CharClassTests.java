@@ -0,0 +1,143 @@
+package com.norswap.autumn.test.parsing;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.CharClass;
+import com.norswap.autumn.expressions.CharClassLoop;
+import com.norswap.autumn.expressions.Sequence;
+import com.norswap.autumn.expressions.Token;
+import com.norswap.autumn.test.Ensure;
+import com.norswap.autumn.test.TestRunner;
+
+import static com.norswap.autumn.ParsingExpressionFactory.*;
+
+/**
+ * Tests the compilation of character-level expressions into character classes.
+ */
+public final class CharClassTests
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    Runnable[] tests = {
+        this::testSameResults,
+        this::testStructure,
+        this::testMembership,
+        this::testErrorPositions
+    };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static void main(String[] args)
+    {
+        run();
+    }
+
+    public static void run()
+    {
+        new CharClassTests().doRun();
+        System.out.println("Char class tests succeeded.");
+    }
+
+    void doRun()
+    {
+        TestRunner runner = new TestRunner(tests);
+        runner.run();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    ParsingExpression letter = choice(charRange('a', 'z'), charSet("_$"), literal("\u00e9"));
+
+    /**
+     * An identifier, followed by anything but a semicolon or an 'a', followed by a semicolon.
+     */
+    ParsingExpression root = sequence(
+        token(sequence(letter, zeroMore(choice(letter, charRange('0', '9'))))),
+        oneMore(notCharSet(";a")),
+        token(";"));
+
+    String[] inputs = { "x_1\u00e9 \u20ac!;", "$ ;", "1 x;", "x ;", "xy z", "" };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private Grammar compiled()
+    {
+        return Grammar.fromRoot(root.deepCopy()).charClasses(true).build();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Character classes are opt-in: by default, the expressions are left as written.
+     */
+    private Grammar plain()
+    {
+        return Grammar.fromRoot(root.deepCopy()).build();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public void testSameResults()
+    {
+        Common.ensureSameResults(compiled(), plain(), inputs);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testStructure()
+    {
+        ParsingExpression[] operands = ((Sequence) compiled().root).operands;
+
+        // The choices become classes, the loops over classes become class loops.
+
+        Ensure.ensure(operands[1] instanceof CharClassLoop);
+        Ensure.ensure(((CharClassLoop) operands[1]).atLeastOne);
+        Ensure.ensure(((CharClassLoop) operands[1]).operand instanceof CharClass);
+
+        ParsingExpression[] ident = ((Sequence) ((Token) operands[0]).operand).operands;
+        Ensure.ensure(ident[0] instanceof CharClass);
+        Ensure.ensure(ident[1] instanceof CharClassLoop);
+        Ensure.ensure(!((CharClassLoop) ident[1]).atLeastOne);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testMembership()
+    {
+        ParsingExpression[] operands = ((Sequence) compiled().root).operands;
+        ParsingExpression[] ident = ((Sequence) ((Token) operands[0]).operand).operands;
+
+        CharClass start = (CharClass) ident[0];
+        Ensure.ensure(start.contains('a') && start.contains('z') && start.contains('_'));
+        Ensure.ensure(start.contains('$') && start.contains('\u00e9'));
+        Ensure.ensure(!start.contains('0') && !start.contains('A'));
+        Ensure.ensure(!start.contains('\u00e8'));
+
+        CharClass part = (CharClass) ((CharClassLoop) ident[1]).operand;
+        Ensure.ensure(part.contains('0') && part.contains('9') && part.contains('\u00e9'));
+
+        // The complement includes the non-ASCII characters.
+
+        CharClass other = (CharClass) ((CharClassLoop) operands[1]).operand;
+        Ensure.ensure(other.contains('b') && other.contains(' ') && other.contains('\u20ac'));
+        Ensure.ensure(!other.contains(';') && !other.contains('a'));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testErrorPositions()
+    {
+        // Only the tokens report errors: the identifier at the start, the semicolon at the end.
+        // The failure of the class loop (before the semicolon) is not reported.
+
+        Ensure.equals(Common.errorPosition(Autumn.parseString(compiled(), "1 x;")), 0);
+        Ensure.equals(Common.errorPosition(Autumn.parseString(compiled(), "")), 0);
+        Ensure.equals(Common.errorPosition(Autumn.parseString(compiled(), "xy z")), 4);
+        Ensure.equals(Common.errorPosition(Autumn.parseString(compiled(), "x ;")), -1);
+
+        Common.ensureMatch(Autumn.parseString(compiled(), inputs[0]));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -6,9 +6,15 @@ import com.norswap.autumn.GrammarBuilder;
 import com.norswap.autumn.ParseResult;
 import com.norswap.autumn.ParsingExpression;
 import com.norswap.autumn.capture.ParseTree;
+import com.norswap.autumn.errors.ErrorLocation;
 import com.norswap.autumn.extensions.Extension;
+import com.norswap.autumn.test.Ensure;
 import com.norswap.autumn.test.TestFailed;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
 public final class Common
 {
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -93,5 +99,83 @@ public final class Common
         return result.tree;
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Parses each input with both grammars and ensures the results are the same: same match, end
+     * position and parse tree, and on failure the same error position and reported expressions.
+     * <p>
+     * Only the reported expressions are compared, not their printed sub-expressions, which
+     * reflect the transformations applied to the grammar.
+     */
+    public static void ensureSameResults(Grammar grammar, Grammar plain, String... inputs)
+    {
+        for (String input: inputs)
+        {
+            ParseResult result1 = Autumn.parseString(grammar, input);
+            ParseResult result2 = Autumn.parseString(plain, input);
+
+            Ensure.equals(result1.matched, result2.matched);
+            Ensure.equals(result1.endPosition, result2.endPosition);
+
+            if (result1.matched)
+            {
+                Ensure.equals(String.valueOf(result1.tree), String.valueOf(result2.tree));
+            }
+            else
+            {
+                Ensure.equals(errorPosition(result1), errorPosition(result2));
+                Ensure.equals(reportedExpressions(result1), reportedExpressions(result2));
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the input position of the errors exposed by the result's error report, or -1 if
+     * the report exposes no error location.
+     */
+    public static int errorPosition(ParseResult result)
+    {
+        int position = -1;
+
+        for (ErrorLocation location: result.error.locations())
+        {
+            Ensure.ensure(position == -1 || position == location.position);
+            position = location.position;
+        }
+
+        return position;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the lines of the error message of the result, in sorted order and stripped of the
+     * hash codes that identify the expressions (the expressions are reported in no particular
+     * order).
+     */
+    public static List<String> errorLines(ParseResult result)
+    {
+        return Arrays.stream(result.error.message().split("\n"))
+            .map(line -> line.replaceAll("\\(\\w+\\)", ""))
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the lines of the error message that report a failed expression, excluding those
+     * printing its sub-expressions. See {@link #errorLines}.
+     */
+    public static List<String> reportedExpressions(ParseResult result)
+    {
+        return errorLines(result).stream()
+            .filter(line -> !line.startsWith("-"))
+            .collect(Collectors.toList());
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 }
@@ -0,0 +1,35 @@
+package com.norswap.autumn.test.parsing;
+
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.abstrakt.UnaryParsingExpression;
+import com.norswap.autumn.state.ParseState;
+
+/**
+ * Counts the number of times its operand is invoked, in order to check that an optimization
+ * actually avoids invoking it.
+ */
+public final class Counter extends UnaryParsingExpression
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public int count;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public Counter(ParsingExpression operand)
+    {
+        this.operand = operand;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void parse(Parser parser, ParseState state)
+    {
+        ++count;
+        operand.parse(parser, state);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,161 @@
+package com.norswap.autumn.test.parsing;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.Choice;
+import com.norswap.autumn.expressions.OneMore;
+import com.norswap.autumn.expressions.Sequence;
+import com.norswap.autumn.test.Ensure;
+import com.norswap.autumn.test.TestRunner;
+
+import java.util.Arrays;
+
+import static com.norswap.autumn.ParsingExpressionFactory.*;
+
+/**
+ * Tests the first-character dispatch of choices.
+ */
+public final class DispatchTests
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    Runnable[] tests = {
+        this::testSameResults,
+        this::testCandidates,
+        this::testSkippedOperands,
+        this::testErrorPositions
+    };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static void main(String[] args)
+    {
+        run();
+    }
+
+    public static void run()
+    {
+        new DispatchTests().doRun();
+        System.out.println("Dispatch tests succeeded.");
+    }
+
+    void doRun()
+    {
+        TestRunner runner = new TestRunner(tests);
+        runner.run();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A choice of keywords, identifiers, numbers and operators, followed by a semicolon.
+     */
+    ParsingExpression root = sequence(
+        oneMore(choice(
+            token("if"),
+            token(sequence(not(literal("int")), oneMore(charRange('a', 'z')))),
+            longestMatch(token("int"), token("integer")),
+            token(literal("+")),
+            token(optional(literal("?")), literal("!")))),
+        literal(";"));
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static Choice dispatchingChoice(Grammar grammar)
+    {
+        return (Choice) ((OneMore) ((Sequence) grammar.root).operands[0]).operand;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private Grammar dispatched()
+    {
+        return Grammar.fromRoot(root.deepCopy()).firstCharDispatch(true).build();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Dispatching is opt-in: the default build leaves the grammar as written.
+     */
+    private Grammar plain()
+    {
+        return Grammar.fromRoot(root.deepCopy()).build();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Wraps an operand of the built choice into a counter. The dispatch table of the choice refers
+     * to the operand by index.
+     */
+    private static Counter counter(Grammar grammar, int index)
+    {
+        ParsingExpression[] operands = dispatchingChoice(grammar).operands;
+        Counter counter = new Counter(operands[index]);
+        operands[index] = counter;
+        return counter;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public void testSameResults()
+    {
+        Ensure.ensure(dispatchingChoice(dispatched()).dispatch != null);
+        Ensure.ensure(dispatchingChoice(plain()).dispatch == null);
+
+        // Skipping operands doesn't change the result nor the reported errors.
+
+        Common.ensureSameResults(dispatched(), plain(),
+            "if x + integer ?! ;", "int ;", "if 3;", "int+ -;", "");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testCandidates()
+    {
+        Choice choice = dispatchingChoice(dispatched());
+
+        // Only the operands that may start with the character are candidates. The negative
+        // lookahead of the identifier doesn't exclude 'i' (the identifier may start with "in").
+
+        Ensure.equals(Arrays.toString(choice.dispatch.candidates('i')), "[0, 1, 2]");
+        Ensure.equals(Arrays.toString(choice.dispatch.candidates('x')), "[1]");
+        Ensure.equals(Arrays.toString(choice.dispatch.candidates('+')), "[3]");
+        Ensure.equals(Arrays.toString(choice.dispatch.candidates('?')), "[4]");
+        Ensure.equals(Arrays.toString(choice.dispatch.candidates('!')), "[4]");
+        Ensure.equals(Arrays.toString(choice.dispatch.candidates(';')), "[]");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testSkippedOperands()
+    {
+        String input = "if x + integer ?! ;";
+
+        // The plain choice tries the "+" operand at "+", "?!" and ";" (the other positions match
+        // an earlier operand), the dispatched choice only at "+".
+
+        Grammar dispatched = dispatched();
+        Counter counter1 = counter(dispatched, 3);
+        Common.ensureMatch(Autumn.parseString(dispatched, input));
+        Ensure.equals(counter1.count, 1);
+
+        Grammar plain = plain();
+        Counter counter2 = counter(plain, 3);
+        Common.ensureMatch(Autumn.parseString(plain, input));
+        Ensure.equals(counter2.count, 3);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testErrorPositions()
+    {
+        Ensure.equals(Common.errorPosition(Autumn.parseString(dispatched(), "if 3;")), 3);
+        Ensure.equals(Common.errorPosition(Autumn.parseString(dispatched(), "int+ -;")), 5);
+        Ensure.equals(Common.errorPosition(Autumn.parseString(dispatched(), "")), 0);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
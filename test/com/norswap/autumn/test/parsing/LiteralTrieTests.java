@@ -0,0 +1,169 @@
+package com.norswap.autumn.test.parsing;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.ParseResult;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.expressions.LiteralTrie;
+import com.norswap.autumn.expressions.Sequence;
+import com.norswap.autumn.test.Ensure;
+import com.norswap.autumn.test.TestRunner;
+
+import static com.norswap.autumn.ParsingExpressionFactory.*;
+
+/**
+ * Tests the rewriting of choices of literals into literal tries.
+ */
+public final class LiteralTrieTests
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    Runnable[] tests = {
+        this::testSameResults,
+        this::testOrderedChoice,
+        this::testLongestMatch,
+        this::testErrorPositions
+    };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static void main(String[] args)
+    {
+        run();
+    }
+
+    public static void run()
+    {
+        new LiteralTrieTests().doRun();
+        System.out.println("Literal trie tests succeeded.");
+    }
+
+    void doRun()
+    {
+        TestRunner runner = new TestRunner(tests);
+        runner.run();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    ParsingExpression
+
+    tokens = choice(token(">"), token(">>"), token(">>="), token(">>>=")),
+
+    shadowed = choice(literal("do"), token("double"), literal("d"), literal("do"), literal("")),
+
+    longest = longestMatch(token(">"), token(">>"), literal(">> "), token(">>="), literal(">"));
+
+    String[] inputs = { ">>>= ", ">> = ", ">>= ", "double x", "dox", "x", "" };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static ParsingExpression word(ParsingExpression pe)
+    {
+        return sequence(pe.deepCopy(), zeroMore(charRange('a', 'z')));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Literal tries are opt-in: the default build leaves the choices as written.
+     */
+    private static Grammar compiled(ParsingExpression pe)
+    {
+        return Grammar.fromRoot(word(pe)).literalTries(true).build();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static LiteralTrie trie(Grammar grammar)
+    {
+        ParsingExpression pe = ((Sequence) grammar.root).operands[0];
+        Ensure.ensure(pe instanceof LiteralTrie);
+        return (LiteralTrie) pe;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public void testSameResults()
+    {
+        for (ParsingExpression root: new ParsingExpression[]{ tokens, shadowed, longest })
+        {
+            Grammar grammar = compiled(root);
+            Grammar plain = Grammar.fromRoot(word(root)).build();
+            Grammar dumb = Grammar.fromRoot(dumb(word(root))).build();
+
+            trie(grammar);
+            Ensure.ensure(!(((Sequence) plain.root).operands[0] instanceof LiteralTrie));
+
+            // The trie gives the same results and reports the same errors as the alternatives.
+
+            Common.ensureSameResults(grammar, plain, inputs);
+
+            for (String input: inputs)
+                Ensure.equals(
+                    Autumn.parseString(dumb, input).endPosition,
+                    Autumn.parseString(plain, input).endPosition);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testOrderedChoice()
+    {
+        Grammar grammar = compiled(tokens);
+        Ensure.ensure(!trie(grammar).longest);
+
+        // The first operand shadows the longer literals.
+
+        Ensure.equals(Autumn.parseString(grammar, ">>>= ").endPosition, 1);
+        Ensure.equals(Autumn.parseString(grammar, ">>= ").endPosition, 1);
+
+        // The first "do" shadows "double" and the second "do", the empty literal always matches.
+
+        grammar = compiled(shadowed);
+        Ensure.equals(Autumn.parseString(grammar, "double x").endPosition, 6);
+        Common.ensureMatch(Autumn.parseString(grammar, "dox"));
+        Common.ensureMatch(Autumn.parseString(grammar, "x"));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testLongestMatch()
+    {
+        Grammar grammar = compiled(longest);
+        Ensure.ensure(trie(grammar).longest);
+
+        // The token end positions (after the whitespace) are compared, not the literals' lengths.
+
+        ParseResult result = Autumn.parseString(grammar, ">>= ");
+        Common.ensureMatch(result);
+        Ensure.equals(result.endPosition, 4);
+
+        Ensure.equals(Autumn.parseString(grammar, ">> = ").endPosition, 3);
+        Ensure.equals(Autumn.parseString(grammar, ">>>= ").endPosition, 2);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testErrorPositions()
+    {
+        // Every token is reported at the failure position (the first line is the message
+        // header), the literals are not.
+
+        ParseResult result = Autumn.parseString(compiled(tokens), "x");
+        Ensure.equals(Common.errorPosition(result), 0);
+        Ensure.equals(Common.reportedExpressions(result).size(), 1 + 4);
+
+        result = Autumn.parseString(compiled(longest), "x");
+        Ensure.equals(Common.errorPosition(result), 0);
+        Ensure.equals(Common.reportedExpressions(result).size(), 1 + 3);
+
+        // Only the ">>=" token fails, the shorter tokens match.
+
+        result = Autumn.parseString(compiled(longest), ">>>= ");
+        Ensure.equals(Common.errorPosition(result), 0);
+        Ensure.equals(Common.reportedExpressions(result).size(), 1 + 1);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
@@ -0,0 +1,204 @@
+package com.norswap.autumn.test.parsing;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.ParseResult;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.capture.ParseTree;
+import com.norswap.autumn.config.DefaultMemoHandler;
+import com.norswap.autumn.config.DenseMemoHandler;
+import com.norswap.autumn.config.MemoHandler;
+import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.errors.DefaultErrorState;
+import com.norswap.autumn.state.CustomState;
+import com.norswap.autumn.state.ParseState;
+import com.norswap.autumn.test.Ensure;
+import com.norswap.autumn.test.TestRunner;
+
+import static com.norswap.autumn.ParsingExpressionFactory.*;
+import static com.norswap.autumn.test.parsing.ParseTreeBuilder.$;
+
+/**
+ * Tests the memoization handlers.
+ */
+public final class MemoTests
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    Runnable[] tests = {
+        this::testReuse,
+        this::testHits,
+        this::testSlidingWindow,
+        this::testBacktrackPoints
+    };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static void main(String[] args)
+    {
+        run();
+    }
+
+    public static void run()
+    {
+        new MemoTests().doRun();
+        System.out.println("Memo tests succeeded.");
+    }
+
+    void doRun()
+    {
+        TestRunner runner = new TestRunner(tests);
+        runner.run();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    ParserConfiguration
+
+    dense = ParserConfiguration.with()
+        .memoStrategy(DenseMemoHandler::new).build(),
+
+    window = ParserConfiguration.with()
+        .memoStrategy(() -> new DenseMemoHandler(true, 1 << 20)).build(),
+
+    capped = ParserConfiguration.with()
+        .memoStrategy(() -> new DenseMemoHandler(false, 0)).build();
+
+    ParserConfiguration[] configs = { ParserConfiguration.DEFAULT, dense, window, capped };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A choice between two sequences that start with the same memoized number. The number's
+     * operand is wrapped in the given counter, if any.
+     */
+    private static ParsingExpression backtrack(Counter counter)
+    {
+        ParsingExpression num = captureText("num", oneMore(charRange('0', '9')));
+
+        if (counter != null)
+        {
+            counter.operand = num;
+            num = counter;
+        }
+
+        ParsingExpression item = memo(num);
+        return choice(sequence(item, literal("+")), sequence(item, literal("-")));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static String list(int size)
+    {
+        return new String(new char[size]).replace("\0", "12-");
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public void testReuse()
+    {
+        // Memoized results are reused within left-recursion (seeds in effect) and outside of it.
+
+        ParsingExpression leftrec = named$("expr", choice(
+            leftAssociative(capture("+", sequence(
+                capture("left", reference("expr")),
+                literal("+"),
+                capture("right", reference("expr"))))),
+            memo(captureText("num", charRange('1', '9')))));
+
+        ParseTree expected = $($("+",
+            $("left", $("+",
+                $("left", $("num", "1")),
+                $("right", $("num", "2")))),
+            $("right", $("num", "3"))));
+
+        for (ParserConfiguration config: configs)
+        {
+            ParseResult result = Autumn.parseString(
+                Grammar.fromRoot(backtrack(null)).build(), "12-", config);
+
+            Common.ensureMatch(result);
+            Ensure.equals(result.tree.get("num").value, "12");
+
+            result = Autumn.parseString(Grammar.fromRoot(leftrec).build(), "1+2+3", config);
+            Common.ensureMatch(result);
+            Ensure.equals(result.tree, expected);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testHits()
+    {
+        // The second alternative reuses the result of the first: the number is parsed once per
+        // item, plus once at the end of the input. It is parsed twice when nothing is memoized.
+
+        int[] counts = { 1001, 1001, 1001, 2002 };
+
+        for (int i = 0; i < configs.length; ++i)
+        {
+            Counter counter = new Counter(null);
+            Grammar grammar = Grammar.fromRoot(oneMore(backtrack(counter))).build();
+            Common.ensureMatch(Autumn.parseString(grammar, list(1000), configs[i]));
+            Ensure.equals(counter.count, counts[i]);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testSlidingWindow()
+    {
+        Grammar grammar = Grammar.fromRoot(oneMore(backtrack(null))).build();
+
+        ParseResult full = Autumn.parseString(grammar, list(1000), dense);
+        ParseResult window1 = Autumn.parseString(grammar, list(1000), window);
+        ParseResult window2 = Autumn.parseString(grammar, list(2000), window);
+        ParseResult capped = Autumn.parseString(grammar, list(1000), this.capped);
+
+        Common.ensureMatch(full);
+        Common.ensureMatch(window1);
+        Common.ensureMatch(window2);
+        Common.ensureMatch(capped);
+        Ensure.equals(window1.tree, full.tree);
+
+        // Results are evicted as the window moves forward, bounding the size of the memoized data
+        // regardless of the size of the input.
+
+        Ensure.ensure(window1.memoPeakSize > 0);
+        Ensure.ensure(window1.memoPeakSize * 100 < full.memoPeakSize);
+        Ensure.equals(window2.memoPeakSize, window1.memoPeakSize);
+        Ensure.equals(capped.memoPeakSize, 0L);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testBacktrackPoints()
+    {
+        MemoHandler[] handlers = {
+            new DefaultMemoHandler(), new DenseMemoHandler(), new DenseMemoHandler(true, 0) };
+
+        for (MemoHandler handler: handlers)
+        {
+            ParseState state = new ParseState(
+                new DefaultErrorState(), handler, new CustomState[0]);
+
+            state.start = 5;
+            state.openBacktrackPoint();
+            state.start = 7;
+            state.openBacktrackPoint();
+
+            // Only the sliding window needs the floor: backtrack points are not tracked otherwise.
+
+            Ensure.equals(state.backtrackFloor(), handler.usesBacktrackFloor() ? 5 : 0);
+
+            state.closeBacktrackPoint();
+            state.closeBacktrackPoint();
+            Ensure.equals(state.backtrackFloor(), handler.usesBacktrackFloor() ? 7 : 0);
+        }
+
+        Ensure.ensure(new DenseMemoHandler(true, 0).usesBacktrackFloor());
+        Ensure.ensure(!new DenseMemoHandler(false, 0).usesBacktrackFloor());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}
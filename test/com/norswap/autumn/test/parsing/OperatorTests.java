@@ -1,8 +1,22 @@
 package com.norswap.autumn.test.parsing;
 
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
 import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.errors.DefaultErrorState;
+import com.norswap.autumn.errors.ErrorChanges;
+import com.norswap.autumn.errors.ErrorLocation;
+import com.norswap.autumn.errors.ErrorReport;
+import com.norswap.autumn.errors.ErrorState;
+import com.norswap.autumn.source.Source;
+import com.norswap.autumn.state.ParseState;
+import com.norswap.autumn.test.Ensure;
 import com.norswap.autumn.test.TestRunner;
 
+import java.util.Collection;
+import java.util.TreeSet;
+
 import static com.norswap.autumn.ParsingExpressionFactory.*;
 
 public final class OperatorTests
@@ -25,7 +39,9 @@ public final class OperatorTests
         this::testOneMore,
         this::testLookahead,
         this::testNot,
-        this::testLongestMatch
+        this::testLongestMatch,
+        this::testUntil,
+        this::testUntilErrors
     };
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -161,5 +177,127 @@ public final class OperatorTests
         Common.ensureMatch(pe, "abc");
     }
 
+    // ---------------------------------------------------------------------------------------------
+
+    public void testUntil()
+    {
+        pe = pe(until(any(), literal("*/")));
+        Common.ensureMatch(pe, "*/");
+        Common.ensureMatch(pe, "a*b**/");
+        Common.ensureFail(pe, "a*b*");
+
+        pe = pe(aloUntil(any(), literal("*/")));
+        Common.ensureMatch(pe, "a*/");
+        Common.ensureFail(pe, "*/");
+
+        pe = pe(until(any(), charSet("\n\r")));
+        Common.ensureMatch(pe, "abc\n");
+        Common.ensureFail(pe, "abc");
+
+        pe = pe(aloUntil(charRange('a', 'z'), literal("*/")));
+        Common.ensureMatch(pe, "ab*/");
+        Common.ensureFail(pe, "a1*/");
+        Common.ensureFail(pe, "*/");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testUntilErrors()
+    {
+        // When the body is any(), the terminator is located by scanning the input. The failures
+        // are still reported where the general loop (here over sequence(any())) reports them.
+
+        ParsingExpression[] terminators = { literal("*/"), charSet("\n\r") };
+        String[] inputs = { "abc", "", "ab*/", "*/", "a\n" };
+
+        for (ParsingExpression terminator: terminators)
+            for (String input: inputs)
+            {
+                Ensure.equals(
+                    failurePositions(until(any(), terminator.deepCopy()), input),
+                    failurePositions(until(sequence(any()), terminator.deepCopy()), input));
+
+                Ensure.equals(
+                    failurePositions(aloUntil(any(), terminator.deepCopy()), input),
+                    failurePositions(aloUntil(sequence(any()), terminator.deepCopy()), input));
+            }
+
+        // Unterminated: the body and the terminator fail at the end of the input.
+
+        Ensure.equals(failurePositions(until(any(), literal("*/")), "a*b*").last(), 4);
+        Ensure.equals(failurePositions(aloUntil(any(), charSet("\n")), "ab").last(), 2);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the positions of all the failures reported while parsing the input.
+     */
+    private static TreeSet<Integer> failurePositions(ParsingExpression pe, String input)
+    {
+        FailurePositions errors = new FailurePositions();
+
+        Autumn.parseString(Grammar.fromRoot(pe).build(), input,
+            ParserConfiguration.with().errorState(() -> errors).build());
+
+        return errors.positions;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * A {@link DefaultErrorState} that also records the positions of all failures (and not only
+     * those of tokens).
+     */
+    private static final class FailurePositions implements ErrorState
+    {
+        final DefaultErrorState delegate = new DefaultErrorState();
+
+        final TreeSet<Integer> positions = new TreeSet<>();
+
+        @Override
+        public void requestErrorRecordPoint()
+        {
+            delegate.requestErrorRecordPoint();
+        }
+
+        @Override
+        public void dismissErrorRecordPoint()
+        {
+            delegate.dismissErrorRecordPoint();
+        }
+
+        @Override
+        public ErrorChanges changes()
+        {
+            return delegate.changes();
+        }
+
+        @Override
+        public void merge(ErrorChanges changes)
+        {
+            delegate.merge(changes);
+        }
+
+        @Override
+        public void merge(Collection<ErrorLocation> errors)
+        {
+            delegate.merge(errors);
+        }
+
+        @Override
+        public void handleError(ParsingExpression pe, ParseState state)
+        {
+            positions.add(state.start);
+            delegate.handleError(pe, state);
+        }
+
+        @Override
+        public ErrorReport report(Source source)
+        {
+            return delegate.report(source);
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 }
@@ -0,0 +1,203 @@
+package com.norswap.autumn.test.parsing;
+
+import com.norswap.autumn.Autumn;
+import com.norswap.autumn.Grammar;
+import com.norswap.autumn.Parser;
+import com.norswap.autumn.ParseResult;
+import com.norswap.autumn.ParsingExpression;
+import com.norswap.autumn.config.ParserConfiguration;
+import com.norswap.autumn.expressions.Regular;
+import com.norswap.autumn.expressions.Sequence;
+import com.norswap.autumn.expressions.Token;
+import com.norswap.autumn.source.Source;
+import com.norswap.autumn.test.Ensure;
+import com.norswap.autumn.test.TestRunner;
+
+import static com.norswap.autumn.ParsingExpressionFactory.*;
+
+/**
+ * Tests the compilation of regular expressions into deterministic finite automata.
+ */
+public final class RegularTests
+{
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    Runnable[] tests = {
+        this::testSameResults,
+        this::testMatch,
+        this::testIrregular,
+        this::testErrorPositions
+    };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static void main(String[] args)
+    {
+        run();
+    }
+
+    public static void run()
+    {
+        new RegularTests().doRun();
+        System.out.println("Regular tests succeeded.");
+    }
+
+    void doRun()
+    {
+        TestRunner runner = new TestRunner(tests);
+        runner.run();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    ParsingExpression
+
+    digits = sequence(
+        charRange('0', '9'), zeroMore(sequence(zeroMore(charSet("_")), charRange('0', '9')))),
+
+    hex = sequence(choice(literal("0x"), literal("0X")), oneMore(charRange('a', 'f'))),
+
+    string = sequence(literal("\""), zeroMore(choice(
+        sequence(literal("\\"), any()),
+        sequence(not(charSet("\"\\")), any()))), literal("\"")),
+
+    word = sequence(
+        oneMore(choice(charRange('a', 'z'), literal("\u00e9"))), optional(literal("!")));
+
+    ParsingExpression[] regular = { digits, hex, string, word };
+
+    String[] inputs = {
+        "", "1", "1__2_3x", "1__", "0xfg", "0X", "\"a\\\"b\"c", "\"a", "ab\u00e9c!", "ab",
+        "abab" };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Regular expressions are opt-in. Character classes are compiled first: they turn the negated
+     * character sets (as in {@link #string}) into classes, which the regular expressions can
+     * include.
+     */
+    private static Grammar compiled(ParsingExpression root)
+    {
+        return Grammar.fromRoot(root).charClasses(true).regularExpressions(true).build();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Regular compile(ParsingExpression pe)
+    {
+        Grammar grammar = compiled(pe.deepCopy());
+        Ensure.ensure(grammar.root instanceof Regular);
+        return (Regular) grammar.root;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Runs the automaton on the string, terminated by a null character like the parser's text.
+     */
+    private static int match(Regular regular, String string, int position)
+    {
+        return regular.match(string + "\0", position);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public void testSameResults()
+    {
+        for (ParsingExpression root: regular)
+        {
+            Grammar grammar = compiled(root.deepCopy());
+            Grammar plain = Grammar.fromRoot(root.deepCopy()).build();
+            Ensure.ensure(grammar.root instanceof Regular);
+            Ensure.ensure(!(plain.root instanceof Regular));
+
+            for (String input: inputs)
+            {
+                Parser parser1 = new Parser(
+                    grammar, Source.fromString(input).build(), ParserConfiguration.DEFAULT);
+
+                Parser parser2 = new Parser(
+                    plain, Source.fromString(input).build(), ParserConfiguration.DEFAULT);
+
+                Ensure.equals(
+                    grammar.root.parseDumb(parser1, 0),
+                    plain.root.parseDumb(parser2, 0));
+            }
+
+            // Within a token, the automaton reports the same errors as the replaced expression.
+
+            Common.ensureSameResults(
+                compiled(token(root.deepCopy())),
+                Grammar.fromRoot(token(root.deepCopy())).build(),
+                inputs);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testMatch()
+    {
+        Regular digits = compile(this.digits);
+        Ensure.equals(match(digits, "1__2_3x", 0), 6);
+        Ensure.equals(match(digits, "1__", 0), 1);
+        Ensure.equals(match(digits, "x1", 0), -1);
+        Ensure.equals(match(digits, "x1", 1), 2);
+
+        Regular hex = compile(this.hex);
+        Ensure.equals(match(hex, "0xfg", 0), 3);
+        Ensure.equals(match(hex, "0X", 0), -1);
+
+        Regular string = compile(this.string);
+        Ensure.equals(match(string, "\"a\\\"b\"c", 0), 6);
+        Ensure.equals(match(string, "\"a", 0), -1);
+
+        Regular word = compile(this.word);
+        Ensure.equals(match(word, "ab\u00e9c!", 0), 5);
+        Ensure.equals(match(word, "ab", 0), 2);
+        Ensure.equals(match(word, "\u00e8", 0), -1);
+
+        // The replaced expression is retained for reference.
+
+        Ensure.ensure(word.expression instanceof Sequence);
+        Ensure.equals(word.children().length, 0);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testIrregular()
+    {
+        // PEG and longest match semantics differ for these.
+
+        ParsingExpression[] irregular = {
+            choice(literal("a"), literal("ab")),
+            sequence(zeroMore(charSet("ab")), literal("b")),
+            sequence(optional(literal("a")), literal("ab"))
+        };
+
+        for (ParsingExpression root: irregular)
+            Ensure.ensure(!(compiled(root).root instanceof Regular));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public void testErrorPositions()
+    {
+        Grammar grammar = compiled(sequence(token(digits.deepCopy()), token(hex.deepCopy())));
+
+        ParsingExpression[] operands = ((Sequence) grammar.root).operands;
+        Ensure.ensure(((Token) operands[0]).operand instanceof Regular);
+        Ensure.ensure(((Token) operands[1]).operand instanceof Regular);
+
+        // The failing token is reported at its start, not where the automaton stopped.
+
+        ParseResult result = Autumn.parseString(grammar, "1_2 0xg");
+        Ensure.equals(Common.errorPosition(result), 4);
+        Ensure.equals(Common.reportedExpressions(result).size(), 1 + 1);
+
+        Common.ensureMatch(Autumn.parseString(grammar, "1_2 0xf"));
+        Ensure.equals(Common.errorPosition(Autumn.parseString(grammar, "x")), 0);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+}